@@ -0,0 +1,108 @@
+package ru.ssu.refa.linear_order_automata.benchmark;
+
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.InputSignal;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded generator of complete automata, the same arguments always give the same automaton.
+ */
+public final class AutomataGenerator {
+
+    public enum Kind {
+        /**
+         * Uniformly random transitions and outputs.
+         */
+        RANDOM,
+        /**
+         * Monotone transitions and outputs, {@code x_k} moves state {@code i} to {@code i + k + 1}. Such automata
+         * are always linearly ordered, so the search runs to the end.
+         */
+        CHAIN,
+        /**
+         * Every input signal permutes the states, outputs are random.
+         */
+        PERMUTATION,
+        /**
+         * {@code x_0} resets every state to state {@code 0}, the other signals are random.
+         */
+        RESET_WORD
+    }
+
+    private AutomataGenerator() {
+    }
+
+    public static DenseAutomaton generate(Kind kind, int stateCount, int inputCount, int outputCount, long seed) {
+        Random random = new Random(seed);
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        for (int inputSignal = 0; inputSignal < inputCount; inputSignal++) {
+            int[] permutation = kind == Kind.PERMUTATION ? permutation(random, stateCount) : null;
+            for (int state = 0; state < stateCount; state++) {
+                int index = state * inputCount + inputSignal;
+                switch (kind) {
+                    case CHAIN:
+                        transitions[index] = Math.min(state + inputSignal + 1, stateCount - 1);
+                        outputs[index] = (int) ((long) state * outputCount / stateCount);
+                        break;
+                    case PERMUTATION:
+                        transitions[index] = permutation[state];
+                        outputs[index] = random.nextInt(outputCount);
+                        break;
+                    case RESET_WORD:
+                        transitions[index] = inputSignal == 0 ? 0 : random.nextInt(stateCount);
+                        outputs[index] = random.nextInt(outputCount);
+                        break;
+                    default:
+                        transitions[index] = random.nextInt(stateCount);
+                        outputs[index] = random.nextInt(outputCount);
+                }
+            }
+        }
+        return new DenseAutomaton(states(stateCount), inputSignals(inputCount), outputSignals(outputCount),
+                transitions, outputs);
+    }
+
+    public static List<State> states(int stateCount) {
+        List<State> states = new ArrayList<>(stateCount);
+        for (int i = 0; i < stateCount; i++) {
+            states.add(new State(i));
+        }
+        return states;
+    }
+
+    private static List<InputSignal> inputSignals(int inputCount) {
+        List<InputSignal> inputSignals = new ArrayList<>(inputCount);
+        for (int i = 0; i < inputCount; i++) {
+            inputSignals.add(new InputSignal("x" + i));
+        }
+        return inputSignals;
+    }
+
+    private static List<OutputSignal> outputSignals(int outputCount) {
+        List<OutputSignal> outputSignals = new ArrayList<>(outputCount);
+        for (int i = 0; i < outputCount; i++) {
+            outputSignals.add(new OutputSignal("y" + i));
+        }
+        return outputSignals;
+    }
+
+    private static int[] permutation(Random random, int size) {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        return permutation;
+    }
+}
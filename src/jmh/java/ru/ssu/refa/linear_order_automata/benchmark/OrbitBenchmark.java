@@ -0,0 +1,89 @@
+package ru.ssu.refa.linear_order_automata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.service.impl.AutomataUtilsService;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orbit of a single pair and orbits of all pairs. Automata whose orbits violate antisymmetry are measured up to
+ * the violation, which is how the ordering service spends its time on them too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrbitBenchmark {
+
+    @Param({"RANDOM", "CHAIN", "PERMUTATION", "RESET_WORD"})
+    public AutomataGenerator.Kind kind;
+
+    @Param({"10", "100", "1000"})
+    public int states;
+
+    @Param({"2", "8", "64"})
+    public int inputs;
+
+    @Param({"4"})
+    public int outputs;
+
+    @Param({"42"})
+    public long seed;
+
+    private AutomataUtilsService automataUtilsService;
+    private DenseAutomaton automaton;
+    private DenseOrbit[] emptyOrbitCache;
+    private int left;
+    private int right;
+
+    @Setup
+    public void setUp() {
+        automataUtilsService = new AutomataUtilsService(new AutomataProperties());
+        automaton = AutomataGenerator.generate(kind, states, inputs, outputs, seed);
+        emptyOrbitCache = new DenseOrbit[automaton.getPairCount()];
+        Random random = new Random(seed);
+        left = random.nextInt(states - 1);
+        right = left + 1 + random.nextInt(states - left - 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        automataUtilsService.shutdown();
+    }
+
+    @Benchmark
+    public long[] getTransitionOrbit() {
+        try {
+            return automataUtilsService.getTransitionOrbit(automaton, left, right, emptyOrbitCache);
+        } catch (SymmetricRelationException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public DenseOrbit[] getOrbits() {
+        try {
+            return automataUtilsService.getOrbits(automaton);
+        } catch (SymmetricRelationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.ssu.refa.linear_order_automata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.service.impl.AutomataOrderingService;
+import ru.ssu.refa.linear_order_automata.service.impl.AutomataUtilsService;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole ordering of an automaton: orbits, search and the resulting orders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderingBenchmark {
+
+    @Param({"RANDOM", "CHAIN", "PERMUTATION", "RESET_WORD"})
+    public AutomataGenerator.Kind kind;
+
+    @Param({"10", "100", "1000"})
+    public int states;
+
+    @Param({"2", "8", "64"})
+    public int inputs;
+
+    @Param({"4"})
+    public int outputs;
+
+    @Param({"42"})
+    public long seed;
+
+    private AutomataUtilsService automataUtilsService;
+    private AutomataOrderingService automataOrderingService;
+    private DenseAutomaton automaton;
+
+    @Setup
+    public void setUp() {
+        AutomataProperties properties = new AutomataProperties();
+        automataUtilsService = new AutomataUtilsService(properties);
+        automataOrderingService = new AutomataOrderingService(automataUtilsService, properties,
+                Collections.emptyList());
+        automaton = AutomataGenerator.generate(kind, states, inputs, outputs, seed);
+    }
+
+    @TearDown
+    public void tearDown() {
+        automataOrderingService.shutdown();
+        automataUtilsService.shutdown();
+    }
+
+    @Benchmark
+    public LinearOrder orderAutomaton() {
+        return automataOrderingService.orderAutomaton(automaton);
+    }
+}
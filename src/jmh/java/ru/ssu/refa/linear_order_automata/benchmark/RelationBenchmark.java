@@ -0,0 +1,87 @@
+package ru.ssu.refa.linear_order_automata.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.BitRelation;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.State;
+import ru.ssu.refa.linear_order_automata.service.impl.AutomataUtilsService;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transitive closure and topological sort of a random acyclic relation with {@code degree} pairs per element.
+ * The sort returns about {@code size * size / 2} pairs, so larger sizes than the default ones exhaust the heap. The
+ * closure alone can be measured at them with {@code -Djmh.args="RelationBenchmark.getTransitiveClosure -p size=10000"}.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    @Param({"4"})
+    public int degree;
+
+    @Param({"42"})
+    public long seed;
+
+    private AutomataUtilsService automataUtilsService;
+    private List<State> elements;
+    private BitRelation relation;
+
+    @Setup
+    public void setUp() {
+        automataUtilsService = new AutomataUtilsService(new AutomataProperties());
+        elements = AutomataGenerator.states(size);
+
+        // pairs follow a hidden random order of the elements, so the relation is acyclic
+        Random random = new Random(seed);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        relation = new BitRelation(size);
+        for (int i = 0; i + 1 < size; i++) {
+            for (int j = 0; j < degree; j++) {
+                relation.add(order[i], order[i + 1 + random.nextInt(size - i - 1)]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        automataUtilsService.shutdown();
+    }
+
+    @Benchmark
+    public BitRelation getTransitiveClosure() throws SymmetricRelationException {
+        return automataUtilsService.getTransitiveClosure(relation);
+    }
+
+    @Benchmark
+    public Set<Pair<State>> doTopologicalSort() {
+        return automataUtilsService.doTopologicalSort(elements, relation);
+    }
+}
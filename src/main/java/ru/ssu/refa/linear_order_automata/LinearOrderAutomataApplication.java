@@ -2,8 +2,10 @@ package ru.ssu.refa.linear_order_automata;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class LinearOrderAutomataApplication {
 
     public static void main(String[] args) {
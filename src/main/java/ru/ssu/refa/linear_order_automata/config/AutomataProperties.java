@@ -0,0 +1,153 @@
+package ru.ssu.refa.linear_order_automata.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the ordering algorithms, bound to the {@code automata.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "automata")
+public class AutomataProperties {
+    private final Orbits orbits = new Orbits();
+    private final Search search = new Search();
+    private final Cache cache = new Cache();
+    private final Metrics metrics = new Metrics();
+    private final Jobs jobs = new Jobs();
+
+    @Data
+    public static class Orbits {
+        /**
+         * Number of worker threads calculating orbits.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        /**
+         * Number of consecutive state pairs handed to a worker at once.
+         */
+        private int blockSize = 1024;
+        /**
+         * When orbits are calculated: all up front, on demand during the search, or up front unless the
+         * automaton has more than {@link #lazyPairThreshold} state pairs. Orbits calculated on demand still need
+         * the components of the pair graph, about 12 bytes per ordered pair, so both modes order at most
+         * {@link ru.ssu.refa.linear_order_automata.model.DenseAutomaton#MAX_STATE_COUNT} states.
+         */
+        private Mode mode = Mode.AUTO;
+        private int lazyPairThreshold = 1 << 16;
+        /**
+         * Number of encoded pairs the orbits calculated on demand may occupy in total.
+         */
+        private long cacheCapacity = 1 << 22;
+        /**
+         * Whether to reject automata failing a necessary condition of a linear order before any orbit is
+         * calculated.
+         */
+        private boolean feasibilityChecks = true;
+
+        public enum Mode {
+            EAGER, LAZY, AUTO
+        }
+    }
+
+    @Data
+    public static class Search {
+        /**
+         * Chronological backtracking or conflict-directed backjumping with learned nogoods.
+         */
+        private Mode mode = Mode.CHRONOLOGICAL;
+        /**
+         * Number of nogoods a backjumping search keeps, the oldest are dropped first.
+         */
+        private int nogoodLimit = 1024;
+        /**
+         * Nogoods of more decisions than this are not kept, checking them would cost more than they save.
+         */
+        private int nogoodMaxSize = 64;
+        /**
+         * Number of searches racing for the result, each with its own pair order and preferred orientation. The
+         * first to finish wins, every search holds its own copy of the relations. With 1 the search runs alone on
+         * the calling thread.
+         */
+        private int portfolioSize = 1;
+        /**
+         * Number of leading decisions whose orientations are explored as separate tasks on the search pool, the
+         * subtrees below are searched sequentially. 0 searches the whole tree on the calling thread. Ignored when
+         * a portfolio runs.
+         */
+        private int splitDepth;
+        /**
+         * Number of worker threads running the searches of a portfolio or the subtrees of a split search.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        /**
+         * Seed of the random pair orders of a portfolio.
+         */
+        private long seed;
+        /**
+         * Whether to order the quotient of a complete automaton by equivalent states first. Its order is lifted
+         * to the states of the automaton, which is searched itself only if lifting fails.
+         */
+        private boolean minimization;
+        /**
+         * Whether to order the groups of states connected by transitions separately, in parallel unless a
+         * portfolio runs, and merge their orders. The automaton is searched as a whole only if the merge fails.
+         */
+        private boolean decomposition;
+
+        public enum Mode {
+            CHRONOLOGICAL, BACKJUMPING
+        }
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * Number of ints the canonical forms and orders of cached automata may occupy in total, the least
+         * recently used are evicted first. 0 disables the cache.
+         */
+        private long capacity;
+        /**
+         * Number of refinements spent on the canonical form of an automaton, an automaton with too many
+         * symmetries is ordered without the cache.
+         */
+        private int canonizationNodeLimit = 256;
+    }
+
+    @Data
+    public static class Metrics {
+        /**
+         * Whether every ordering records its statistics and hands them to the registered listeners, which
+         * publish them to Micrometer. Orderings asked for their statistics record them regardless.
+         */
+        private boolean enabled;
+    }
+
+    @Data
+    public static class Jobs {
+        /**
+         * Number of worker threads ordering the automata of submitted jobs, one automaton per worker at a time.
+         */
+        private int workers = Runtime.getRuntime().availableProcessors();
+        /**
+         * Number of automata waiting for a worker across all jobs. A job which doesn't fit is rejected as a
+         * whole.
+         */
+        private int queueCapacity = 10_000;
+        /**
+         * Time a job may take from its submission when it doesn't ask for less. The automata still waiting or
+         * being ordered then are given up.
+         */
+        private Duration timeBudget = Duration.ofMinutes(10);
+        /**
+         * Memory an automaton of a job may be estimated to need when the job doesn't ask for less. Larger
+         * automata are given up without being ordered.
+         */
+        private DataSize memoryBudget = DataSize.ofMegabytes(512);
+        /**
+         * Time the results of a finished job are kept for polling.
+         */
+        private Duration retention = Duration.ofHours(1);
+    }
+}
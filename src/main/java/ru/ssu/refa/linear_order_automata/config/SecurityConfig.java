@@ -0,0 +1,21 @@
+package ru.ssu.refa.linear_order_automata.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+
+/**
+ * The defaults of Spring Boot, except that the API, called by programs with basic authentication rather than by
+ * browsers, takes no CSRF token.
+ */
+@Configuration
+public class SecurityConfig extends WebSecurityConfigurerAdapter {
+
+    @Override
+    protected void configure(HttpSecurity http) throws Exception {
+        http.authorizeRequests().anyRequest().authenticated()
+                .and().formLogin()
+                .and().httpBasic()
+                .and().csrf().ignoringAntMatchers("/api/**");
+    }
+}
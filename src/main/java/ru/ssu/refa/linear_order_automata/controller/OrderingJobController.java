@@ -0,0 +1,171 @@
+package ru.ssu.refa.linear_order_automata.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.ssu.refa.linear_order_automata.dto.AutomatonDto;
+import ru.ssu.refa.linear_order_automata.dto.JobDto;
+import ru.ssu.refa.linear_order_automata.dto.JobRequestDto;
+import ru.ssu.refa.linear_order_automata.dto.JobResultDto;
+import ru.ssu.refa.linear_order_automata.exception.JobTooLargeException;
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.service.IAutomatonParserService;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJob;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJobService;
+import ru.ssu.refa.linear_order_automata.service.IParseProgressListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Batch ordering of automata: a job is submitted, then polled or streamed until every automaton has its result.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/jobs")
+public class OrderingJobController {
+    private final IOrderingJobService orderingJobService;
+    private final IAutomatonParserService automatonParserService;
+
+    public OrderingJobController(IOrderingJobService orderingJobService,
+                                 IAutomatonParserService automatonParserService) {
+        this.orderingJobService = orderingJobService;
+        this.automatonParserService = automatonParserService;
+    }
+
+    @PostMapping
+    public ResponseEntity<JobDto> submit(@RequestBody JobRequestDto request, UriComponentsBuilder uriBuilder) {
+        if (request.getAutomata() == null) {
+            throw new IllegalArgumentException("Job has no automata");
+        }
+        List<Automaton> automata = new ArrayList<>(request.getAutomata().size());
+        for (AutomatonDto automaton : request.getAutomata()) {
+            automata.add(automaton.toAutomaton());
+        }
+        IOrderingJob job = orderingJobService.submit(automata, request.getTimeBudgetMillis() == null ? null
+                : Duration.ofMillis(request.getTimeBudgetMillis()), request.getMemoryBudgetBytes());
+        return accepted(job, uriBuilder);
+    }
+
+    /**
+     * Submits a single automaton parsed as it is received, for automata too large to be bound to objects per
+     * transition. The body is JSON or text as described by {@link IAutomatonParserService}.
+     *
+     * @param partial whether missing targets and outputs are allowed
+     */
+    @PostMapping(path = "/automaton", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<JobDto> submitAutomaton(InputStream body,
+                                                  @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                  @RequestParam(defaultValue = "false") boolean partial,
+                                                  @RequestParam(required = false) Long timeBudgetMillis,
+                                                  @RequestParam(required = false) Long memoryBudgetBytes,
+                                                  UriComponentsBuilder uriBuilder) throws IOException {
+        IParseProgressListener listener = (transitions, expectedTransitions) ->
+                log.debug("submitAutomaton: {} of {} transitions parsed", transitions, expectedTransitions);
+        DenseAutomaton automaton;
+        if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            automaton = automatonParserService.parseJson(body, partial, listener);
+        } else {
+            Charset charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+            automaton = automatonParserService.parseText(new InputStreamReader(body, charset), partial, listener);
+        }
+        IOrderingJob job = orderingJobService.submitDense(Collections.singletonList(automaton),
+                timeBudgetMillis == null ? null : Duration.ofMillis(timeBudgetMillis), memoryBudgetBytes);
+        return accepted(job, uriBuilder);
+    }
+
+    /**
+     * @param from number of results the client has already seen, only the later ones are listed
+     */
+    @GetMapping("/{id}")
+    public JobDto getJob(@PathVariable String id, @RequestParam(defaultValue = "0") int from) {
+        return JobDto.of(findJob(id), from);
+    }
+
+    /**
+     * Streams a {@code result} event per automaton as it finishes, the results finished before first, and
+     * completes when the job is finished.
+     */
+    @GetMapping(path = "/{id}/results", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamResults(@PathVariable String id) {
+        IOrderingJob job = findJob(id);
+        // the job has a deadline, the stream ends with it
+        SseEmitter emitter = new SseEmitter(0L);
+        Runnable unsubscribe = job.subscribe(result -> {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(JobResultDto.of(result)));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("streamResults: client of job {} is gone", id);
+                emitter.completeWithError(e);
+            }
+        }, emitter::complete);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        return emitter;
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id) {
+        findJob(id);
+        return orderingJobService.cancel(id) ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> onRejected(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "60").body(e.getMessage());
+    }
+
+    /**
+     * Unlike a full queue, which frees up, the job would never fit, so there is no point in retrying.
+     */
+    @ExceptionHandler(JobTooLargeException.class)
+    public ResponseEntity<String> onTooLarge(JobTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class, MalformedAutomatonException.class})
+    public ResponseEntity<String> onMalformed(Exception e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private static ResponseEntity<JobDto> accepted(IOrderingJob job, UriComponentsBuilder uriBuilder) {
+        return ResponseEntity.accepted()
+                .location(uriBuilder.path("/api/jobs/{id}").buildAndExpand(job.getId()).toUri())
+                .body(JobDto.of(job, job.getSize()));
+    }
+
+    private IOrderingJob findJob(String id) {
+        IOrderingJob job = orderingJobService.getJob(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No job " + id);
+        }
+        return job;
+    }
+}
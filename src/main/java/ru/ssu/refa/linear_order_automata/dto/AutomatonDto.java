@@ -0,0 +1,72 @@
+package ru.ssu.refa.linear_order_automata.dto;
+
+import lombok.Data;
+import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.InputSignal;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link Automaton} as it is submitted: states by their labels, signals by their names and the transitions as
+ * a list.
+ */
+@Data
+public class AutomatonDto {
+    private List<Integer> states;
+    private List<String> inputSignals;
+    private List<String> outputSignals;
+    private List<TransitionDto> transitions;
+
+    /**
+     * @throws IllegalArgumentException if a transition refers to a state or a signal which is not declared
+     */
+    public Automaton toAutomaton() {
+        if (states == null || inputSignals == null || outputSignals == null) {
+            throw new IllegalArgumentException("Automaton must declare its states, input and output signals");
+        }
+        List<State> stateList = new ArrayList<>();
+        states.forEach(label -> stateList.add(new State(label)));
+        List<InputSignal> inputSignalList = new ArrayList<>();
+        inputSignals.forEach(name -> inputSignalList.add(new InputSignal(name)));
+        List<OutputSignal> outputSignalList = new ArrayList<>();
+        outputSignals.forEach(name -> outputSignalList.add(new OutputSignal(name)));
+
+        Set<State> declaredStates = new HashSet<>(stateList);
+        Set<InputSignal> declaredInputSignals = new HashSet<>(inputSignalList);
+        Set<OutputSignal> declaredOutputSignals = new HashSet<>(outputSignalList);
+        Map<State, Map<InputSignal, State>> transitionMap = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputMap = new HashMap<>();
+        if (transitions != null) {
+            for (TransitionDto transition : transitions) {
+                State state = declared(new State(transition.getState()), declaredStates, transition);
+                InputSignal inputSignal = declared(new InputSignal(transition.getInput()), declaredInputSignals,
+                        transition);
+                if (transition.getTarget() != null) {
+                    transitionMap.computeIfAbsent(state, s -> new HashMap<>()).put(inputSignal,
+                            declared(new State(transition.getTarget()), declaredStates, transition));
+                }
+                if (transition.getOutput() != null) {
+                    outputMap.computeIfAbsent(state, s -> new HashMap<>()).put(inputSignal,
+                            declared(new OutputSignal(transition.getOutput()), declaredOutputSignals, transition));
+                }
+            }
+        }
+
+        return new Automaton(stateList, inputSignalList, outputSignalList, transitionMap, outputMap);
+    }
+
+    private static <T> T declared(T element, Set<T> declared, TransitionDto transition) {
+        if (!declared.contains(element)) {
+            throw new IllegalArgumentException("Transition " + transition + " refers to " + element
+                    + " which is not declared");
+        }
+        return element;
+    }
+}
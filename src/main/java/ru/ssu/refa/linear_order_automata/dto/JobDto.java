@@ -0,0 +1,27 @@
+package ru.ssu.refa.linear_order_automata.dto;
+
+import lombok.Data;
+import ru.ssu.refa.linear_order_automata.model.JobResult;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJob;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+public class JobDto {
+    private final String id;
+    private final IOrderingJob.Status status;
+    private final int size;
+    /**
+     * Number of automata finished, the results listed are those finished from the position asked for on.
+     */
+    private final int finished;
+    private final List<JobResultDto> results;
+
+    public static JobDto of(IOrderingJob job, int from) {
+        List<JobResult> results = job.getResults();
+        return new JobDto(job.getId(), job.getStatus(), job.getSize(), results.size(),
+                results.subList(Math.min(Math.max(from, 0), results.size()), results.size()).stream()
+                        .map(JobResultDto::of).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,18 @@
+package ru.ssu.refa.linear_order_automata.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class JobRequestDto {
+    private List<AutomatonDto> automata;
+    /**
+     * Time the job may take, the configured budget if missing.
+     */
+    private Long timeBudgetMillis;
+    /**
+     * Bytes an automaton may be estimated to need, the configured budget if missing.
+     */
+    private Long memoryBudgetBytes;
+}
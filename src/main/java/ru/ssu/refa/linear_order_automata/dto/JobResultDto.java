@@ -0,0 +1,33 @@
+package ru.ssu.refa.linear_order_automata.dto;
+
+import lombok.Data;
+import ru.ssu.refa.linear_order_automata.model.JobResult;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+public class JobResultDto {
+    private final int index;
+    private final JobResult.Outcome outcome;
+    private final boolean resolution;
+    private final String reason;
+    /**
+     * Labels of the states from the least to the greatest, if the automaton is ordered.
+     */
+    private final List<Integer> stateOrder;
+    private final List<String> outputSignalOrder;
+    private final long elapsedMillis;
+
+    public static JobResultDto of(JobResult result) {
+        return new JobResultDto(result.getIndex(), result.getOutcome(), result.isResolution(), result.getReason(),
+                result.getStateOrder() == null ? null
+                        : result.getStateOrder().stream().map(State::getLabel).collect(Collectors.toList()),
+                result.getOutputSignalOrder() == null ? null
+                        : result.getOutputSignalOrder().stream().map(OutputSignal::getName)
+                        .collect(Collectors.toList()),
+                result.getElapsedMillis());
+    }
+}
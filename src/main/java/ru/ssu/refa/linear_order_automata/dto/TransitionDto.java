@@ -0,0 +1,15 @@
+package ru.ssu.refa.linear_order_automata.dto;
+
+import lombok.Data;
+
+/**
+ * Transition of an automaton from {@code state} on {@code input}. The target and the output may be missing in a
+ * partial automaton.
+ */
+@Data
+public class TransitionDto {
+    private Integer state;
+    private String input;
+    private Integer target;
+    private String output;
+}
@@ -0,0 +1,11 @@
+package ru.ssu.refa.linear_order_automata.exception;
+
+/**
+ * The automaton has no linear order, found by a necessary condition before the search. The message is the reason
+ * reported to the caller.
+ */
+public class InfeasibleAutomatonException extends SymmetricRelationException {
+    public InfeasibleAutomatonException(String message) {
+        super(message);
+    }
+}
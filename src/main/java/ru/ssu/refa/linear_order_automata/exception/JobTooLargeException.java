@@ -0,0 +1,10 @@
+package ru.ssu.refa.linear_order_automata.exception;
+
+/**
+ * A job has more automata than the queue can ever hold, so submitting it again won't help.
+ */
+public class JobTooLargeException extends IllegalArgumentException {
+    public JobTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.ssu.refa.linear_order_automata.exception;
+
+import java.io.IOException;
+
+/**
+ * A file or a stream doesn't hold a well-formed automaton. The message tells where it is broken.
+ */
+public class MalformedAutomatonException extends IOException {
+    public MalformedAutomatonException(String message) {
+        super(message);
+    }
+
+    public MalformedAutomatonException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * States, signals, transitions and outputs added to an automaton. Transitions and outputs may start from states
+ * declared before, but they must not replace the ones defined already.
+ */
+@Data
+public class AutomatonDelta {
+    private final List<State> states;
+    private final List<InputSignal> inputSignals;
+    private final List<OutputSignal> outputSignals;
+    private final Map<State, Map<InputSignal, State>> transitions;
+    private final Map<State, Map<InputSignal, OutputSignal>> outputs;
+
+    public AutomatonDelta(List<State> states,
+                          List<InputSignal> inputSignals,
+                          List<OutputSignal> outputSignals,
+                          Map<State, Map<InputSignal, State>> transitions,
+                          Map<State, Map<InputSignal, OutputSignal>> outputs) {
+        this.states = states;
+        this.inputSignals = inputSignals;
+        this.outputSignals = outputSignals;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+}
@@ -0,0 +1,174 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * Binary relation on {@code 0..size-1} stored as a {@code size x size} bit matrix, one {@code long[]} per row.
+ * Bit {@code right} of row {@code left} is set when the pair {@code (left, right)} belongs to the relation.
+ */
+@EqualsAndHashCode
+public class BitRelation {
+    private final int size;
+    private final long[][] rows;
+    private long count;
+
+    public BitRelation(int size) {
+        this.size = size;
+        this.rows = new long[size][wordCount(size)];
+    }
+
+    private BitRelation(int size, long[][] rows, long count) {
+        this.size = size;
+        this.rows = rows;
+        this.count = count;
+    }
+
+    public static BitRelation identity(int size) {
+        BitRelation relation = new BitRelation(size);
+        for (int i = 0; i < size; i++) {
+            relation.add(i, i);
+        }
+        return relation;
+    }
+
+    public static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of pairs in the relation.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean contains(int left, int right) {
+        return (rows[left][right >>> 6] & (1L << right)) != 0;
+    }
+
+    /**
+     * @return {@code true} if the pair was not in the relation before
+     */
+    public boolean add(int left, int right) {
+        long[] row = rows[left];
+        long word = row[right >>> 6];
+        long updated = word | (1L << right);
+        if (updated == word) {
+            return false;
+        }
+        row[right >>> 6] = updated;
+        count++;
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the pair was in the relation before
+     */
+    public boolean remove(int left, int right) {
+        long[] row = rows[left];
+        long word = row[right >>> 6];
+        long updated = word & ~(1L << right);
+        if (updated == word) {
+            return false;
+        }
+        row[right >>> 6] = updated;
+        count--;
+        return true;
+    }
+
+    /**
+     * Returns the live bits of the row {@code left}. Callers must not modify the array, use
+     * {@link #unionRow(int, long[])} instead so that the pair count stays consistent.
+     */
+    public long[] getRow(int left) {
+        return rows[left];
+    }
+
+    /**
+     * Adds every pair {@code (left, j)} where bit {@code j} of {@code bits} is set.
+     *
+     * @return number of pairs that were not in the relation before
+     */
+    public int unionRow(int left, long[] bits) {
+        long[] row = rows[left];
+        int added = 0;
+        for (int i = 0; i < row.length; i++) {
+            long word = row[i];
+            long updated = word | bits[i];
+            if (updated != word) {
+                added += Long.bitCount(updated & ~word);
+                row[i] = updated;
+            }
+        }
+        count += added;
+        return added;
+    }
+
+    /**
+     * Replaces the word {@code word} of the row {@code left}, used to undo changes.
+     */
+    void setWord(int left, int word, long value) {
+        long[] row = rows[left];
+        count += Long.bitCount(value) - Long.bitCount(row[word]);
+        row[word] = value;
+    }
+
+    public void union(BitRelation relation) {
+        checkSize(relation);
+        for (int i = 0; i < size; i++) {
+            unionRow(i, relation.rows[i]);
+        }
+    }
+
+    public BitRelation reverse() {
+        BitRelation reversed = new BitRelation(size);
+        for (int left = 0; left < size; left++) {
+            long[] row = rows[left];
+            for (int i = 0; i < row.length; i++) {
+                long word = row[i];
+                while (word != 0) {
+                    int right = (i << 6) + Long.numberOfTrailingZeros(word);
+                    reversed.rows[right][left >>> 6] |= 1L << left;
+                    word &= word - 1;
+                }
+            }
+        }
+        reversed.count = count;
+        return reversed;
+    }
+
+    public BitRelation copy() {
+        long[][] copiedRows = new long[size][];
+        for (int i = 0; i < size; i++) {
+            copiedRows[i] = rows[i].clone();
+        }
+        return new BitRelation(size, copiedRows, count);
+    }
+
+    private void checkSize(BitRelation relation) {
+        if (relation.size != size) {
+            throw new IllegalArgumentException("Relations are defined on sets of different size: "
+                    + size + " and " + relation.size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int left = 0; left < size; left++) {
+            for (int right = 0; right < size; right++) {
+                if (contains(left, right)) {
+                    if (result.length() > 1) {
+                        result.append(", ");
+                    }
+                    result.append('(').append(left).append(", ").append(right).append(')');
+                }
+            }
+        }
+        return result.append(']').toString();
+    }
+}
@@ -0,0 +1,182 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Compiled form of {@link Automaton}: states, input and output signals are mapped to {@code 0..n-1} and
+ * transition and output functions are stored as flat int tables indexed by {@code state * inputCount + input}.
+ * Missing entries are stored as {@link #NONE}. The tables are arrays, or buffers viewing a mapped automaton file.
+ * <p>
+ * States are indexed in ascending order of their labels, so {@code i < j} for state indices holds exactly when
+ * {@code getState(i).compareTo(getState(j)) < 0}. Input and output signals keep the order of the source lists.
+ */
+@Getter
+public class DenseAutomaton {
+    public static final int NONE = -1;
+    /**
+     * Largest number of states whose ordered pairs {@code left * stateCount + right} fit into int indices.
+     */
+    public static final int MAX_STATE_COUNT = 46340;
+
+    private final List<State> states;
+    private final List<InputSignal> inputSignals;
+    private final List<OutputSignal> outputSignals;
+    private final int stateCount;
+    private final int inputCount;
+    private final int outputCount;
+    /**
+     * Tables of an automaton built in memory, null if the tables are buffers. Read them through
+     * {@link #getTargetState} and {@link #getOutputSignal}.
+     */
+    @Getter(AccessLevel.NONE)
+    private final int[] transitions;
+    @Getter(AccessLevel.NONE)
+    private final int[] outputs;
+    @Getter(AccessLevel.NONE)
+    private final IntBuffer transitionBuffer;
+    @Getter(AccessLevel.NONE)
+    private final IntBuffer outputBuffer;
+
+    public DenseAutomaton(List<State> states,
+                          List<InputSignal> inputSignals,
+                          List<OutputSignal> outputSignals,
+                          int[] transitions,
+                          int[] outputs) {
+        this(states, inputSignals, outputSignals, transitions.length, outputs.length, transitions, outputs, null,
+                null);
+    }
+
+    /**
+     * Reads the tables from position 0 of the buffers without copying them. Reading an array is faster than
+     * reading a buffer, arrays should be preferred unless the buffers are views of a mapped file.
+     */
+    public DenseAutomaton(List<State> states,
+                          List<InputSignal> inputSignals,
+                          List<OutputSignal> outputSignals,
+                          IntBuffer transitions,
+                          IntBuffer outputs) {
+        this(states, inputSignals, outputSignals, transitions.limit(), outputs.limit(), null, null, transitions,
+                outputs);
+    }
+
+    private DenseAutomaton(List<State> states,
+                           List<InputSignal> inputSignals,
+                           List<OutputSignal> outputSignals,
+                           int transitionLength,
+                           int outputLength,
+                           int[] transitions,
+                           int[] outputs,
+                           IntBuffer transitionBuffer,
+                           IntBuffer outputBuffer) {
+        this.states = states;
+        this.inputSignals = inputSignals;
+        this.outputSignals = outputSignals;
+        this.stateCount = states.size();
+        this.inputCount = inputSignals.size();
+        this.outputCount = outputSignals.size();
+        if (transitionLength != stateCount * inputCount || outputLength != stateCount * inputCount) {
+            throw new IllegalArgumentException("Tables must have " + stateCount * inputCount + " entries");
+        }
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.transitionBuffer = transitionBuffer;
+        this.outputBuffer = outputBuffer;
+    }
+
+    public static DenseAutomaton of(Automaton automaton) {
+        List<State> states = new ArrayList<>(automaton.getStates());
+        Collections.sort(states);
+        List<InputSignal> inputSignals = automaton.getInputSignals();
+        List<OutputSignal> outputSignals = automaton.getOutputSignals();
+
+        Map<OutputSignal, Integer> outputIndex = indexOf(outputSignals);
+
+        int inputCount = inputSignals.size();
+        int[] transitions = new int[states.size() * inputCount];
+        int[] outputs = new int[states.size() * inputCount];
+        Arrays.fill(transitions, NONE);
+        Arrays.fill(outputs, NONE);
+        for (int state = 0; state < states.size(); state++) {
+            for (int input = 0; input < inputCount; input++) {
+                State target = automaton.getTargetState(states.get(state), inputSignals.get(input));
+                if (target != null) {
+                    // states are sorted, a binary search avoids hashing them
+                    int index = Collections.binarySearch(states, target);
+                    if (index < 0) {
+                        throw new IllegalArgumentException("Automaton refers to " + target + " which is not declared");
+                    }
+                    transitions[state * inputCount + input] = index;
+                }
+                OutputSignal outputSignal = automaton.getOutputSignal(states.get(state), inputSignals.get(input));
+                if (outputSignal != null) {
+                    outputs[state * inputCount + input] = lookup(outputIndex, outputSignal);
+                }
+            }
+        }
+
+        return new DenseAutomaton(states, inputSignals, outputSignals, transitions, outputs);
+    }
+
+    public int getTargetState(int state, int input) {
+        int index = state * inputCount + input;
+        return transitions != null ? transitions[index] : transitionBuffer.get(index);
+    }
+
+    public int getOutputSignal(int state, int input) {
+        int index = state * inputCount + input;
+        return outputs != null ? outputs[index] : outputBuffer.get(index);
+    }
+
+    public State getState(int state) {
+        return states.get(state);
+    }
+
+    public int indexOf(State state) {
+        int index = Collections.binarySearch(states, state);
+        if (index < 0) {
+            throw new IllegalArgumentException("State " + state + " is not declared");
+        }
+        return index;
+    }
+
+    public OutputSignal getOutput(int outputSignal) {
+        return outputSignals.get(outputSignal);
+    }
+
+    /**
+     * Number of unordered state pairs, i.e. the number of pairs {@code (i, j)} with {@code i < j}.
+     *
+     * @throws ArithmeticException if the number doesn't fit into int
+     */
+    public int getPairCount() {
+        return Math.toIntExact((long) stateCount * (stateCount - 1) / 2);
+    }
+
+    /**
+     * Position of the pair {@code (left, right)}, {@code left < right}, in the row-major enumeration of all
+     * unordered state pairs.
+     */
+    public int getPairIndex(int left, int right) {
+        return (int) ((long) left * (2 * stateCount - left - 1) / 2 + (right - left - 1));
+    }
+
+    private static <T> Map<T, Integer> indexOf(List<T> elements) {
+        Map<T, Integer> index = new HashMap<>();
+        for (int i = 0; i < elements.size(); i++) {
+            index.put(elements.get(i), i);
+        }
+        return index;
+    }
+
+    private static <T> int lookup(Map<T, Integer> index, T element) {
+        Integer result = index.get(element);
+        if (result == null) {
+            throw new IllegalArgumentException("Automaton refers to " + element + " which is not declared");
+        }
+        return result;
+    }
+}
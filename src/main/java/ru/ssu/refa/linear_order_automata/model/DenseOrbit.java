@@ -0,0 +1,17 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.Data;
+
+/**
+ * Orbit over a {@link DenseAutomaton}. Pairs are encoded as {@code left * stateCount + right} in the transition
+ * orbit and as {@code left * outputCount + right} in the output orbit.
+ */
+@Data
+public class DenseOrbit {
+    private final long[] transitionOrbit;
+    private final long[] outputOrbit;
+
+    public int getPower() {
+        return transitionOrbit.length + outputOrbit.length;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * What became of one automaton of a batch job. The linear order is kept as the sequences of states and output
+ * signals from the least to the greatest, a finished job may be polled long after the automata are gone.
+ */
+@Data
+public class JobResult {
+    /**
+     * Position of the automaton in the submitted batch.
+     */
+    private final int index;
+    private final Outcome outcome;
+    private final boolean resolution;
+    /**
+     * Why the automaton has no linear order, or why it wasn't ordered.
+     */
+    private final String reason;
+    private final List<State> stateOrder;
+    private final List<OutputSignal> outputSignalOrder;
+    private final long elapsedMillis;
+
+    public static JobResult ordered(int index, LinearOrder linearOrder, List<State> stateOrder,
+                                    List<OutputSignal> outputSignalOrder, long elapsedMillis) {
+        return new JobResult(index, Outcome.ORDERED, linearOrder.isResolution(), linearOrder.getReason(),
+                stateOrder, outputSignalOrder, elapsedMillis);
+    }
+
+    public static JobResult givenUp(int index, Outcome outcome, String reason, long elapsedMillis) {
+        return new JobResult(index, outcome, false, reason, null, null, elapsedMillis);
+    }
+
+    public enum Outcome {
+        /**
+         * The search finished, with an order or with the proof that there is none.
+         */
+        ORDERED,
+        CANCELLED,
+        TIMED_OUT,
+        /**
+         * The automaton was estimated to need more memory than the job allows.
+         */
+        OVER_MEMORY_BUDGET,
+        FAILED
+    }
+}
@@ -0,0 +1,9 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.Data;
+
+@Data
+public class OrderingResult {
+    private final LinearOrder linearOrder;
+    private final SearchStatistics statistics;
+}
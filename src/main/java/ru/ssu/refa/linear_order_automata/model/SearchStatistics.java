@@ -0,0 +1,55 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * What one ordering of an automaton did. Counts and times of searches running in parallel, such as those of a
+ * portfolio or of separate components, are summed, so phase times may exceed the wall time of the call.
+ */
+@Data
+public class SearchStatistics {
+    /**
+     * Orbits calculated, up front or on demand.
+     */
+    private final long orbitCalculations;
+    /**
+     * Orbits calculated on demand which were found in the cache of the orbit provider. Orbits calculated up
+     * front are not counted.
+     */
+    private final long orbitCacheHits;
+    /**
+     * Updates of the transitive closures by an orbit and the number of pairs they were given.
+     */
+    private final long closureCalls;
+    private final long closurePairs;
+    /**
+     * Decisions made and undone by the searches.
+     */
+    private final long steps;
+    private final long rollbacks;
+    private final int maxDepth;
+    private final Map<Phase, Long> violations;
+    private final Map<Phase, Long> phaseNanos;
+
+    public enum Phase {
+        /**
+         * Canonical form of the automaton and translation of a cached order.
+         */
+        CACHE,
+        /**
+         * Quotient by equivalent states and lifting of its order.
+         */
+        MINIMIZATION,
+        /**
+         * Split into groups of connected states and merge of their orders.
+         */
+        DECOMPOSITION,
+        /**
+         * Feasibility checks and orbits calculated before the search.
+         */
+        ORBITS,
+        SEARCH
+    }
+}
@@ -0,0 +1,258 @@
+package ru.ssu.refa.linear_order_automata.model;
+
+import java.util.Arrays;
+
+/**
+ * Transitively closed antisymmetric relation which can be extended pair by pair. The relation is kept together
+ * with its reverse, so both the successors (a row) and the predecessors (a column) of an element are available
+ * as bit rows and adding a pair costs a handful of row ORs instead of a closure recalculation.
+ * <p>
+ * Changes can be undone: {@link #mark()} starts a level and {@link #rollback(int)} restores the relation as it
+ * was when the mark was taken. Levels nest. While a mark is open every changed word is saved to a trail once per
+ * level, so a level costs memory proportional to the words it changed rather than to the whole matrix. The saved
+ * copies of a word are chained from the latest to the earliest, which also tells at which level a pair was added.
+ */
+public class TransitiveClosure {
+    private static final int RELATION = 0;
+    private static final int REVERSE = 1;
+
+    private final BitRelation relation;
+    private final BitRelation reverse;
+    private final int wordCount;
+    private final long[] predecessors;
+    private final long[] successors;
+
+    /**
+     * Trail index of the latest saved copy of every word, {@code -1} if the word wasn't saved on any open level.
+     */
+    private int[][] lastSaved;
+    private int level;
+    private int lastLevel;
+    private int[] markLevels = new int[16];
+    private int[] markTrailSizes = new int[16];
+    private int markCount;
+    private long[] trailPositions = new long[64];
+    private long[] trailWords = new long[64];
+    private int[] trailPrevious = new int[64];
+    private int trailSize;
+
+    /**
+     * @param closedRelation transitively closed and antisymmetric relation, it becomes owned by this instance
+     */
+    public TransitiveClosure(BitRelation closedRelation) {
+        this(closedRelation, closedRelation.reverse());
+    }
+
+    private TransitiveClosure(BitRelation relation, BitRelation reverse) {
+        this.relation = relation;
+        this.reverse = reverse;
+        this.wordCount = BitRelation.wordCount(relation.getSize());
+        this.predecessors = new long[wordCount];
+        this.successors = new long[wordCount];
+    }
+
+    public BitRelation getRelation() {
+        return relation;
+    }
+
+    public int getSize() {
+        return relation.getSize();
+    }
+
+    public long getCount() {
+        return relation.getCount();
+    }
+
+    public boolean contains(int left, int right) {
+        return relation.contains(left, right);
+    }
+
+    /**
+     * Adds the pair {@code (left, right)} together with every pair implied by transitivity, i.e. all
+     * {@code (x, y)} with {@code x <= left} and {@code right <= y}.
+     *
+     * @return {@code false} if the pair closes a cycle, in which case the relation is left unchanged
+     */
+    public boolean add(int left, int right) {
+        if (left == right || relation.contains(left, right)) {
+            if (!relation.contains(left, right)) {
+                save(RELATION, left, right >>> 6);
+                save(REVERSE, right, left >>> 6);
+                relation.add(left, right);
+                reverse.add(right, left);
+            }
+            return true;
+        }
+
+        // successors of right intersect predecessors of left only if right <= left already holds
+        System.arraycopy(relation.getRow(right), 0, successors, 0, wordCount);
+        System.arraycopy(reverse.getRow(left), 0, predecessors, 0, wordCount);
+        successors[right >>> 6] |= 1L << right;
+        predecessors[left >>> 6] |= 1L << left;
+        for (int i = 0; i < wordCount; i++) {
+            if ((successors[i] & predecessors[i]) != 0) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < wordCount; i++) {
+            long word = predecessors[i];
+            while (word != 0) {
+                unionRow(RELATION, (i << 6) + Long.numberOfTrailingZeros(word), successors);
+                word &= word - 1;
+            }
+        }
+        for (int i = 0; i < wordCount; i++) {
+            long word = successors[i];
+            while (word != 0) {
+                unionRow(REVERSE, (i << 6) + Long.numberOfTrailingZeros(word), predecessors);
+                word &= word - 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new level of changes.
+     *
+     * @return the mark to pass to {@link #rollback(int)}
+     */
+    public int mark() {
+        if (lastSaved == null) {
+            int words = relation.getSize() * wordCount;
+            lastSaved = new int[][]{new int[words], new int[words]};
+            Arrays.fill(lastSaved[RELATION], -1);
+            Arrays.fill(lastSaved[REVERSE], -1);
+        }
+        if (markCount == markLevels.length) {
+            markLevels = Arrays.copyOf(markLevels, markCount * 2);
+            markTrailSizes = Arrays.copyOf(markTrailSizes, markCount * 2);
+        }
+        level = ++lastLevel;
+        markLevels[markCount] = level;
+        markTrailSizes[markCount] = trailSize;
+        return markCount++;
+    }
+
+    /**
+     * Undoes every change made since {@code mark} was taken and closes it together with the marks taken after it.
+     */
+    public void rollback(int mark) {
+        if (mark < 0 || mark >= markCount) {
+            throw new IllegalArgumentException("Mark " + mark + " is not open, open marks: " + markCount);
+        }
+        int trailStart = markTrailSizes[mark];
+        for (int i = trailSize - 1; i >= trailStart; i--) {
+            long position = trailPositions[i];
+            int index = (int) (position >>> 1);
+            BitRelation target = (position & 1) == RELATION ? relation : reverse;
+            target.setWord(index / wordCount, index % wordCount, trailWords[i]);
+            lastSaved[(int) (position & 1)][index] = trailPrevious[i];
+        }
+        trailSize = trailStart;
+        markCount = mark;
+        level = markCount > 0 ? markLevels[markCount - 1] : 0;
+    }
+
+    /**
+     * Mark on whose level the pair {@code (left, right)} of the relation was added. Costs one step per open level
+     * which changed the word of the pair.
+     *
+     * @return the mark, {@code -1} if the pair was in the relation before the first open mark was taken
+     */
+    public int getAddedMark(int left, int right) {
+        if (markCount == 0) {
+            return -1;
+        }
+        long bit = 1L << right;
+        for (int i = lastSaved[RELATION][left * wordCount + (right >>> 6)]; i >= 0; i = trailPrevious[i]) {
+            // copies are saved before the first change on their level, the latest one without the pair is the level
+            if ((trailWords[i] & bit) == 0) {
+                return markOf(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Identifier of the innermost open level, {@code 0} if no mark is open. Identifiers grow and are never reused:
+     * as long as a level is open, the relation contains every pair it had while that level was the innermost one.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isOpen(int level) {
+        return level == 0 || Arrays.binarySearch(markLevels, 0, markCount, level) >= 0;
+    }
+
+    /**
+     * Number of saved words, i.e. the memory held for undoing the open levels.
+     */
+    public int getTrailSize() {
+        return trailSize;
+    }
+
+    /**
+     * Copy of the relation without the marks and the trail.
+     */
+    public TransitiveClosure copy() {
+        return new TransitiveClosure(relation.copy(), reverse.copy());
+    }
+
+    private void unionRow(int matrix, int row, long[] bits) {
+        BitRelation target = matrix == RELATION ? relation : reverse;
+        if (markCount > 0) {
+            long[] words = target.getRow(row);
+            for (int i = 0; i < wordCount; i++) {
+                if ((bits[i] & ~words[i]) != 0) {
+                    save(matrix, row, i);
+                }
+            }
+        }
+        target.unionRow(row, bits);
+    }
+
+    private void save(int matrix, int row, int word) {
+        if (markCount == 0) {
+            return;
+        }
+        int index = row * wordCount + word;
+        int previous = lastSaved[matrix][index];
+        if (previous >= markTrailSizes[markCount - 1]) {
+            // already saved on this level
+            return;
+        }
+        if (trailSize == trailPositions.length) {
+            trailPositions = Arrays.copyOf(trailPositions, trailSize * 2);
+            trailWords = Arrays.copyOf(trailWords, trailSize * 2);
+            trailPrevious = Arrays.copyOf(trailPrevious, trailSize * 2);
+        }
+        trailPositions[trailSize] = ((long) index << 1) | matrix;
+        trailWords[trailSize] = (matrix == RELATION ? relation : reverse).getRow(row)[word];
+        trailPrevious[trailSize] = previous;
+        lastSaved[matrix][index] = trailSize++;
+    }
+
+    /**
+     * @return the innermost open mark whose level had started when the trail reached {@code trailIndex}
+     */
+    private int markOf(int trailIndex) {
+        int low = 0;
+        int high = markCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (markTrailSizes[middle] <= trailIndex) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return relation.toString();
+    }
+}
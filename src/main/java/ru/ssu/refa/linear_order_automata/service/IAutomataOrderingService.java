@@ -1,10 +1,36 @@
 package ru.ssu.refa.linear_order_automata.service;
 
 import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
 import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.OrderingResult;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public interface IAutomataOrderingService {
 
     LinearOrder orderAutomaton(Automaton automaton);
 
+    LinearOrder orderAutomaton(DenseAutomaton automaton);
+
+    /**
+     * Same as {@link #orderAutomaton(DenseAutomaton)}, but the orbit calculation and every search stop at their
+     * next check once {@code cancelled} is set, including those running on pool threads. The ordering never sets
+     * the flag itself.
+     *
+     * @throws CancellationException if {@code cancelled} is set before the ordering finishes
+     */
+    LinearOrder orderAutomaton(DenseAutomaton automaton, AtomicBoolean cancelled);
+
+    /**
+     * Orders {@code automaton} and records what the ordering did, whether metrics are enabled or not.
+     */
+    OrderingResult orderAutomatonWithStatistics(Automaton automaton);
+
+    /**
+     * Orders {@code automaton} and keeps the order for the deltas applied to the returned session.
+     */
+    IOrderingSession openSession(Automaton automaton);
+
 }
@@ -7,9 +7,17 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public interface IAutomataUtilsService {
 
+    /**
+     * Result of {@link #tryUpdateTransitiveClosure(TransitiveClosure, long[], boolean)} when the closure stays
+     * antisymmetric.
+     */
+    long NO_VIOLATION = -1;
+
     List<Pair<State>> findAllStatePairs(List<State> states);
 
     Set<Pair<State>> getTransitionOrbit(Automaton automaton, Pair<State> inputPair,
@@ -20,6 +28,26 @@ public interface IAutomataUtilsService {
 
     Map<Pair<State>, Orbit> getOrbits(Automaton automaton, Collection<Pair<State>> allStatePairs) throws SymmetricRelationException;
 
+    long[] getTransitionOrbit(DenseAutomaton automaton, int left, int right,
+                              DenseOrbit[] orbitCache) throws SymmetricRelationException;
+
+    long[] getOutputOrbit(DenseAutomaton automaton, long[] transitionOrbit) throws SymmetricRelationException;
+
+    DenseOrbit[] getOrbits(DenseAutomaton automaton) throws SymmetricRelationException;
+
+    IOrbitProvider getOrbitProvider(DenseAutomaton automaton) throws SymmetricRelationException;
+
+    /**
+     * Same as {@link #getOrbitProvider(DenseAutomaton)}, but the pair graph and the orbits calculated up front are
+     * given up once {@code cancelled} is set.
+     *
+     * @throws CancellationException if {@code cancelled} is set before the provider is ready
+     */
+    IOrbitProvider getOrbitProvider(DenseAutomaton automaton,
+                                    AtomicBoolean cancelled) throws SymmetricRelationException;
+
+    <T extends Orderable> Set<Pair<T>> toPairs(long[] encodedPairs, List<T> elements);
+
     <T extends Orderable> Set<Pair<T>> getTransitiveClosure(Set<Pair<T>> relation, Collection<T> elements) throws SymmetricRelationException;
 
     <T extends Orderable> boolean isOrderConstructed(Set<Pair<T>> relation, int totalCount);
@@ -29,4 +57,24 @@ public interface IAutomataUtilsService {
     <T extends Orderable> List<T> findLinkage(Set<Pair<T>> order);
 
     <T extends Orderable> Set<Pair<T>> doTopologicalSort(List<T> set, Set<Pair<T>> relation);
+
+    BitRelation getTransitiveClosure(BitRelation relation) throws SymmetricRelationException;
+
+    void updateTransitiveClosure(TransitiveClosure closure, long[] delta, boolean isReverted) throws SymmetricRelationException;
+
+    /**
+     * Same as {@link #updateTransitiveClosure(TransitiveClosure, long[], boolean)}, but a violation is returned
+     * instead of thrown: searches run into one at almost every dead end.
+     *
+     * @return the pair of {@code delta} closing a cycle, encoded as given, or {@link #NO_VIOLATION}
+     */
+    long tryUpdateTransitiveClosure(TransitiveClosure closure, long[] delta, boolean isReverted);
+
+    boolean isOrderConstructed(BitRelation relation);
+
+    BitRelation revertRelation(BitRelation relation);
+
+    <T extends Orderable> Set<Pair<T>> toPairs(BitRelation relation, List<T> elements);
+
+    <T extends Orderable> Set<Pair<T>> doTopologicalSort(List<T> elements, BitRelation relation);
 }
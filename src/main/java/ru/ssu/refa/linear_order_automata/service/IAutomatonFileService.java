@@ -0,0 +1,24 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface IAutomatonFileService {
+
+    /**
+     * Maps the file into memory. The tables of the returned automaton are views of the mapping, the file must not
+     * change while the automaton is in use.
+     *
+     * @throws ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException if the file doesn't hold an
+     *                                                                                 automaton
+     */
+    DenseAutomaton read(Path path) throws IOException;
+
+    /**
+     * Writes the automaton to the file, replacing its content.
+     */
+    void write(DenseAutomaton automaton, Path path) throws IOException;
+
+}
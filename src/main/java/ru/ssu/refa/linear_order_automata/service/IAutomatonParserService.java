@@ -0,0 +1,38 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Parses automata as they are read, into the tables of a {@link DenseAutomaton}. Both formats declare the states,
+ * the input and the output signals before the transitions, which are then stored as they come.
+ */
+public interface IAutomatonParserService {
+
+    /**
+     * Parses an object with the fields {@code states}, an array of labels, {@code inputSignals} and
+     * {@code outputSignals}, arrays of names, and {@code transitions}, an array of objects with the fields
+     * {@code state}, {@code input}, {@code target} and {@code output}. The target and the output may be null or
+     * missing if {@code allowPartial}.
+     *
+     * @throws MalformedAutomatonException if the input is not such an object, refers to undeclared states or
+     *                                     signals, defines a transition twice or misses one
+     */
+    DenseAutomaton parseJson(InputStream input, boolean allowPartial, IParseProgressListener listener)
+            throws IOException;
+
+    /**
+     * Parses lines of whitespace separated tokens. The lines {@code states}, {@code inputs} and {@code outputs}
+     * followed by the labels or the names come first, then a line {@code state input target output} per
+     * transition, with {@code -} for a missing target or output. Empty lines and lines starting with {@code #}
+     * are skipped.
+     *
+     * @throws MalformedAutomatonException as {@link #parseJson}
+     */
+    DenseAutomaton parseText(Reader input, boolean allowPartial, IParseProgressListener listener) throws IOException;
+
+}
@@ -0,0 +1,35 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+
+/**
+ * Orbits of the state pairs of one automaton, as needed by the ordering search. States are indices of the
+ * {@link ru.ssu.refa.linear_order_automata.model.DenseAutomaton} the provider was created for.
+ */
+public interface IOrbitProvider {
+
+    /**
+     * @throws SymmetricRelationException if the orbit of the pair violates antisymmetry
+     */
+    DenseOrbit getOrbit(int left, int right) throws SymmetricRelationException;
+
+    /**
+     * Power of the orbit of the pair or its estimate, used to choose the next pair without calculating orbits.
+     */
+    int estimatePower(int left, int right);
+
+    /**
+     * Number of orbits calculated for this provider so far, up front or on demand.
+     */
+    default long getCalculationCount() {
+        return 0;
+    }
+
+    /**
+     * Number of orbits returned from a cache of orbits calculated on demand.
+     */
+    default long getCacheHitCount() {
+        return 0;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.model.JobResult;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A batch of automata ordered in the background, see {@link IOrderingJobService}.
+ */
+public interface IOrderingJob {
+
+    String getId();
+
+    Status getStatus();
+
+    /**
+     * @return number of automata submitted
+     */
+    int getSize();
+
+    /**
+     * @return results of the automata finished so far, in the order they finished
+     */
+    List<JobResult> getResults();
+
+    /**
+     * Hands the results finished so far and then every later one to {@code onResult}, and calls {@code onFinish}
+     * once every automaton has its result. Both are called in that order on a delivery thread, never under the
+     * lock of the job, and not after unsubscribing.
+     *
+     * @return unsubscribes
+     */
+    Runnable subscribe(Consumer<JobResult> onResult, Runnable onFinish);
+
+    enum Status {
+        RUNNING, FINISHED, CANCELLED, TIMED_OUT
+    }
+}
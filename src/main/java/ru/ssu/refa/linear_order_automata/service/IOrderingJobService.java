@@ -0,0 +1,43 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.exception.JobTooLargeException;
+import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+public interface IOrderingJobService {
+
+    /**
+     * Queues the automata for the workers, which take them from the running jobs in turn.
+     *
+     * @param timeBudget   time the job may take, or null for the configured budget. A longer one is cut to it.
+     * @param memoryBudget bytes an automaton may be estimated to need, or null for the configured budget. A larger
+     *                     one is cut to it.
+     * @throws RejectedExecutionException if the queue has no room for the automata now
+     * @throws JobTooLargeException       if the queue has no room for them even when empty
+     * @throws IllegalArgumentException   if there are no automata or one of them is malformed
+     */
+    IOrderingJob submit(List<Automaton> automata, Duration timeBudget, Long memoryBudget);
+
+    /**
+     * As {@link #submit}, for automata parsed or read into their tables directly.
+     */
+    IOrderingJob submitDense(List<DenseAutomaton> automata, Duration timeBudget, Long memoryBudget);
+
+    /**
+     * @return the job, or null if there is none with the id or its results are no longer kept
+     */
+    IOrderingJob getJob(String id);
+
+    /**
+     * Gives up the automata of the job which are not finished yet. Searches running are stopped at their next
+     * decision.
+     *
+     * @return false if there is no running job with the id
+     */
+    boolean cancel(String id);
+
+}
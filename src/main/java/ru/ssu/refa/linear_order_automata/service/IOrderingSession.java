@@ -0,0 +1,27 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.AutomatonDelta;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+
+/**
+ * Linear order of an automaton which grows by {@link AutomatonDelta deltas}, kept up to date delta by delta.
+ */
+public interface IOrderingSession {
+
+    Automaton getAutomaton();
+
+    LinearOrder getLinearOrder();
+
+    /**
+     * Extends the current order to the added states and signals if it stays monotone. Otherwise the grown automaton
+     * is searched again, guided by the current order. The orbits of the last search are carried over unless a delta
+     * since has added a transition or an output of an old state, the closure is not.
+     *
+     * @return linear order of the automaton with {@code delta} added
+     * @throws IllegalArgumentException if {@code delta} declares a state or signal again or replaces a
+     *                                  transition or output, the session is left unchanged then
+     */
+    LinearOrder apply(AutomatonDelta delta);
+
+}
@@ -0,0 +1,17 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+/**
+ * Told how far the parsing of an automaton has got.
+ */
+@FunctionalInterface
+public interface IParseProgressListener {
+    IParseProgressListener NONE = (transitions, expectedTransitions) -> {
+    };
+
+    /**
+     * @param transitions         number of transitions parsed so far
+     * @param expectedTransitions number of transitions of a complete automaton with the declared states and input
+     *                            signals
+     */
+    void onProgress(long transitions, long expectedTransitions);
+}
@@ -0,0 +1,13 @@
+package ru.ssu.refa.linear_order_automata.service;
+
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.SearchStatistics;
+
+/**
+ * Receives the statistics of the orderings done while metrics are enabled. Called on the thread which ordered the
+ * automaton, possibly from several threads at once.
+ */
+public interface ISearchStatisticsListener {
+
+    void onOrdered(LinearOrder linearOrder, SearchStatistics statistics);
+}
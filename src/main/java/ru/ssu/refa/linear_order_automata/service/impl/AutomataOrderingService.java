@@ -1,14 +1,29 @@
 package ru.ssu.refa.linear_order_automata.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.InfeasibleAutomatonException;
 import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
 import ru.ssu.refa.linear_order_automata.model.*;
 import ru.ssu.refa.linear_order_automata.service.IAutomataOrderingService;
 import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+import ru.ssu.refa.linear_order_automata.service.IOrderingSession;
+import ru.ssu.refa.linear_order_automata.service.ISearchStatisticsListener;
 
-import java.util.*;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.Comparator.comparingInt;
 
@@ -17,189 +32,313 @@ import static java.util.Comparator.comparingInt;
 public class AutomataOrderingService implements IAutomataOrderingService {
 
     private final IAutomataUtilsService automataUtilsService;
+    private final ForkJoinPool searchPool;
+    private final AutomataProperties.Search searchProperties;
+    private final CanonicalOrderCache orderCache;
+    private final List<ISearchStatisticsListener> statisticsListeners;
 
+    /**
+     * Searches on the common pool with the default properties and without statistics listeners.
+     */
     public AutomataOrderingService(IAutomataUtilsService automataUtilsService) {
+        this(automataUtilsService, ForkJoinPool.commonPool(), new AutomataProperties());
+    }
+
+    /**
+     * @param statisticsListeners receive the statistics of every ordering if metrics are enabled
+     */
+    @Autowired
+    public AutomataOrderingService(IAutomataUtilsService automataUtilsService, AutomataProperties properties,
+                                   List<ISearchStatisticsListener> statisticsListeners) {
+        this(automataUtilsService, new ForkJoinPool(properties.getSearch().getParallelism()), properties,
+                properties.getMetrics().isEnabled() ? statisticsListeners : Collections.emptyList());
+    }
+
+    /**
+     * Searches on the given pool without statistics listeners, {@link #shutdown()} shuts the pool down.
+     */
+    AutomataOrderingService(IAutomataUtilsService automataUtilsService, ForkJoinPool searchPool,
+                            AutomataProperties properties) {
+        this(automataUtilsService, searchPool, properties, Collections.emptyList());
+    }
+
+    private AutomataOrderingService(IAutomataUtilsService automataUtilsService, ForkJoinPool searchPool,
+                                    AutomataProperties properties,
+                                    List<ISearchStatisticsListener> statisticsListeners) {
+        AutomataProperties.Cache cacheProperties = properties.getCache();
         this.automataUtilsService = automataUtilsService;
+        this.searchPool = searchPool;
+        this.searchProperties = properties.getSearch();
+        this.orderCache = cacheProperties.getCapacity() > 0
+                ? new CanonicalOrderCache(cacheProperties.getCapacity(), cacheProperties.getCanonizationNodeLimit())
+                : null;
+        this.statisticsListeners = statisticsListeners;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // has no effect on the common pool
+        searchPool.shutdown();
     }
 
     @Override
     public LinearOrder orderAutomaton(Automaton automaton) {
         log.debug("orderAutomaton: automaton - {}", automaton);
+        return orderAutomaton(DenseAutomaton.of(automaton));
+    }
 
-        List<Pair<State>> allStatePairs = automataUtilsService.findAllStatePairs(automaton.getStates());
-        log.trace("allStatePairs - {}", allStatePairs);
+    @Override
+    public LinearOrder orderAutomaton(DenseAutomaton automaton) {
+        return orderAutomaton(automaton, new AtomicBoolean());
+    }
 
-        Map<Pair<State>, Orbit> orbits;
-        try {
-            orbits = automataUtilsService.getOrbits(automaton, allStatePairs);
-            log.trace("orbits - {}", orbits);
-        } catch (SymmetricRelationException e) {
-            log.error("Found symmetric pair during calculation of orbits: " + e.getMessage(), e);
+    @Override
+    public LinearOrder orderAutomaton(DenseAutomaton automaton, AtomicBoolean cancelled) {
+        return record(recorder -> orderAutomaton(automaton, cancelled, recorder));
+    }
 
-            LinearOrder linearOrder = new LinearOrder(false,
-                    "The property of antisymmetry is violated on the step of orbits calculation");
-            log.debug("orderAutomaton: result - {}", linearOrder);
-            return linearOrder;
-        }
+    @Override
+    public OrderingResult orderAutomatonWithStatistics(Automaton automaton) {
+        log.debug("orderAutomatonWithStatistics: automaton - {}", automaton);
+        DenseAutomaton denseAutomaton = DenseAutomaton.of(automaton);
+        SearchRecorder recorder = new SearchRecorder();
+        LinearOrder linearOrder = orderAutomaton(denseAutomaton, new AtomicBoolean(), recorder);
+        SearchStatistics statistics = recorder.getStatistics();
+        publish(linearOrder, statistics);
+        return new OrderingResult(linearOrder, statistics);
+    }
 
-        List<Pair<State>> sortedStatePairs = sortPairsByOrbitPower(orbits);
-        log.trace("sortedStatePairs - {}", sortedStatePairs);
-
-        Set<Pair<State>> wRelation = new HashSet<>();
-        automaton.getStates().forEach(state -> wRelation.add(new Pair<>(state, state)));
-        Set<Pair<OutputSignal>> w1Relation = new HashSet<>();
-        automaton.getOutputSignals().forEach(outputSignal -> w1Relation.add(new Pair<>(outputSignal, outputSignal)));
-        log.trace("w and w1 are initialized: w - {}, w1 - {}", wRelation, w1Relation);
-
-        int stepNo = 0;
-        Deque<Step> steps = new LinkedList<>();
-        steps.push(new Step(wRelation, w1Relation));
-        log.trace("[{}] - stack is initiated", stepNo++);
-
-        Pair<State> currentPair;
-        while (true) {
-            Step previousStep = steps.peek();
-            log.trace("previousStep - {}", previousStep);
-
-            // previousStep mayn't be null here, so we can skip an assertion
-            if (automataUtilsService.isOrderConstructed(previousStep.wRelation, automaton.getStates().size())) {
-                Set<Pair<OutputSignal>> lOrderOnOutputSet = automataUtilsService.doTopologicalSort(
-                        automaton.getOutputSignals(), previousStep.w1Relation);
-                LinearOrder linearOrder = new LinearOrder(previousStep.wRelation, lOrderOnOutputSet);
-                log.debug("orderAutomaton: result - {}", linearOrder);
-                return linearOrder;
-            }
+    @Override
+    public IOrderingSession openSession(Automaton automaton) {
+        log.debug("openSession: automaton - {}", automaton);
+        return new OrderingSession(this, automataUtilsService, automaton);
+    }
 
-            Optional<Pair<State>> nextPair = selectNextPair(sortedStatePairs, previousStep.wRelation);
-            if (nextPair.isEmpty()) {
-                LinearOrder linearOrder = new LinearOrder(false, "Can't select next pair for order construction");
-                log.debug("orderAutomaton: result - {}", linearOrder);
-                return linearOrder;
-            }
-            currentPair = nextPair.get();
-            log.trace("currentPair - {}", currentPair);
+    /**
+     * @return number of automata whose orders are cached, up to renaming
+     */
+    int getCachedOrderCount() {
+        return orderCache == null ? 0 : orderCache.size();
+    }
 
-            try {
-                Order partialOrder = tryToAddOrbits(previousStep, automaton, orbits.get(currentPair).getTransitionOrbit(),
-                        orbits.get(currentPair).getOutputOrbit(), false);
-                log.trace("partialOrder - {}", partialOrder);
-                if (!partialOrder.isPairReverted()) {
-                    steps.push(new Step(currentPair, false, partialOrder.getWRelation(), partialOrder.getW1Relation()));
-                    log.trace("[{}] - added straight pair {} to stack", stepNo++, currentPair);
-                } else {
-                    Pair<State> currentRevertedPair = currentPair.getRevertedPair();
-                    steps.push(new Step(currentRevertedPair, true, partialOrder.getWRelation(), partialOrder.getW1Relation()));
-                    log.trace("[{}] - added reverted pair {} to stack", stepNo++, currentRevertedPair);
-                }
-            } catch (SymmetricRelationException e) {
-                log.trace("Straight and reverted pair {} violates antisymmetry -> roll back", currentPair);
-
-                while (true) {
-                    // initial step has isReverted = false, so we can skip an assertion
-                    while (steps.peek().isReverted) {
-                        steps.pop();
-                        log.trace("[{}] - removed pair {} from stack", stepNo++, currentPair);
-                    }
-
-                    if (steps.peek().currentPair == null) {
-                        LinearOrder linearOrder = new LinearOrder(false,
-                                "Rolled back to the root of stack, all options violate antisymmetry");
-                        log.debug("orderAutomaton: result - {}", linearOrder);
-                        return linearOrder;
-                    }
-
-                    Step stepToRevert = steps.pop();
-                    log.trace("stepToRevert - {}", stepToRevert);
-                    Pair<State> pairOfStepToRevert = stepToRevert.currentPair;
-                    try {
-                        Order partialOrder = tryToAddOrbits(steps.peek(), automaton,
-                                automataUtilsService.revertRelation(orbits.get(pairOfStepToRevert).getTransitionOrbit()),
-                                automataUtilsService.revertRelation(orbits.get(pairOfStepToRevert).getOutputOrbit()),
-                                true
-                        );
-                        log.trace("partialOrder - {}", partialOrder);
-                        steps.push(new Step(pairOfStepToRevert.getRevertedPair(), true, partialOrder.getWRelation(), partialOrder.getW1Relation()));
-                        break;
-                    } catch (SymmetricRelationException ex) {
-                        log.error("Reverted pair violates antisymmetry, continue rolling back");
-                    }
-                }
-            }
+    /**
+     * Runs {@code ordering} with a recorder if metrics are enabled and hands the statistics to the listeners.
+     */
+    private LinearOrder record(Function<SearchRecorder, LinearOrder> ordering) {
+        if (statisticsListeners.isEmpty()) {
+            return ordering.apply(SearchRecorder.DISABLED);
         }
+        SearchRecorder recorder = new SearchRecorder();
+        LinearOrder linearOrder = ordering.apply(recorder);
+        publish(linearOrder, recorder.getStatistics());
+        return linearOrder;
     }
 
-    private Order tryToAddOrbits(Step previousStep, Automaton automaton, Set<Pair<State>> transitionOrbit,
-                                 Set<Pair<OutputSignal>> outputOrbit, boolean isReverted) throws SymmetricRelationException {
-        Set<Pair<State>> wRelation = new HashSet<>(previousStep.wRelation);
-        Set<Pair<OutputSignal>> w1Relation = new HashSet<>(previousStep.w1Relation);
-        try {
-            mergeRelations(wRelation, transitionOrbit);
-            wRelation = automataUtilsService.getTransitiveClosure(wRelation, automaton.getStates());
+    private void publish(LinearOrder linearOrder, SearchStatistics statistics) {
+        for (ISearchStatisticsListener listener : statisticsListeners) {
+            listener.onOrdered(linearOrder, statistics);
+        }
+    }
 
-            mergeRelations(w1Relation, outputOrbit);
-            w1Relation = automataUtilsService.getTransitiveClosure(w1Relation, automaton.getOutputSignals());
-        } catch (SymmetricRelationException e) {
-            if (!isReverted) {
-                return tryToAddOrbits(previousStep, automaton, automataUtilsService.revertRelation(transitionOrbit),
-                        automataUtilsService.revertRelation(outputOrbit), true);
-            } else {
+    private LinearOrder orderAutomaton(DenseAutomaton automaton, AtomicBoolean cancelled, SearchRecorder recorder) {
+        if (orderCache != null) {
+            return orderCache.orderAutomaton(automaton, cached -> orderQuotient(cached, cancelled, recorder),
+                    recorder);
+        }
+        return orderQuotient(automaton, cancelled, recorder);
+    }
+
+    /**
+     * Orders the quotient of {@code automaton} by equivalent states, if minimization is on and the quotient is
+     * smaller, and the automaton itself if the order of the quotient doesn't lift.
+     */
+    private LinearOrder orderQuotient(DenseAutomaton automaton, AtomicBoolean cancelled, SearchRecorder recorder) {
+        if (!searchProperties.isMinimization()) {
+            return orderComponents(automaton, cancelled, recorder);
+        }
+        long start = recorder.start();
+        QuotientAutomaton quotient = QuotientAutomaton.of(automaton);
+        recorder.stop(SearchStatistics.Phase.MINIMIZATION, start);
+        if (quotient == null) {
+            return orderComponents(automaton, cancelled, recorder);
+        }
+        LinearOrder quotientOrder = orderComponents(quotient.getAutomaton(), cancelled, recorder);
+        if (!quotientOrder.isResolution()) {
+            return quotientOrder;
+        }
+        start = recorder.start();
+        LinearOrder linearOrder = quotient.lift(quotientOrder);
+        recorder.stop(SearchStatistics.Phase.MINIMIZATION, start);
+        if (linearOrder != null) {
+            return linearOrder;
+        }
+        log.debug("orderAutomaton: order of the quotient doesn't lift, ordering all {} states",
+                automaton.getStateCount());
+        return orderComponents(automaton, cancelled, recorder);
+    }
+
+    /**
+     * Orders the groups of connected states of {@code automaton} separately, if decomposition is on and there are
+     * several, and the automaton as a whole if their orders don't merge. Searches of the groups run on the search
+     * pool, unless each runs a portfolio there itself.
+     */
+    private LinearOrder orderComponents(DenseAutomaton automaton, AtomicBoolean cancelled,
+                                        SearchRecorder recorder) {
+        if (!searchProperties.isDecomposition()) {
+            return search(automaton, cancelled, recorder);
+        }
+        long start = recorder.start();
+        ComponentDecomposition decomposition = ComponentDecomposition.of(automataUtilsService, automaton);
+        recorder.stop(SearchStatistics.Phase.DECOMPOSITION, start);
+        if (decomposition == null) {
+            return search(automaton, cancelled, recorder);
+        }
+        List<LinearOrder> componentOrders;
+        if (searchProperties.getPortfolioSize() <= 1) {
+            List<ForkJoinTask<LinearOrder>> tasks = decomposition.getComponents().stream()
+                    .map(component -> searchPool.submit(() -> search(component, cancelled, recorder)))
+                    .collect(Collectors.toList());
+            try {
+                componentOrders = tasks.stream().map(ForkJoinTask::join).collect(Collectors.toList());
+            } catch (RuntimeException e) {
+                // the running searches stop on the cancellation flag, the queued ones need not start at all
+                tasks.forEach(task -> task.cancel(false));
                 throw e;
             }
+        } else {
+            componentOrders = decomposition.getComponents().stream()
+                    .map(component -> search(component, cancelled, recorder))
+                    .collect(Collectors.toList());
+        }
+        for (LinearOrder componentOrder : componentOrders) {
+            if (!componentOrder.isResolution()) {
+                return componentOrder;
+            }
+        }
+        start = recorder.start();
+        LinearOrder linearOrder = decomposition.merge(componentOrders);
+        recorder.stop(SearchStatistics.Phase.DECOMPOSITION, start);
+        if (linearOrder != null) {
+            return linearOrder;
         }
-        return new Order(wRelation, w1Relation, isReverted);
+        log.debug("orderAutomaton: orders of {} components don't merge, ordering all {} states",
+                componentOrders.size(), automaton.getStateCount());
+        return search(automaton, cancelled, recorder);
     }
 
-    private <T extends Orderable> void mergeRelations(Set<Pair<T>> wRelation, Set<Pair<T>> transitionOrbit) throws SymmetricRelationException {
-        for (Pair<T> pair : transitionOrbit) {
-            if (wRelation.contains(pair.getRevertedPair())) {
-                throw new SymmetricRelationException("Can't merge relations as found symmetric pair for " + pair);
-            }
+    /**
+     * Searches {@code automaton} itself, with the configured search but without any of the stages before.
+     */
+    LinearOrder search(DenseAutomaton automaton) {
+        return record(recorder -> search(automaton, new AtomicBoolean(), recorder));
+    }
 
-            wRelation.add(pair);
+    private LinearOrder search(DenseAutomaton automaton, AtomicBoolean cancelled, SearchRecorder recorder) {
+        if (automaton.getStateCount() > DenseAutomaton.MAX_STATE_COUNT) {
+            // pairs of states are int indices in the pair graph, the search and the pair order
+            return OrderingSearch.failure("Automaton has " + automaton.getStateCount() + " states, at most "
+                    + DenseAutomaton.MAX_STATE_COUNT + " states can be ordered");
+        }
+        long start = recorder.start();
+        IOrbitProvider orbitProvider;
+        try {
+            orbitProvider = automataUtilsService.getOrbitProvider(automaton, cancelled);
+        } catch (InfeasibleAutomatonException e) {
+            recorder.violation(SearchStatistics.Phase.ORBITS);
+            return OrderingSearch.failure(e.getMessage());
+        } catch (SymmetricRelationException e) {
+            recorder.violation(SearchStatistics.Phase.ORBITS);
+            return OrderingSearch.orbitsViolateAntisymmetry(e);
+        } finally {
+            recorder.stop(SearchStatistics.Phase.ORBITS, start);
         }
+        return search(automaton, orbitProvider, cancelled, recorder);
     }
 
-    private Optional<Pair<State>> selectNextPair(List<Pair<State>> sortedStatePairs, Set<Pair<State>> wRelation) {
-        return sortedStatePairs.stream()
-                .filter(pair -> !wRelation.contains(pair) && !wRelation.contains(pair.getRevertedPair()))
-                .findFirst();
+    /**
+     * Searches {@code automaton} itself like {@link #search(DenseAutomaton)}, with orbits provided by the caller.
+     */
+    LinearOrder search(DenseAutomaton automaton, IOrbitProvider orbitProvider) {
+        return record(recorder -> search(automaton, orbitProvider, new AtomicBoolean(), recorder));
     }
 
-    private List<Pair<State>> sortPairsByOrbitPower(Map<Pair<State>, Orbit> orbits) {
-        return orbits.keySet().stream()
-                .sorted(comparingInt(x -> orbits.get(x).getTransitionOrbit().size() +
-                        orbits.get(x).getOutputOrbit().size()).reversed())
-                .collect(Collectors.toList());
+    private LinearOrder search(DenseAutomaton automaton, IOrbitProvider orbitProvider, AtomicBoolean cancelled,
+                               SearchRecorder recorder) {
+        long start = recorder.start();
+        long[] sortedStatePairs = sortPairsByOrbitPower(automaton, orbitProvider);
+        recorder.stop(SearchStatistics.Phase.ORBITS, start);
+        start = recorder.start();
+        try {
+            return search(automaton, orbitProvider, sortedStatePairs, cancelled, recorder);
+        } finally {
+            recorder.stop(SearchStatistics.Phase.SEARCH, start);
+            recorder.orbits(orbitProvider.getCalculationCount(), orbitProvider.getCacheHitCount());
+        }
     }
 
-    private static class Step {
-        private final Pair<State> currentPair;
-        private final boolean isReverted;
-        private final Set<Pair<State>> wRelation;
-        private final Set<Pair<OutputSignal>> w1Relation;
+    private LinearOrder search(DenseAutomaton automaton, IOrbitProvider orbitProvider, long[] sortedStatePairs,
+                               AtomicBoolean cancelled, SearchRecorder recorder) {
+        if (searchProperties.getPortfolioSize() <= 1) {
+            Supplier<PairSelector> pairSelectors = () -> PairSelector.inOrder(sortedStatePairs);
+            if (searchProperties.getSplitDepth() > 0) {
+                return new ForkJoinSearch(automataUtilsService, automaton, orbitProvider, pairSelectors, false,
+                        searchPool, searchProperties.getSplitDepth(),
+                        searchFactory(automaton, orbitProvider, pairSelectors, false, cancelled, recorder),
+                        cancelled, recorder).run();
+            }
+            return createSearch(automaton, orbitProvider, pairSelectors.get(), false, cancelled, recorder).run();
+        }
 
-        public Step(Set<Pair<State>> wRelation, Set<Pair<OutputSignal>> w1Relation) {
-            this.wRelation = wRelation;
-            this.w1Relation = w1Relation;
-            this.currentPair = null;
-            this.isReverted = false;
+        List<OrderingSearch> searches = new ArrayList<>();
+        for (int i = 0; i < searchProperties.getPortfolioSize(); i++) {
+            PairSelector pairSelector;
+            if (i < 2) {
+                pairSelector = PairSelector.inOrder(sortedStatePairs);
+            } else if (i < 4) {
+                pairSelector = PairSelector.fewestUnresolved(sortedStatePairs, orbitProvider);
+            } else {
+                pairSelector = PairSelector.shuffled(sortedStatePairs, searchProperties.getSeed() + i);
+            }
+            searches.add(createSearch(automaton, orbitProvider, pairSelector, i % 2 == 1, cancelled, recorder));
         }
+        return new PortfolioSearch(searchPool, searches).run();
+    }
 
-        public Step(Pair<State> currentPair, boolean isReverted, Set<Pair<State>> wRelation, Set<Pair<OutputSignal>> w1Relation) {
-            this.currentPair = currentPair;
-            this.isReverted = isReverted;
-            this.wRelation = wRelation;
-            this.w1Relation = w1Relation;
+    private OrderingSearch createSearch(DenseAutomaton automaton, IOrbitProvider orbitProvider,
+                                        PairSelector pairSelector, boolean revertedFirst, AtomicBoolean cancelled,
+                                        SearchRecorder recorder) {
+        return searchFactory(automaton, orbitProvider, () -> pairSelector, revertedFirst, cancelled, recorder).create(
+                new TransitiveClosure(BitRelation.identity(automaton.getStateCount())),
+                new TransitiveClosure(BitRelation.identity(automaton.getOutputCount())), new AtomicBoolean());
+    }
+
+    private OrderingSearch.Factory searchFactory(DenseAutomaton automaton, IOrbitProvider orbitProvider,
+                                                 Supplier<PairSelector> pairSelectors, boolean revertedFirst,
+                                                 AtomicBoolean cancelled, SearchRecorder recorder) {
+        if (searchProperties.getMode() == AutomataProperties.Search.Mode.BACKJUMPING) {
+            return (wRelation, w1Relation, stopped) -> new BackjumpingSearch(automataUtilsService, automaton,
+                    orbitProvider, pairSelectors.get(), revertedFirst, wRelation, w1Relation, cancelled, stopped,
+                    recorder, searchProperties.getNogoodLimit(), searchProperties.getNogoodMaxSize());
         }
+        return (wRelation, w1Relation, stopped) -> new ChronologicalSearch(automataUtilsService, automaton,
+                orbitProvider, pairSelectors.get(), revertedFirst, wRelation, w1Relation, cancelled, stopped,
+                recorder);
+    }
 
-        @Override
-        public String toString() {
-            return "Step{" +
-                    "currentPair=" + currentPair +
-                    ", isReverted=" + isReverted +
-                    "\nw=" + wRelation +
-                    "\nw1=" + w1Relation +
-                    '}';
+    private long[] sortPairsByOrbitPower(DenseAutomaton automaton, IOrbitProvider orbitProvider) {
+        int stateCount = automaton.getStateCount();
+        long[] statePairs = new long[automaton.getPairCount()];
+        int[] powers = new int[automaton.getPairCount()];
+        for (int left = 0; left < stateCount; left++) {
+            for (int right = left + 1; right < stateCount; right++) {
+                int pairIndex = automaton.getPairIndex(left, right);
+                statePairs[pairIndex] = (long) left * stateCount + right;
+                powers[pairIndex] = orbitProvider.estimatePower(left, right);
+            }
         }
+        return IntStream.range(0, statePairs.length).boxed()
+                .sorted(comparingInt((Integer pairIndex) -> powers[pairIndex]).reversed())
+                .mapToLong(pairIndex -> statePairs[pairIndex])
+                .toArray();
     }
 }
@@ -1,14 +1,20 @@
 package ru.ssu.refa.linear_order_automata.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
 import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
 import ru.ssu.refa.linear_order_automata.model.*;
 import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 
 import static java.util.Comparator.comparingInt;
@@ -17,6 +23,37 @@ import static java.util.Comparator.comparingInt;
 @Service
 public class AutomataUtilsService implements IAutomataUtilsService {
 
+    private final ForkJoinPool orbitPool;
+    private final AutomataProperties.Orbits orbitProperties;
+    private final ParallelOrbitCalculator orbitCalculator;
+
+    /**
+     * Calculates orbits on the common pool with the default properties.
+     */
+    public AutomataUtilsService() {
+        this(ForkJoinPool.commonPool(), new AutomataProperties().getOrbits());
+    }
+
+    @Autowired
+    public AutomataUtilsService(AutomataProperties properties) {
+        this(new ForkJoinPool(properties.getOrbits().getParallelism()), properties.getOrbits());
+    }
+
+    /**
+     * Calculates orbits on the given pool, {@link #shutdown()} shuts the pool down.
+     */
+    AutomataUtilsService(ForkJoinPool orbitPool, AutomataProperties.Orbits orbitProperties) {
+        this.orbitPool = orbitPool;
+        this.orbitProperties = orbitProperties;
+        this.orbitCalculator = new ParallelOrbitCalculator(orbitPool, orbitProperties.getBlockSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // has no effect on the common pool
+        orbitPool.shutdown();
+    }
+
     @Override
     public List<Pair<State>> findAllStatePairs(List<State> states) {
         List<Pair<State>> result = new ArrayList<>();
@@ -30,55 +67,52 @@ public class AutomataUtilsService implements IAutomataUtilsService {
         return result;
     }
 
+    /**
+     * Works on the {@link Automaton} maps directly: callers of this overload pass a single pair, so compiling a
+     * {@link DenseAutomaton} per call would cost more than the search. Pairs of a cached orbit are added as they are
+     * and expanded later, the cached pair itself is not expanded.
+     */
     @Override
     public Set<Pair<State>> getTransitionOrbit(Automaton automaton, Pair<State> inputPair,
                                                Map<Pair<State>, Orbit> orbitCache) throws SymmetricRelationException {
         log.debug("getTransitionOrbit: inputPair - {}, orbitCache = {}", inputPair, orbitCache);
 
         Set<Pair<State>> orbit = new HashSet<>();
+        Deque<Pair<State>> queue = new ArrayDeque<>();
         orbit.add(inputPair);
+        queue.add(inputPair);
+        while (!queue.isEmpty()) {
+            Pair<State> pair = queue.poll();
+            for (InputSignal inputSignal : automaton.getInputSignals()) {
+                Pair<State> nextPair = new Pair<>(
+                        automaton.getTargetState(pair.getLeft(), inputSignal),
+                        automaton.getTargetState(pair.getRight(), inputSignal)
+                );
+                if (!isPairFine(nextPair, orbit)) {
+                    continue;
+                }
+                if (orbit.contains(nextPair.getRevertedPair())) {
+                    handleSymmetricPair(nextPair, inputPair);
+                }
 
-        Set<Pair<State>> consideredPairs = new HashSet<>();
-        boolean continueIterating;
-        do {
-            continueIterating = false;
-            for (Pair<State> pair : new ArrayList<>(orbit)) {
-                if (!consideredPairs.contains(pair)) {
-                    for (InputSignal inputSignal : automaton.getInputSignals()) {
-                        log.trace("pair - {}, inputSignal - {}", pair, inputSignal);
-                        Pair<State> nextPair = new Pair<>(
-                                automaton.getTargetState(pair.getLeft(), inputSignal),
-                                automaton.getTargetState(pair.getRight(), inputSignal)
-                        );
-                        log.trace("nextPair - {}", nextPair);
-                        if (!isPairFine(nextPair, orbit)) {
-                            continue;
-                        }
-                        if (orbit.contains(nextPair.getRevertedPair())) {
-                            handleSymmetricPair(nextPair, inputPair);
-                        }
-
-                        continueIterating = true;
-                        orbit.add(nextPair);
-                        log.trace("added next pair {} to orbit", nextPair);
-                        if (orbitCache.containsKey(nextPair)) {
-                            log.trace("adding pairs from cache for pair {}", nextPair);
-                            for (Pair<State> cachedPair : orbitCache.get(nextPair).getTransitionOrbit()) {
-                                if (orbit.contains(cachedPair.getRevertedPair())) {
-                                    handleSymmetricPair(cachedPair, inputPair);
-                                }
-                                orbit.add(cachedPair);
-                                log.trace("added cached pair {} to orbit", cachedPair);
-                            }
-
-                            consideredPairs.add(nextPair);
-                        }
+                orbit.add(nextPair);
+                Orbit cachedOrbit = orbitCache.get(nextPair);
+                if (cachedOrbit == null) {
+                    queue.add(nextPair);
+                    continue;
+                }
+                for (Pair<State> cachedPair : cachedOrbit.getTransitionOrbit()) {
+                    if (orbit.contains(cachedPair)) {
+                        continue;
                     }
-
-                    consideredPairs.add(pair);
+                    if (orbit.contains(cachedPair.getRevertedPair())) {
+                        handleSymmetricPair(cachedPair, inputPair);
+                    }
+                    orbit.add(cachedPair);
+                    queue.add(cachedPair);
                 }
             }
-        } while (continueIterating);
+        }
 
         log.debug("getTransitionOrbit: inputPair - {}, result - {}", inputPair, orbit);
         return orbit;
@@ -89,32 +123,38 @@ public class AutomataUtilsService implements IAutomataUtilsService {
                 !pair.getLeft().equals(pair.getRight()) && !orbit.contains(pair);
     }
 
+    /**
+     * Output pairs are encoded by the positions of their signals, so the reverted-pair check neither allocates a
+     * {@link Pair} nor hashes the signals.
+     */
     @Override
     public Set<Pair<OutputSignal>> getOutputOrbit(Automaton automaton, Set<Pair<State>> transitionOrbit) throws SymmetricRelationException {
         log.debug("getOutputOrbit: transitionOrbit - {}", transitionOrbit);
 
-        Set<Pair<OutputSignal>> orbit = new HashSet<>();
+        List<OutputSignal> outputSignals = automaton.getOutputSignals();
+        int outputCount = outputSignals.size();
+        Map<OutputSignal, Integer> outputIndex = new HashMap<>();
+        for (int i = 0; i < outputCount; i++) {
+            outputIndex.put(outputSignals.get(i), i);
+        }
+        LongHashSet encodedOrbit = new LongHashSet();
         for (Pair<State> pair : transitionOrbit) {
             for (InputSignal inputSignal : automaton.getInputSignals()) {
-                log.trace("pair - {}, inputSignal - {}", pair, inputSignal);
-                Pair<OutputSignal> outputPair = new Pair<>(
-                        automaton.getOutputSignal(pair.getLeft(), inputSignal),
-                        automaton.getOutputSignal(pair.getRight(), inputSignal)
-                );
-                log.trace("outputPair - {}", outputPair);
-                if (outputPair.getLeft() == null || outputPair.getRight() == null) {
+                Integer outputLeft = outputIndex.get(automaton.getOutputSignal(pair.getLeft(), inputSignal));
+                Integer outputRight = outputIndex.get(automaton.getOutputSignal(pair.getRight(), inputSignal));
+                if (outputLeft == null || outputRight == null) {
                     continue;
                 }
-                if (orbit.contains(outputPair.getRevertedPair())) {
-                    handleSymmetricPair(outputPair);
+                if (encodedOrbit.contains(encode(outputRight, outputLeft, outputCount))) {
+                    handleSymmetricPair(new Pair<>(outputSignals.get(outputLeft), outputSignals.get(outputRight)));
                 }
 
-                if (!outputPair.getLeft().equals(outputPair.getRight())) {
-                    orbit.add(outputPair);
-                    log.trace("added pair {} to orbit", outputPair);
+                if (!outputLeft.equals(outputRight)) {
+                    encodedOrbit.add(encode(outputLeft, outputRight, outputCount));
                 }
             }
         }
+        Set<Pair<OutputSignal>> orbit = toPairs(encodedOrbit.toArray(), outputSignals);
 
         log.debug("getOutputOrbit: transitionOrbit - {}, result - {}", transitionOrbit, orbit);
         return orbit;
@@ -122,60 +162,212 @@ public class AutomataUtilsService implements IAutomataUtilsService {
 
     @Override
     public Map<Pair<State>, Orbit> getOrbits(Automaton automaton, Collection<Pair<State>> allStatePairs) throws SymmetricRelationException {
-        Map<Pair<State>, Orbit> result = new ConcurrentHashMap<>();
-        try {
-            allStatePairs.parallelStream()
-                    .forEach(ThrowingConsumer.throwingConsumerWrapper(pair -> {
-                        Set<Pair<State>> transitionOrbit = getTransitionOrbit(automaton, pair, result);
-                        Set<Pair<OutputSignal>> outputOrbit = getOutputOrbit(automaton, transitionOrbit);
-                        result.put(pair, new Orbit(transitionOrbit, outputOrbit));
-                    }));
-        } catch (RuntimeSymmetricRelationException e) {
-            log.error("Found symmetric pair during orbit calculation: " + e.getMessage(), e);
-            throw new SymmetricRelationException(e.getCause());
+        DenseAutomaton denseAutomaton = DenseAutomaton.of(automaton);
+        List<Pair<State>> statePairs = new ArrayList<>(allStatePairs);
+        int[] pairs = new int[statePairs.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = denseAutomaton.indexOf(statePairs.get(i).getLeft()) * denseAutomaton.getStateCount()
+                    + denseAutomaton.indexOf(statePairs.get(i).getRight());
         }
+        DenseOrbit[] orbits = getOrbits(denseAutomaton, pairs);
 
+        Map<Pair<State>, Orbit> result = new HashMap<>();
+        for (int i = 0; i < orbits.length; i++) {
+            result.put(statePairs.get(i), new Orbit(toPairs(orbits[i].getTransitionOrbit(), denseAutomaton.getStates()),
+                    toPairs(orbits[i].getOutputOrbit(), denseAutomaton.getOutputSignals())));
+        }
         return result;
     }
 
     @Override
-    public <T extends Orderable> Set<Pair<T>> getTransitiveClosure(Set<Pair<T>> relation, Collection<T> elements) throws SymmetricRelationException {
-        log.debug("getTransitiveClosure: relation - {}, elements - {}", relation, elements);
+    public long[] getTransitionOrbit(DenseAutomaton automaton, int left, int right,
+                                     DenseOrbit[] orbitCache) throws SymmetricRelationException {
+        int stateCount = automaton.getStateCount();
+        return getTransitionOrbit(automaton, left, right, pair -> {
+            int pairLeft = (int) (pair / stateCount);
+            int pairRight = (int) (pair % stateCount);
+            if (pairLeft > pairRight) {
+                return null;
+            }
+            DenseOrbit cachedOrbit = orbitCache[automaton.getPairIndex(pairLeft, pairRight)];
+            return cachedOrbit != null ? cachedOrbit.getTransitionOrbit() : null;
+        });
+    }
 
-        Map<T, Set<T>> adjacencyMap = createAdjacencyMap(relation);
-        log.trace("adjacencyMap - {}", adjacencyMap);
+    /**
+     * Breadth-first search over the pair graph from {@code (left, right)}. Every pair is expanded at most once, so
+     * the cost is linear in the orbit size. A pair found in {@code orbitCache} is not expanded, the pairs of its
+     * cached orbit are added instead.
+     */
+    private long[] getTransitionOrbit(DenseAutomaton automaton, int left, int right,
+                                      LongFunction<long[]> orbitCache) throws SymmetricRelationException {
+        log.debug("getTransitionOrbit: left - {}, right - {}", left, right);
+
+        int stateCount = automaton.getStateCount();
+        OrbitSearch search = new OrbitSearch();
+        search.add(encode(left, right, stateCount), true);
+        while (search.hasNext()) {
+            long pair = search.next();
+            int pairLeft = (int) (pair / stateCount);
+            int pairRight = (int) (pair % stateCount);
+            for (int inputSignal = 0; inputSignal < automaton.getInputCount(); inputSignal++) {
+                int nextLeft = automaton.getTargetState(pairLeft, inputSignal);
+                int nextRight = automaton.getTargetState(pairRight, inputSignal);
+                if (nextLeft == DenseAutomaton.NONE || nextRight == DenseAutomaton.NONE || nextLeft == nextRight) {
+                    continue;
+                }
+                long nextPair = encode(nextLeft, nextRight, stateCount);
+                if (search.contains(nextPair)) {
+                    continue;
+                }
+                if (search.contains(encode(nextRight, nextLeft, stateCount))) {
+                    handleSymmetricPair(automaton, nextLeft, nextRight, left, right);
+                }
 
-        Map<T, Set<T>> transitiveClosureMap = new HashMap<>();
-        elements.forEach(t -> transitiveClosureMap.computeIfAbsent(t, v -> new HashSet<>()));
-        for (T t : elements) {
-            dfsTransitive(t, t, adjacencyMap, transitiveClosureMap);
+                long[] cachedOrbit = orbitCache.apply(nextPair);
+                search.add(nextPair, cachedOrbit == null);
+                if (cachedOrbit != null) {
+                    for (long cachedPair : cachedOrbit) {
+                        if (search.contains(cachedPair)) {
+                            continue;
+                        }
+                        int cachedLeft = (int) (cachedPair / stateCount);
+                        int cachedRight = (int) (cachedPair % stateCount);
+                        if (search.contains(encode(cachedRight, cachedLeft, stateCount))) {
+                            handleSymmetricPair(automaton, cachedLeft, cachedRight, left, right);
+                        }
+                        search.add(cachedPair, true);
+                    }
+                }
+            }
         }
-        log.trace("transitiveClosureMap - {}", transitiveClosureMap);
 
-        Set<Pair<T>> transitivelyClosedSet = new HashSet<>();
-        for (Map.Entry<T, Set<T>> entry : transitiveClosureMap.entrySet()) {
-            entry.getValue().forEach(t -> transitivelyClosedSet.add(new Pair<>(entry.getKey(), t)));
+        long[] orbit = search.getOrbit();
+        log.debug("getTransitionOrbit: left - {}, right - {}, result size - {}", left, right, orbit.length);
+        return orbit;
+    }
+
+    @Override
+    public long[] getOutputOrbit(DenseAutomaton automaton, long[] transitionOrbit) throws SymmetricRelationException {
+        int stateCount = automaton.getStateCount();
+        int outputCount = automaton.getOutputCount();
+        LongHashSet orbit = new LongHashSet();
+        for (long pair : transitionOrbit) {
+            int pairLeft = (int) (pair / stateCount);
+            int pairRight = (int) (pair % stateCount);
+            for (int inputSignal = 0; inputSignal < automaton.getInputCount(); inputSignal++) {
+                int outputLeft = automaton.getOutputSignal(pairLeft, inputSignal);
+                int outputRight = automaton.getOutputSignal(pairRight, inputSignal);
+                if (outputLeft == DenseAutomaton.NONE || outputRight == DenseAutomaton.NONE) {
+                    continue;
+                }
+                if (orbit.contains(encode(outputRight, outputLeft, outputCount))) {
+                    handleSymmetricPair(new Pair<>(automaton.getOutput(outputLeft), automaton.getOutput(outputRight)));
+                }
+
+                if (outputLeft != outputRight) {
+                    orbit.add(encode(outputLeft, outputRight, outputCount));
+                }
+            }
         }
 
-        log.debug("getTransitiveClosure: relation - {}, result - {}", relation, transitivelyClosedSet);
-        return transitivelyClosedSet;
+        return orbit.toArray();
+    }
+
+    @Override
+    public DenseOrbit[] getOrbits(DenseAutomaton automaton) throws SymmetricRelationException {
+        return getOrbits(automaton, null);
+    }
+
+    @Override
+    public IOrbitProvider getOrbitProvider(DenseAutomaton automaton) throws SymmetricRelationException {
+        return getOrbitProvider(automaton, new AtomicBoolean());
     }
 
-    private <T extends Orderable> void dfsTransitive(T from, T to,
-                                                     Map<T, Set<T>> adjacencyMap, Map<T, Set<T>> transitiveClosureMap) throws SymmetricRelationException {
-        log.trace("dfsUtil: from = {}, to = {}", from, to);
-        if (!from.equals(to) && transitiveClosureMap.get(to).contains(from)) {
-            throw new SymmetricRelationException("Found symmetric pair for pair (" + from + ", " + to
-                    + ") during transitive closure calculation");
+    @Override
+    public IOrbitProvider getOrbitProvider(DenseAutomaton automaton,
+                                           AtomicBoolean cancelled) throws SymmetricRelationException {
+        AutomataProperties.Orbits.Mode mode = orbitProperties.getMode();
+        if (mode == AutomataProperties.Orbits.Mode.AUTO) {
+            mode = automaton.getPairCount() > orbitProperties.getLazyPairThreshold()
+                    ? AutomataProperties.Orbits.Mode.LAZY : AutomataProperties.Orbits.Mode.EAGER;
         }
-        transitiveClosureMap.get(from).add(to);
-        if (adjacencyMap.containsKey(to)) {
-            for (T nextTo : adjacencyMap.get(to)) {
-                if (!transitiveClosureMap.get(from).contains(nextTo)) {
-                    dfsTransitive(from, nextTo, adjacencyMap, transitiveClosureMap);
-                }
-            }
+        log.debug("getOrbitProvider: {} pairs, {} orbits", automaton.getPairCount(), mode);
+
+        PairGraph pairGraph = PairGraph.of(automaton, cancelled);
+        if (orbitProperties.isFeasibilityChecks()) {
+            FeasibilityCheck.check(automaton, pairGraph);
+        }
+        if (mode == AutomataProperties.Orbits.Mode.EAGER) {
+            LongAdder calculationCount = new LongAdder();
+            DenseOrbit[] orbits = getOrbits(automaton, pairGraph, null, (traversal, componentId) -> {
+                calculationCount.increment();
+                return getOrbit(automaton, pairGraph, traversal, componentId);
+            }, cancelled);
+            return new EagerOrbitProvider(automaton, orbits, calculationCount.sum());
+        }
+        return new LazyOrbitProvider(pairGraph,
+                (traversal, componentId) -> getOrbit(automaton, pairGraph, traversal, componentId),
+                orbitProperties.getCacheCapacity());
+    }
+
+    /**
+     * @param pairs encoded pairs, {@code null} for all pairs {@code left < right}
+     */
+    private DenseOrbit[] getOrbits(DenseAutomaton automaton, int[] pairs) throws SymmetricRelationException {
+        return getOrbits(automaton, PairGraph.of(automaton), pairs);
+    }
+
+    private DenseOrbit[] getOrbits(DenseAutomaton automaton, PairGraph pairGraph, int[] pairs)
+            throws SymmetricRelationException {
+        return getOrbits(automaton, pairGraph, pairs,
+                (traversal, componentId) -> getOrbit(automaton, pairGraph, traversal, componentId),
+                new AtomicBoolean());
+    }
+
+    private DenseOrbit[] getOrbits(DenseAutomaton automaton, PairGraph pairGraph, int[] pairs,
+                                   ParallelOrbitCalculator.ComponentOrbitFunction orbitFunction,
+                                   AtomicBoolean cancelled) throws SymmetricRelationException {
+        log.debug("getOrbits: {} pairs in {} strongly connected components",
+                pairs != null ? pairs.length : automaton.getPairCount(), pairGraph.getComponentCount());
+
+        return orbitCalculator.calculate(automaton, pairGraph, pairs, orbitFunction, cancelled);
+    }
+
+    @Override
+    public <T extends Orderable> Set<Pair<T>> toPairs(long[] encodedPairs, List<T> elements) {
+        int size = elements.size();
+        Set<Pair<T>> result = new HashSet<>();
+        for (long pair : encodedPairs) {
+            result.add(new Pair<>(elements.get((int) (pair / size)), elements.get((int) (pair % size))));
+        }
+        return result;
+    }
+
+    private DenseOrbit getOrbit(DenseAutomaton automaton, PairGraph pairGraph, PairGraph.Traversal traversal,
+                                int componentId) throws SymmetricRelationException {
+        long[] transitionOrbit = traversal.getOrbit(componentId);
+        int symmetricComponent = traversal.getSymmetricComponent();
+        if (symmetricComponent >= 0) {
+            int stateCount = automaton.getStateCount();
+            int pair = pairGraph.getMember(symmetricComponent, 0);
+            int inputPair = pairGraph.getMember(componentId, 0);
+            handleSymmetricPair(automaton, pair / stateCount, pair % stateCount,
+                    inputPair / stateCount, inputPair % stateCount);
         }
+        return new DenseOrbit(transitionOrbit, getOutputOrbit(automaton, transitionOrbit));
+    }
+
+    @Override
+    public <T extends Orderable> Set<Pair<T>> getTransitiveClosure(Set<Pair<T>> relation, Collection<T> elements) throws SymmetricRelationException {
+        log.debug("getTransitiveClosure: relation - {}, elements - {}", relation, elements);
+
+        List<T> elementList = new ArrayList<>(elements);
+        BitRelation transitiveClosure = toDigraph(relation, elementList).transitiveClosure(elementList);
+        Set<Pair<T>> transitivelyClosedSet = toPairs(transitiveClosure, elementList);
+
+        log.debug("getTransitiveClosure: relation - {}, result - {}", relation, transitivelyClosedSet);
+        return transitivelyClosedSet;
     }
 
     @Override
@@ -202,35 +394,79 @@ public class AutomataUtilsService implements IAutomataUtilsService {
 
     @Override
     public <T extends Orderable> Set<Pair<T>> doTopologicalSort(List<T> set, Set<Pair<T>> relation) {
-        Map<T, Set<T>> adjacencyMap = createAdjacencyMap(relation);
-        Set<T> used = new HashSet<>();
-        List<T> linearOrder = new ArrayList<>();
-        for (T t : set) {
-            if (!used.contains(t)) {
-                dfsTopological(t, adjacencyMap, used, linearOrder);
-            }
+        return toLinearOrder(set, toDigraph(relation, set).topologicalOrder());
+    }
+
+    @Override
+    public BitRelation getTransitiveClosure(BitRelation relation) throws SymmetricRelationException {
+        return IntDigraph.of(relation).transitiveClosure(null);
+    }
+
+    @Override
+    public void updateTransitiveClosure(TransitiveClosure closure, long[] delta, boolean isReverted) throws SymmetricRelationException {
+        long violation = tryUpdateTransitiveClosure(closure, delta, isReverted);
+        if (violation != NO_VIOLATION) {
+            int size = closure.getSize();
+            throw new SymmetricRelationException("Found symmetric pair for pair (" + violation / size + ", "
+                    + violation % size + ") during transitive closure update");
         }
-        Collections.reverse(linearOrder);
+    }
 
-        Set<Pair<T>> result = new HashSet<>();
-        for (int i = 0; i < linearOrder.size(); i++) {
-            for (int j = i; j < linearOrder.size(); j++) {
-                result.add(new Pair<>(linearOrder.get(i), linearOrder.get(j)));
+    @Override
+    public long tryUpdateTransitiveClosure(TransitiveClosure closure, long[] delta, boolean isReverted) {
+        int size = closure.getSize();
+        for (long pair : delta) {
+            int left = (int) (pair / size);
+            int right = (int) (pair % size);
+            boolean added = isReverted ? closure.add(right, left) : closure.add(left, right);
+            if (!added) {
+                return pair;
             }
         }
-        return result;
+        return NO_VIOLATION;
+    }
+
+    @Override
+    public boolean isOrderConstructed(BitRelation relation) {
+        long size = relation.getSize();
+        return (size * size + size) / 2 == relation.getCount();
     }
 
-    private <T extends Orderable> void dfsTopological(T t, Map<T, Set<T>> adjacencyMap, Set<T> used, List<T> linearOrder) {
-        used.add(t);
-        if (adjacencyMap.containsKey(t)) {
-            for (T to : adjacencyMap.get(t)) {
-                if (!used.contains(to)) {
-                    dfsTopological(to, adjacencyMap, used, linearOrder);
+    @Override
+    public BitRelation revertRelation(BitRelation relation) {
+        return relation.reverse();
+    }
+
+    @Override
+    public <T extends Orderable> Set<Pair<T>> toPairs(BitRelation relation, List<T> elements) {
+        Set<Pair<T>> result = new HashSet<>();
+        for (int left = 0; left < relation.getSize(); left++) {
+            long[] row = relation.getRow(left);
+            for (int i = 0; i < row.length; i++) {
+                long word = row[i];
+                while (word != 0) {
+                    int right = (i << 6) + Long.numberOfTrailingZeros(word);
+                    result.add(new Pair<>(elements.get(left), elements.get(right)));
+                    word &= word - 1;
                 }
             }
         }
-        linearOrder.add(t);
+        return result;
+    }
+
+    @Override
+    public <T extends Orderable> Set<Pair<T>> doTopologicalSort(List<T> elements, BitRelation relation) {
+        return toLinearOrder(elements, IntDigraph.of(relation).topologicalOrder());
+    }
+
+    private void handleSymmetricPair(DenseAutomaton automaton, int left, int right,
+                                     int inputLeft, int inputRight) throws SymmetricRelationException {
+        handleSymmetricPair(new Pair<>(automaton.getState(left), automaton.getState(right)),
+                new Pair<>(automaton.getState(inputLeft), automaton.getState(inputRight)));
+    }
+
+    private static long encode(int left, int right, int size) {
+        return (long) left * size + right;
     }
 
     private void handleSymmetricPair(Pair<?> pair) throws SymmetricRelationException {
@@ -246,32 +482,71 @@ public class AutomataUtilsService implements IAutomataUtilsService {
         throw new SymmetricRelationException(message);
     }
 
-    private <T extends Orderable> Map<T, Set<T>> createAdjacencyMap(Set<Pair<T>> relation) {
-        Map<T, Set<T>> adjacencyMap = new HashMap<>();
+    private <T extends Orderable> IntDigraph toDigraph(Set<Pair<T>> relation, List<T> elements) {
+        Map<T, Integer> index = new HashMap<>();
+        for (int i = 0; i < elements.size(); i++) {
+            index.put(elements.get(i), i);
+        }
+        int[] sources = new int[relation.size()];
+        int[] targets = new int[relation.size()];
+        int edgeCount = 0;
         for (Pair<T> pair : relation) {
-            adjacencyMap.computeIfAbsent(pair.getLeft(), v -> new HashSet<>());
-            adjacencyMap.get(pair.getLeft()).add(pair.getRight());
+            sources[edgeCount] = index.get(pair.getLeft());
+            targets[edgeCount++] = index.get(pair.getRight());
+        }
+        return IntDigraph.of(elements.size(), sources, targets, edgeCount);
+    }
+
+    private <T extends Orderable> Set<Pair<T>> toLinearOrder(List<T> elements, int[] order) {
+        Set<Pair<T>> result = new HashSet<>();
+        for (int i = 0; i < order.length; i++) {
+            for (int j = i; j < order.length; j++) {
+                result.add(new Pair<>(elements.get(order[i]), elements.get(order[j])));
+            }
         }
-        return adjacencyMap;
+        return result;
     }
 
-    private interface ThrowingConsumer<T, E extends Exception> {
-        void accept(T t) throws E;
+    /**
+     * Visited set and worklist of one orbit search. Everything is sized by the pairs the search touches, not by
+     * the pair space.
+     */
+    private static final class OrbitSearch {
+        private final LongHashSet visited = new LongHashSet();
+        private long[] orbit = new long[16];
+        private int orbitSize;
+        private long[] queue = new long[16];
+        private int queueHead;
+        private int queueTail;
+
+        boolean contains(long pair) {
+            return visited.contains(pair);
+        }
 
-        static <T> Consumer<T> throwingConsumerWrapper(ThrowingConsumer<T, Exception> throwingConsumer) {
-            return i -> {
-                try {
-                    throwingConsumer.accept(i);
-                } catch (Exception e) {
-                    throw new RuntimeSymmetricRelationException(e);
+        void add(long pair, boolean expand) {
+            visited.add(pair);
+            if (orbitSize == orbit.length) {
+                orbit = Arrays.copyOf(orbit, orbitSize * 2);
+            }
+            orbit[orbitSize++] = pair;
+            if (expand) {
+                if (queueTail == queue.length) {
+                    queue = Arrays.copyOf(queue, queueTail * 2);
                 }
-            };
+                queue[queueTail++] = pair;
+            }
+        }
+
+        boolean hasNext() {
+            return queueHead < queueTail;
+        }
+
+        long next() {
+            return queue[queueHead++];
         }
-    }
 
-    private static class RuntimeSymmetricRelationException extends RuntimeException {
-        public RuntimeSymmetricRelationException(Throwable cause) {
-            super(cause);
+        long[] getOrbit() {
+            return Arrays.copyOf(orbit, orbitSize);
         }
     }
 }
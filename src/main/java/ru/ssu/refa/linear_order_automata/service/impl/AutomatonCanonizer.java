@@ -0,0 +1,511 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.InputSignal;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Canonical labelling of an automaton up to renaming of states, input signals and output signals. Automata which
+ * differ by such a renaming get the same {@link Canonization#getCode() code} and the same canonical automaton.
+ * <p>
+ * Colours of the three sorts are refined together until they are stable: a state is told apart by the colours of
+ * the input signals, other states and outputs of the transitions leaving and entering it, an input signal by those
+ * of its column, an output signal by the transitions emitting it. Colours are ranks of sorted signatures, so they
+ * don't depend on the labels. While some colour is shared by several states, input signals or output signals in
+ * use, each of them in turn gets a colour of its own and the refinement continues; the labelling with the least
+ * code wins. Elements in no transition are interchangeable and are ordered by their index.
+ * <p>
+ * Two leaves with the same code give an automorphism of the automaton. The search returns to the node where their
+ * paths part, and skips the members of a cell which an automorphism fixing the path maps an explored member to.
+ * Individualization may still branch exponentially, so the number of refinements is bounded. An automaton which
+ * exceeds the bound gets no canonical form.
+ */
+final class AutomatonCanonizer {
+    /**
+     * Colours are packed by three into a {@code long}.
+     */
+    private static final int MAX_COLOR = (1 << 21) - 2;
+    private static final int STATES = 0;
+    private static final int INPUTS = 1;
+    private static final int OUTPUTS = 2;
+    private static final int CONTINUE = -1;
+    private static final int ABORT = -2;
+
+    private final DenseAutomaton automaton;
+    private final int stateCount;
+    private final int inputCount;
+    private final int outputCount;
+    private final boolean[] inputUsed;
+    private final boolean[] outputUsed;
+    private final int[][] emittedBy;
+    private final int[][] enteredBy;
+    private final int nodeLimit;
+    private int nodeCount;
+    private final int[] pathSorts;
+    private final int[] pathElements;
+    private final List<int[][]> automorphisms = new ArrayList<>();
+    private int[] firstCode;
+    private int[][] firstLabels;
+    private int[] firstPath;
+    private int[] bestCode;
+    private int[][] bestLabels;
+    private int[] bestPath;
+
+    private AutomatonCanonizer(DenseAutomaton automaton, int nodeLimit) {
+        this.automaton = automaton;
+        this.stateCount = automaton.getStateCount();
+        this.inputCount = automaton.getInputCount();
+        this.outputCount = automaton.getOutputCount();
+        this.nodeLimit = nodeLimit;
+        this.pathSorts = new int[stateCount + inputCount + outputCount];
+        this.pathElements = new int[stateCount + inputCount + outputCount];
+        this.inputUsed = new boolean[inputCount];
+        this.outputUsed = new boolean[outputCount];
+        int[] emitCounts = new int[outputCount];
+        int[] enterCounts = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                int target = automaton.getTargetState(state, input);
+                int output = automaton.getOutputSignal(state, input);
+                if (target != DenseAutomaton.NONE || output != DenseAutomaton.NONE) {
+                    inputUsed[input] = true;
+                }
+                if (target != DenseAutomaton.NONE) {
+                    enterCounts[target]++;
+                }
+                if (output != DenseAutomaton.NONE) {
+                    outputUsed[output] = true;
+                    emitCounts[output]++;
+                }
+            }
+        }
+        this.emittedBy = new int[outputCount][];
+        for (int output = 0; output < outputCount; output++) {
+            emittedBy[output] = new int[emitCounts[output]];
+        }
+        this.enteredBy = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            enteredBy[state] = new int[enterCounts[state]];
+        }
+        Arrays.fill(emitCounts, 0);
+        Arrays.fill(enterCounts, 0);
+        for (int state = 0; state < stateCount; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                int target = automaton.getTargetState(state, input);
+                int output = automaton.getOutputSignal(state, input);
+                if (target != DenseAutomaton.NONE) {
+                    enteredBy[target][enterCounts[target]++] = state * inputCount + input;
+                }
+                if (output != DenseAutomaton.NONE) {
+                    emittedBy[output][emitCounts[output]++] = state * inputCount + input;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param nodeLimit number of refinements after which the automaton is given up
+     * @return canonical form, {@code null} if the automaton is too large or too symmetric
+     */
+    static Canonization canonize(DenseAutomaton automaton, int nodeLimit) {
+        if (Math.max(automaton.getStateCount(), Math.max(automaton.getInputCount(), automaton.getOutputCount()))
+                > MAX_COLOR) {
+            return null;
+        }
+        AutomatonCanonizer canonizer = new AutomatonCanonizer(automaton, nodeLimit);
+        int[] stateColors = new int[canonizer.stateCount];
+        int[] inputColors = new int[canonizer.inputCount];
+        int[] outputColors = new int[canonizer.outputCount];
+        for (int input = 0; input < canonizer.inputCount; input++) {
+            inputColors[input] = canonizer.inputUsed[input] ? 1 : 0;
+        }
+        for (int output = 0; output < canonizer.outputCount; output++) {
+            outputColors[output] = canonizer.outputUsed[output] ? 1 : 0;
+        }
+        if (canonizer.search(0, stateColors, inputColors, outputColors) == ABORT) {
+            return null;
+        }
+        return canonizer.toCanonization();
+    }
+
+    /**
+     * @return {@link #CONTINUE}, {@link #ABORT} if the node limit is exceeded, or the depth of the node to continue
+     * at if the leaves below it are images of those already seen
+     */
+    private int search(int depth, int[] stateColors, int[] inputColors, int[] outputColors) {
+        if (++nodeCount > nodeLimit) {
+            return ABORT;
+        }
+        refine(stateColors, inputColors, outputColors);
+
+        int sort = STATES;
+        int[] colors = stateColors;
+        boolean[] used = null;
+        int cellColor = sharedColor(stateColors, null);
+        if (cellColor < 0) {
+            sort = INPUTS;
+            colors = inputColors;
+            used = inputUsed;
+            cellColor = sharedColor(inputColors, inputUsed);
+        }
+        if (cellColor < 0) {
+            sort = OUTPUTS;
+            colors = outputColors;
+            used = outputUsed;
+            cellColor = sharedColor(outputColors, outputUsed);
+        }
+        if (cellColor < 0) {
+            return leaf(depth, stateColors, inputColors, outputColors);
+        }
+
+        pathSorts[depth] = sort;
+        List<Integer> explored = new ArrayList<>();
+        for (int member = 0; member < colors.length; member++) {
+            if (colors[member] != cellColor || used != null && !used[member]
+                    || isImageOfExplored(depth, sort, member, explored)) {
+                continue;
+            }
+            pathElements[depth] = member;
+            int result = search(depth + 1,
+                    individualize(stateColors, sort == STATES ? member : -1, cellColor),
+                    individualize(inputColors, sort == INPUTS ? member : -1, cellColor),
+                    individualize(outputColors, sort == OUTPUTS ? member : -1, cellColor));
+            if (result == ABORT || result != CONTINUE && result < depth) {
+                return result;
+            }
+            explored.add(member);
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * Whether an automorphism found so far fixes the path to the node and maps an explored member of the cell to
+     * {@code member}, so the subtree of {@code member} is the image of one already searched.
+     */
+    private boolean isImageOfExplored(int depth, int sort, int member, List<Integer> explored) {
+        if (explored.isEmpty() || automorphisms.isEmpty()) {
+            return false;
+        }
+        int[] parents = IntStream.range(0, sort == STATES ? stateCount : sort == INPUTS ? inputCount : outputCount)
+                .toArray();
+        for (int[][] automorphism : automorphisms) {
+            boolean fixesPath = true;
+            for (int i = 0; i < depth && fixesPath; i++) {
+                fixesPath = automorphism[pathSorts[i]][pathElements[i]] == pathElements[i];
+            }
+            if (fixesPath) {
+                for (int element = 0; element < parents.length; element++) {
+                    parents[find(parents, element)] = find(parents, automorphism[sort][element]);
+                }
+            }
+        }
+        int root = find(parents, member);
+        return explored.stream().anyMatch(exploredMember -> find(parents, exploredMember) == root);
+    }
+
+    private static int find(int[] parents, int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    /**
+     * Doubles the colours and moves the other members of the cell of {@code member} right after it.
+     */
+    private static int[] individualize(int[] colors, int member, int cellColor) {
+        int[] result = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            result[i] = colors[i] * 2 + (member >= 0 && colors[i] == cellColor && i != member ? 1 : 0);
+        }
+        return result;
+    }
+
+    /**
+     * @return the least colour shared by several elements in use, {@code -1} if there is none
+     */
+    private static int sharedColor(int[] colors, boolean[] used) {
+        int[] counts = new int[colors.length];
+        int result = -1;
+        for (int i = 0; i < colors.length; i++) {
+            if ((used == null || used[i]) && ++counts[colors[i]] == 2 && (result < 0 || colors[i] < result)) {
+                result = colors[i];
+            }
+        }
+        return result;
+    }
+
+    private void refine(int[] stateColors, int[] inputColors, int[] outputColors) {
+        int stateColorCount = rank(stateColors);
+        int inputColorCount = rank(inputColors);
+        int outputColorCount = rank(outputColors);
+        while (true) {
+            long[][] stateSignatures = new long[stateCount][];
+            for (int state = 0; state < stateCount; state++) {
+                long[] signature = new long[inputCount + enteredBy[state].length + 1];
+                signature[0] = stateColors[state];
+                for (int input = 0; input < inputCount; input++) {
+                    signature[input + 1] = pack(inputColors[input],
+                            color(stateColors, automaton.getTargetState(state, input)),
+                            color(outputColors, automaton.getOutputSignal(state, input)));
+                }
+                for (int i = 0; i < enteredBy[state].length; i++) {
+                    int source = enteredBy[state][i] / inputCount;
+                    int input = enteredBy[state][i] % inputCount;
+                    signature[inputCount + i + 1] = pack(inputColors[input], stateColors[source],
+                            color(outputColors, automaton.getOutputSignal(source, input)));
+                }
+                Arrays.sort(signature, 1, inputCount + 1);
+                Arrays.sort(signature, inputCount + 1, signature.length);
+                stateSignatures[state] = signature;
+            }
+            long[][] inputSignatures = new long[inputCount][];
+            for (int input = 0; input < inputCount; input++) {
+                long[] signature = new long[stateCount + 1];
+                signature[0] = inputColors[input];
+                for (int state = 0; state < stateCount; state++) {
+                    signature[state + 1] = pack(stateColors[state],
+                            color(stateColors, automaton.getTargetState(state, input)),
+                            color(outputColors, automaton.getOutputSignal(state, input)));
+                }
+                Arrays.sort(signature, 1, signature.length);
+                inputSignatures[input] = signature;
+            }
+            long[][] outputSignatures = new long[outputCount][];
+            for (int output = 0; output < outputCount; output++) {
+                long[] signature = new long[emittedBy[output].length + 1];
+                signature[0] = outputColors[output];
+                for (int i = 0; i < emittedBy[output].length; i++) {
+                    int state = emittedBy[output][i] / inputCount;
+                    int input = emittedBy[output][i] % inputCount;
+                    signature[i + 1] = pack(stateColors[state], inputColors[input],
+                            color(stateColors, automaton.getTargetState(state, input)));
+                }
+                Arrays.sort(signature, 1, signature.length);
+                outputSignatures[output] = signature;
+            }
+
+            int newStateColorCount = rank(stateSignatures, stateColors);
+            int newInputColorCount = rank(inputSignatures, inputColors);
+            int newOutputColorCount = rank(outputSignatures, outputColors);
+            if (newStateColorCount == stateColorCount && newInputColorCount == inputColorCount
+                    && newOutputColorCount == outputColorCount) {
+                return;
+            }
+            stateColorCount = newStateColorCount;
+            inputColorCount = newInputColorCount;
+            outputColorCount = newOutputColorCount;
+        }
+    }
+
+    private int leaf(int depth, int[] stateColors, int[] inputColors, int[] outputColors) {
+        int[][] labels = {labels(stateColors), labels(inputColors), labels(outputColors)};
+        int[] stateOf = inverse(labels[STATES]);
+        int[] inputOf = inverse(labels[INPUTS]);
+
+        int[] code = new int[3 + 2 * stateCount * inputCount];
+        code[0] = stateCount;
+        code[1] = inputCount;
+        code[2] = outputCount;
+        int position = 3;
+        for (int label = 0; label < stateCount; label++) {
+            for (int inputLabel = 0; inputLabel < inputCount; inputLabel++) {
+                int state = stateOf[label];
+                int input = inputOf[inputLabel];
+                int target = automaton.getTargetState(state, input);
+                int output = automaton.getOutputSignal(state, input);
+                code[position++] = target == DenseAutomaton.NONE ? -1 : labels[STATES][target];
+                code[position++] = output == DenseAutomaton.NONE ? -1 : labels[OUTPUTS][output];
+            }
+        }
+        int[] path = Arrays.copyOf(pathElements, depth);
+
+        if (firstCode == null) {
+            firstCode = code;
+            firstLabels = labels;
+            firstPath = path;
+        } else if (Arrays.equals(code, firstCode)) {
+            return jumpBack(firstLabels, firstPath, labels, path);
+        }
+        int comparison = bestCode == null ? -1 : Arrays.compare(code, bestCode);
+        if (comparison < 0) {
+            bestCode = code;
+            bestLabels = labels;
+            bestPath = path;
+        } else if (comparison == 0) {
+            return jumpBack(bestLabels, bestPath, labels, path);
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * Records the automorphism mapping a leaf with the same code to this one.
+     *
+     * @return depth of the node where the paths to the leaves part
+     */
+    private int jumpBack(int[][] seenLabels, int[] seenPath, int[][] labels, int[] path) {
+        int[][] automorphism = new int[3][];
+        for (int sort = STATES; sort <= OUTPUTS; sort++) {
+            int[] elementOf = inverse(labels[sort]);
+            automorphism[sort] = new int[seenLabels[sort].length];
+            for (int element = 0; element < automorphism[sort].length; element++) {
+                automorphism[sort][element] = elementOf[seenLabels[sort][element]];
+            }
+        }
+        automorphisms.add(automorphism);
+        int depth = 0;
+        while (depth < path.length && depth < seenPath.length && path[depth] == seenPath[depth]) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private Canonization toCanonization() {
+        int[] stateOf = inverse(bestLabels[STATES]);
+        int[] inputOf = inverse(bestLabels[INPUTS]);
+        List<State> states = new ArrayList<>(stateCount);
+        for (int label = 0; label < stateCount; label++) {
+            states.add(new State(label));
+        }
+        List<InputSignal> inputSignals = new ArrayList<>(inputCount);
+        for (int label = 0; label < inputCount; label++) {
+            inputSignals.add(new InputSignal("x" + label));
+        }
+        List<OutputSignal> outputSignals = new ArrayList<>(outputCount);
+        for (int label = 0; label < outputCount; label++) {
+            outputSignals.add(new OutputSignal("y" + label));
+        }
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        for (int label = 0; label < stateCount; label++) {
+            for (int inputLabel = 0; inputLabel < inputCount; inputLabel++) {
+                transitions[label * inputCount + inputLabel] = bestCode[3 + 2 * (label * inputCount + inputLabel)];
+                outputs[label * inputCount + inputLabel] = bestCode[4 + 2 * (label * inputCount + inputLabel)];
+            }
+        }
+        DenseAutomaton canonicalAutomaton = new DenseAutomaton(states, inputSignals, outputSignals, transitions,
+                outputs);
+        return new Canonization(bestCode, canonicalAutomaton, stateOf, inverse(bestLabels[OUTPUTS]));
+    }
+
+    private static int color(int[] colors, int element) {
+        return element == DenseAutomaton.NONE ? -1 : colors[element];
+    }
+
+    private static long pack(int first, int second, int third) {
+        return ((long) (first + 1) << 42) | ((long) (second + 1) << 21) | (third + 1);
+    }
+
+    /**
+     * Replaces the colours by their dense ranks.
+     *
+     * @return number of colours
+     */
+    private static int rank(int[] colors) {
+        int[] sorted = colors.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = Arrays.binarySearch(sorted, 0, count, colors[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Colours the elements by the ranks of their signatures.
+     *
+     * @return number of colours
+     */
+    private static int rank(long[][] signatures, int[] colors) {
+        Integer[] order = IntStream.range(0, signatures.length).boxed().toArray(Integer[]::new);
+        Comparator<Integer> bySignature = (first, second) -> Arrays.compare(signatures[first], signatures[second]);
+        Arrays.sort(order, bySignature);
+        int count = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0 && bySignature.compare(order[i - 1], order[i]) != 0) {
+                count++;
+            }
+            colors[order[i]] = count;
+        }
+        return order.length == 0 ? 0 : count + 1;
+    }
+
+    /**
+     * Labels by colour, elements sharing a colour are ordered by their index.
+     */
+    private static int[] labels(int[] colors) {
+        Integer[] order = IntStream.range(0, colors.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> colors[i]).thenComparingInt(i -> i));
+        int[] labels = new int[colors.length];
+        for (int label = 0; label < order.length; label++) {
+            labels[order[label]] = label;
+        }
+        return labels;
+    }
+
+    private static int[] inverse(int[] permutation) {
+        int[] inverse = new int[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            inverse[permutation[i]] = i;
+        }
+        return inverse;
+    }
+
+    /**
+     * Canonical form of an automaton together with the way back to its own labels.
+     */
+    static final class Canonization {
+        private final int[] code;
+        private final DenseAutomaton automaton;
+        private final int[] stateOf;
+        private final int[] outputOf;
+
+        private Canonization(int[] code, DenseAutomaton automaton, int[] stateOf, int[] outputOf) {
+            this.code = code;
+            this.automaton = automaton;
+            this.stateOf = stateOf;
+            this.outputOf = outputOf;
+        }
+
+        /**
+         * Equal for automata equal up to renaming.
+         */
+        int[] getCode() {
+            return code;
+        }
+
+        /**
+         * Canonical automaton, its states, input and output signals are labelled by their canonical indices.
+         */
+        DenseAutomaton getAutomaton() {
+            return automaton;
+        }
+
+        /**
+         * @return index of the state of the original automaton with the canonical index {@code label}
+         */
+        int getState(int label) {
+            return stateOf[label];
+        }
+
+        /**
+         * @return index of the output signal of the original automaton with the canonical index {@code label}
+         */
+        int getOutput(int label) {
+            return outputOf[label];
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.InputSignal;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.service.IAutomatonFileService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary automaton files. All numbers are little-endian ints:
+ * <pre>
+ * magic                the bytes "AUTM"
+ * version              1
+ * stateCount
+ * inputCount
+ * outputCount
+ * stringTableLength    in bytes
+ * labels               stateCount labels of the states, ascending
+ * transitions          stateCount * inputCount indices of target states, -1 if missing
+ * outputs              stateCount * inputCount indices of output signals, -1 if missing
+ * string table         the names of the input signals and then of the output signals, each as its length in
+ *                      bytes and the bytes in UTF-8
+ * </pre>
+ * The tables are laid out as in {@link DenseAutomaton}, so a mapped file is used as it is. Only the signal names
+ * are decoded when the file is read, the tables are checked but not copied.
+ */
+@Slf4j
+@Service
+public class AutomatonFileService implements IAutomatonFileService {
+    static final int MAGIC = 'A' | 'U' << 8 | 'T' << 16 | 'M' << 24;
+    static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    @Override
+    public DenseAutomaton read(Path path) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new MalformedAutomatonException(path + " is larger than an automaton can be");
+            }
+            // the mapping stays valid after the channel is closed
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapping.limit() < HEADER_INTS * Integer.BYTES) {
+            throw new MalformedAutomatonException(path + " is too short for the header");
+        }
+        IntBuffer header = mapping.asIntBuffer();
+        if (header.get(0) != MAGIC) {
+            throw new MalformedAutomatonException(path + " is not an automaton file");
+        }
+        if (header.get(1) != VERSION) {
+            throw new MalformedAutomatonException(path + " has version " + header.get(1) + ", expected " + VERSION);
+        }
+        int stateCount = header.get(2);
+        int inputCount = header.get(3);
+        int outputCount = header.get(4);
+        int stringTableLength = header.get(5);
+        if (stateCount < 0 || inputCount < 0 || outputCount < 0 || stringTableLength < 0) {
+            throw new MalformedAutomatonException(path + " has a negative count in the header");
+        }
+        long tableLength = (long) stateCount * inputCount;
+        long intCount = HEADER_INTS + stateCount + 2 * tableLength;
+        if (tableLength > Integer.MAX_VALUE || intCount * Integer.BYTES + stringTableLength != mapping.limit()) {
+            throw new MalformedAutomatonException(path + " has " + mapping.limit() + " bytes, the header describes "
+                    + (intCount * Integer.BYTES + stringTableLength));
+        }
+
+        IntBuffer labels = slice(mapping, HEADER_INTS, stateCount);
+        IntBuffer transitions = slice(mapping, HEADER_INTS + stateCount, (int) tableLength);
+        IntBuffer outputs = slice(mapping, HEADER_INTS + stateCount + (int) tableLength, (int) tableLength);
+        for (int state = 1; state < stateCount; state++) {
+            if (labels.get(state - 1) >= labels.get(state)) {
+                throw new MalformedAutomatonException(path + " has state labels out of order at state " + state);
+            }
+        }
+        checkIndices(path, "transitions", transitions, stateCount);
+        checkIndices(path, "outputs", outputs, outputCount);
+
+        ByteBuffer strings = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        strings.position((int) (intCount * Integer.BYTES));
+        List<InputSignal> inputSignals = new ArrayList<>(inputCount);
+        for (int input = 0; input < inputCount; input++) {
+            inputSignals.add(new InputSignal(readString(path, strings)));
+        }
+        List<OutputSignal> outputSignals = new ArrayList<>(outputCount);
+        for (int output = 0; output < outputCount; output++) {
+            outputSignals.add(new OutputSignal(readString(path, strings)));
+        }
+        if (strings.hasRemaining()) {
+            throw new MalformedAutomatonException(path + " has " + strings.remaining() + " bytes after the names");
+        }
+
+        log.debug("read: {} has {} states, {} inputs and {} outputs", path, stateCount, inputCount, outputCount);
+        return new DenseAutomaton(new MappedStateList(labels), inputSignals, outputSignals, transitions, outputs);
+    }
+
+    @Override
+    public void write(DenseAutomaton automaton, Path path) throws IOException {
+        int stateCount = automaton.getStateCount();
+        int inputCount = automaton.getInputCount();
+        List<byte[]> names = new ArrayList<>();
+        automaton.getInputSignals().forEach(inputSignal -> names.add(inputSignal.getName()
+                .getBytes(StandardCharsets.UTF_8)));
+        automaton.getOutputSignals().forEach(outputSignal -> names.add(outputSignal.getName()
+                .getBytes(StandardCharsets.UTF_8)));
+        long stringTableLength = 0;
+        for (byte[] name : names) {
+            stringTableLength += Integer.BYTES + name.length;
+        }
+        long tableLength = (long) stateCount * inputCount;
+        long length = (HEADER_INTS + stateCount + 2 * tableLength) * Integer.BYTES + stringTableLength;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automaton needs " + length + " bytes, more than a file can map");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ints = mapping.asIntBuffer();
+            ints.put(MAGIC).put(VERSION).put(stateCount).put(inputCount).put(automaton.getOutputCount())
+                    .put((int) stringTableLength);
+            for (int state = 0; state < stateCount; state++) {
+                ints.put(automaton.getState(state).getLabel());
+            }
+            for (int state = 0; state < stateCount; state++) {
+                for (int input = 0; input < inputCount; input++) {
+                    ints.put(automaton.getTargetState(state, input));
+                }
+            }
+            for (int state = 0; state < stateCount; state++) {
+                for (int input = 0; input < inputCount; input++) {
+                    ints.put(automaton.getOutputSignal(state, input));
+                }
+            }
+            mapping.position(ints.position() * Integer.BYTES);
+            for (byte[] name : names) {
+                mapping.putInt(name.length).put(name);
+            }
+            mapping.force();
+        }
+        log.debug("write: {} has {} bytes", path, length);
+    }
+
+    private static IntBuffer slice(ByteBuffer mapping, int offset, int length) {
+        ByteBuffer bytes = mapping.duplicate();
+        bytes.position(offset * Integer.BYTES).limit((offset + length) * Integer.BYTES);
+        return bytes.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static void checkIndices(Path path, String table, IntBuffer indices, int count)
+            throws MalformedAutomatonException {
+        for (int i = 0; i < indices.limit(); i++) {
+            int index = indices.get(i);
+            if (index < DenseAutomaton.NONE || index >= count) {
+                throw new MalformedAutomatonException(path + " has " + index + " at entry " + i + " of the "
+                        + table + ", expected -1 to " + (count - 1));
+            }
+        }
+    }
+
+    private static String readString(Path path, ByteBuffer strings) throws MalformedAutomatonException {
+        if (strings.remaining() < Integer.BYTES) {
+            throw new MalformedAutomatonException(path + " ends inside the names");
+        }
+        int length = strings.getInt();
+        if (length < 0 || length > strings.remaining()) {
+            throw new MalformedAutomatonException(path + " has a name of " + length + " bytes where "
+                    + strings.remaining() + " are left");
+        }
+        byte[] bytes = new byte[length];
+        strings.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
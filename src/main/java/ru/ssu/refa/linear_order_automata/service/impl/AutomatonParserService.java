@@ -0,0 +1,219 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Service;
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.service.IAutomatonParserService;
+import ru.ssu.refa.linear_order_automata.service.IParseProgressListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Reads the input token by token and hands every transition to a {@link DenseAutomatonBuilder}, so the memory
+ * needed is that of the tables, whatever the size of the input.
+ */
+@Service
+public class AutomatonParserService implements IAutomatonParserService {
+    private static final String MISSING = "-";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Override
+    public DenseAutomaton parseJson(InputStream input, boolean allowPartial, IParseProgressListener listener)
+            throws IOException {
+        DenseAutomatonBuilder builder = new DenseAutomatonBuilder(listener);
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            try {
+                expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "states":
+                            builder.states(readInts(parser, value));
+                            break;
+                        case "inputSignals":
+                            builder.inputSignals(readStrings(parser, value));
+                            break;
+                        case "outputSignals":
+                            builder.outputSignals(readStrings(parser, value));
+                            break;
+                        case "transitions":
+                            readTransitions(parser, value, builder);
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+                expect(parser, parser.currentToken(), JsonToken.END_OBJECT);
+                return builder.build(allowPartial);
+            } catch (MalformedAutomatonException e) {
+                throw new MalformedAutomatonException(e.getMessage() + " at " + location(parser), e);
+            } catch (JsonProcessingException e) {
+                throw new MalformedAutomatonException(e.getOriginalMessage() + " at " + location(parser), e);
+            }
+        }
+    }
+
+    @Override
+    public DenseAutomaton parseText(Reader input, boolean allowPartial, IParseProgressListener listener)
+            throws IOException {
+        DenseAutomatonBuilder builder = new DenseAutomatonBuilder(listener);
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        long lineNumber = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                StringTokenizer tokens = new StringTokenizer(line);
+                if (!tokens.hasMoreTokens()) {
+                    continue;
+                }
+                String first = tokens.nextToken();
+                if (first.startsWith("#")) {
+                    continue;
+                }
+                switch (first) {
+                    case "states":
+                        int[] labels = new int[tokens.countTokens()];
+                        for (int i = 0; i < labels.length; i++) {
+                            labels[i] = parseLabel(tokens.nextToken());
+                        }
+                        builder.states(labels);
+                        break;
+                    case "inputs":
+                        builder.inputSignals(remaining(tokens));
+                        break;
+                    case "outputs":
+                        builder.outputSignals(remaining(tokens));
+                        break;
+                    default:
+                        if (tokens.countTokens() != 3) {
+                            throw new MalformedAutomatonException("Transition must have a state, an input, a "
+                                    + "target and an output");
+                        }
+                        String inputSignal = tokens.nextToken();
+                        String target = tokens.nextToken();
+                        String output = tokens.nextToken();
+                        boolean hasTarget = !MISSING.equals(target);
+                        builder.transition(parseLabel(first), inputSignal, hasTarget,
+                                hasTarget ? parseLabel(target) : 0, MISSING.equals(output) ? null : output);
+                }
+            }
+            return builder.build(allowPartial);
+        } catch (MalformedAutomatonException e) {
+            throw new MalformedAutomatonException(e.getMessage() + " at line " + lineNumber, e);
+        }
+    }
+
+    private static void readTransitions(JsonParser parser, JsonToken value, DenseAutomatonBuilder builder)
+            throws IOException {
+        expect(parser, value, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Integer state = null;
+            String input = null;
+            boolean hasTarget = false;
+            int target = 0;
+            String output = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "state":
+                        expect(parser, token, JsonToken.VALUE_NUMBER_INT);
+                        state = parser.getIntValue();
+                        break;
+                    case "input":
+                        expect(parser, token, JsonToken.VALUE_STRING);
+                        input = parser.getText();
+                        break;
+                    case "target":
+                        if (token != JsonToken.VALUE_NULL) {
+                            expect(parser, token, JsonToken.VALUE_NUMBER_INT);
+                            hasTarget = true;
+                            target = parser.getIntValue();
+                        }
+                        break;
+                    case "output":
+                        if (token != JsonToken.VALUE_NULL) {
+                            expect(parser, token, JsonToken.VALUE_STRING);
+                            output = parser.getText();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (state == null) {
+                throw new MalformedAutomatonException("Transition has no state");
+            }
+            builder.transition(state, input, hasTarget, target, output);
+        }
+        expect(parser, parser.currentToken(), JsonToken.END_ARRAY);
+    }
+
+    private static int[] readInts(JsonParser parser, JsonToken value) throws IOException {
+        expect(parser, value, JsonToken.START_ARRAY);
+        int[] ints = new int[16];
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.VALUE_NUMBER_INT);
+            if (size == ints.length) {
+                ints = Arrays.copyOf(ints, size * 2);
+            }
+            ints[size++] = parser.getIntValue();
+        }
+        return Arrays.copyOf(ints, size);
+    }
+
+    private static List<String> readStrings(JsonParser parser, JsonToken value) throws IOException {
+        expect(parser, value, JsonToken.START_ARRAY);
+        List<String> strings = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.VALUE_STRING);
+            strings.add(parser.getText());
+        }
+        return strings;
+    }
+
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected)
+            throws MalformedAutomatonException {
+        if (token != expected) {
+            throw new MalformedAutomatonException("Expected " + expected + " but found " + token);
+        }
+    }
+
+    private static String location(JsonParser parser) {
+        return "line " + parser.getCurrentLocation().getLineNr() + ", column "
+                + parser.getCurrentLocation().getColumnNr();
+    }
+
+    private static List<String> remaining(StringTokenizer tokens) {
+        List<String> names = new ArrayList<>(tokens.countTokens());
+        while (tokens.hasMoreTokens()) {
+            names.add(tokens.nextToken());
+        }
+        return names;
+    }
+
+    private static int parseLabel(String token) throws MalformedAutomatonException {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new MalformedAutomatonException("State label " + token + " is not an int", e);
+        }
+    }
+}
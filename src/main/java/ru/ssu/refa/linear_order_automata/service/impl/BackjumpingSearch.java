@@ -0,0 +1,303 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.BitRelation;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.SearchStatistics;
+import ru.ssu.refa.linear_order_automata.model.TransitiveClosure;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conflict-directed backjumping. The decision level at which a pair of {@code w} or {@code w1} was added is read
+ * from the trail of the relation, {@link TransitiveClosure#getAddedMark}, so no level is stored per pair. When an
+ * orientation of a pair fails because its orbit contains the reverse of a pair already in the relations, the
+ * decision responsible is the one which added that pair: the orientation fails with the decisions up to it alone.
+ * When both orientations fail, the search jumps back to the later of the two responsible decisions, skipping the
+ * decisions made after it, which had no part in the conflict. A conflict arising only while the orbit is being
+ * closed is blamed on the previous decision, as in chronological backtracking.
+ * <p>
+ * Each such conflict is also learned as a nogood, the decisions up to the responsible one with their
+ * orientations. A relation containing all pairs of a nogood cannot be completed, as the orbits of those pairs
+ * force the conflict again, so an orientation which makes the relation contain a nogood fails at once. This holds
+ * for pairs ordered by transitivity as well: the transitive closure of relations containing their orbits contains
+ * the orbits of its pairs too.
+ * <p>
+ * Only subtrees without a solution are skipped, so the search returns the same order as {@link ChronologicalSearch}.
+ */
+@Slf4j
+class BackjumpingSearch extends OrderingSearch {
+    private final int outputCount;
+    private final int nogoodLimit;
+    private final int nogoodMaxSize;
+    private final Deque<long[]> nogoods = new ArrayDeque<>();
+
+    // decisions by level, level 0 is the initial relation
+    private long[] decisionPairs = new long[16];
+    private boolean[] decisionsReverted = new boolean[16];
+    private int[] wMarks = new int[16];
+    private int[] w1Marks = new int[16];
+    private int depth;
+
+    private long decisionCount;
+    private long backjumpCount;
+    private long skippedLevelCount;
+    private long nogoodPruneCount;
+
+    BackjumpingSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                      IOrbitProvider orbitProvider, PairSelector pairSelector, boolean revertedFirst,
+                      int nogoodLimit, int nogoodMaxSize) {
+        this(automataUtilsService, automaton, orbitProvider, pairSelector, revertedFirst,
+                new TransitiveClosure(BitRelation.identity(automaton.getStateCount())),
+                new TransitiveClosure(BitRelation.identity(automaton.getOutputCount())), new AtomicBoolean(),
+                new AtomicBoolean(), SearchRecorder.DISABLED, nogoodLimit, nogoodMaxSize);
+    }
+
+    BackjumpingSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                      IOrbitProvider orbitProvider, PairSelector pairSelector, boolean revertedFirst,
+                      TransitiveClosure wRelation, TransitiveClosure w1Relation, AtomicBoolean cancelled,
+                      AtomicBoolean stopped, SearchRecorder recorder, int nogoodLimit, int nogoodMaxSize) {
+        super(automataUtilsService, automaton, orbitProvider, pairSelector, revertedFirst, wRelation, w1Relation,
+                cancelled, stopped, recorder);
+        this.outputCount = automaton.getOutputCount();
+        this.nogoodLimit = nogoodLimit;
+        this.nogoodMaxSize = nogoodMaxSize;
+    }
+
+    @Override
+    LinearOrder run() {
+        wMarks[0] = wRelation.mark();
+        w1Marks[0] = w1Relation.mark();
+        try {
+            return search();
+        } finally {
+            log.debug("run: {} decisions, {} backjumps over {} levels, {} nogoods learned, {} nogood prunes",
+                    decisionCount, backjumpCount, skippedLevelCount, nogoods.size(), nogoodPruneCount);
+        }
+    }
+
+    private LinearOrder search() {
+        while (true) {
+            checkCancelled();
+            if (isOrderConstructed()) {
+                return toLinearOrder();
+            }
+
+            long currentPair = selectNextPair();
+            if (currentPair == NO_PAIR) {
+                return failure("Can't select next pair for order construction");
+            }
+            int left = (int) (currentPair / stateCount);
+            int right = (int) (currentPair % stateCount);
+            log.trace("currentPair - ({}, {})", automaton.getState(left), automaton.getState(right));
+
+            DenseOrbit orbit;
+            try {
+                orbit = orbitProvider.getOrbit(left, right);
+            } catch (SymmetricRelationException e) {
+                return orbitViolatesAntisymmetry(e);
+            }
+
+            int level = depth + 1;
+            int firstCulprit = tryOrientation(currentPair, orbit, revertedFirst, level);
+            if (firstCulprit < 0) {
+                continue;
+            }
+            int secondCulprit = tryOrientation(currentPair, orbit, !revertedFirst, level);
+            if (secondCulprit < 0) {
+                continue;
+            }
+
+            int culprit = Math.max(firstCulprit, secondCulprit);
+            log.trace("[{}] - both orientations of ({}, {}) fail, responsible decision {}", level, left, right,
+                    culprit);
+            learnNogood(culprit);
+            if (culprit < level - 1) {
+                backjumpCount++;
+                skippedLevelCount += level - 1 - culprit;
+            }
+            if (!backjump(culprit)) {
+                return failure(TREE_EXHAUSTED);
+            }
+        }
+    }
+
+    /**
+     * Undoes the decisions after {@code culprit} and changes the orientation of the decision {@code culprit}, or of
+     * an earlier one if both orientations of it are exhausted.
+     *
+     * @return {@code false} if every decision is exhausted
+     */
+    private boolean backjump(int culprit) {
+        while (culprit > 0) {
+            long pair = decisionPairs[culprit];
+            boolean wasReverted = decisionsReverted[culprit];
+            undo(culprit);
+
+            if (wasReverted == revertedFirst) {
+                DenseOrbit orbit;
+                try {
+                    orbit = orbitProvider.getOrbit((int) (pair / stateCount), (int) (pair % stateCount));
+                } catch (SymmetricRelationException e) {
+                    throw new IllegalStateException("Orbit of a decided pair violates antisymmetry", e);
+                }
+                // the preferred orientation is excluded by the conflict, which depends on the earlier decisions only
+                if (tryOrientation(pair, orbit, !revertedFirst, culprit) < 0) {
+                    return true;
+                }
+            }
+            culprit--;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the orbit as the decision on {@code level}.
+     *
+     * @param pair encoded pair {@code (left, right)}, {@code left < right}
+     * @return {@code -1} if the decision is made, otherwise the decision responsible for the failure
+     */
+    private int tryOrientation(long pair, DenseOrbit orbit, boolean isReverted, int level) {
+        // a conflict in either relation rules the orientation out, so the earlier one is to blame
+        int culprit = earlier(
+                findConflict(wRelation, wMarks, stateCount, orbit.getTransitionOrbit(), isReverted),
+                findConflict(w1Relation, w1Marks, outputCount, orbit.getOutputOrbit(), isReverted));
+        if (culprit >= 0) {
+            recorder.violation(SearchStatistics.Phase.SEARCH);
+            return culprit;
+        }
+
+        int wMark = wRelation.mark();
+        int w1Mark = w1Relation.mark();
+        if (!addOrbit(wRelation, w1Relation, orbit, isReverted)) {
+            wRelation.rollback(wMark);
+            w1Relation.rollback(w1Mark);
+            recorder.rollback();
+            return level - 1;
+        }
+        if (containsNogood()) {
+            nogoodPruneCount++;
+            wRelation.rollback(wMark);
+            w1Relation.rollback(w1Mark);
+            recorder.rollback();
+            return level - 1;
+        }
+
+        push(level, pair, isReverted, wMark, w1Mark);
+        decisionCount++;
+        log.trace("[{}] - added {} pair ({}, {})", level, isReverted ? "reverted" : "straight",
+                pair / stateCount, pair % stateCount);
+        return -1;
+    }
+
+    /**
+     * @return the earliest level any conflicting pair was added at, if the orbit conflicts with the relation
+     * directly, i.e. the reverse of some of its pairs is already in the relation, otherwise {@code -1}
+     */
+    private int findConflict(TransitiveClosure relation, int[] marks, int size, long[] orbit, boolean isReverted) {
+        int culprit = Integer.MAX_VALUE;
+        for (long pair : orbit) {
+            int left = (int) (pair / size);
+            int right = (int) (pair % size);
+            if (isReverted) {
+                int swap = left;
+                left = right;
+                right = swap;
+            }
+            if (relation.contains(right, left)) {
+                // the earliest conflicting pair is enough to rule the orientation out
+                culprit = Math.min(culprit, levelOf(relation.getAddedMark(right, left), marks));
+            }
+        }
+        return culprit == Integer.MAX_VALUE ? -1 : culprit;
+    }
+
+    /**
+     * @param marks marks of the relation taken by the decisions, by level
+     * @return the decision level which took {@code mark} or the last one before it, {@code 0} for a mark taken
+     * before the search started
+     */
+    private int levelOf(int mark, int[] marks) {
+        if (mark < marks[0]) {
+            return 0;
+        }
+        int level = Arrays.binarySearch(marks, 0, depth + 1, mark);
+        return level >= 0 ? level : -level - 2;
+    }
+
+    /**
+     * @return the smaller of two culprits, where {@code -1} is no culprit
+     */
+    private static int earlier(int culprit, int otherCulprit) {
+        if (culprit < 0) {
+            return otherCulprit;
+        }
+        return otherCulprit < 0 ? culprit : Math.min(culprit, otherCulprit);
+    }
+
+    private void learnNogood(int culprit) {
+        if (culprit <= 0 || culprit > nogoodMaxSize || nogoodLimit <= 0) {
+            return;
+        }
+        long[] nogood = new long[culprit];
+        for (int level = 1; level <= culprit; level++) {
+            long pair = decisionPairs[level];
+            nogood[level - 1] = decisionsReverted[level]
+                    ? (pair % stateCount) * stateCount + pair / stateCount : pair;
+        }
+        if (nogoods.size() == nogoodLimit) {
+            nogoods.removeFirst();
+        }
+        nogoods.addLast(nogood);
+    }
+
+    private boolean containsNogood() {
+        for (long[] nogood : nogoods) {
+            boolean contained = true;
+            for (long pair : nogood) {
+                if (!wRelation.contains((int) (pair / stateCount), (int) (pair % stateCount))) {
+                    contained = false;
+                    break;
+                }
+            }
+            if (contained) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void push(int level, long pair, boolean isReverted, int wMark, int w1Mark) {
+        if (level == decisionPairs.length) {
+            int capacity = level * 2;
+            decisionPairs = Arrays.copyOf(decisionPairs, capacity);
+            decisionsReverted = Arrays.copyOf(decisionsReverted, capacity);
+            wMarks = Arrays.copyOf(wMarks, capacity);
+            w1Marks = Arrays.copyOf(w1Marks, capacity);
+        }
+        decisionPairs[level] = pair;
+        decisionsReverted[level] = isReverted;
+        wMarks[level] = wMark;
+        w1Marks[level] = w1Mark;
+        depth = level;
+        recorder.step(level);
+    }
+
+    /**
+     * Undoes the decision on {@code level} and every later one.
+     */
+    private void undo(int level) {
+        wRelation.rollback(wMarks[level]);
+        w1Relation.rollback(w1Marks[level]);
+        depth = level - 1;
+        recorder.rollback();
+    }
+}
@@ -0,0 +1,166 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.SearchStatistics;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Orders of automata keyed by their canonical form, so an automaton which only renames the states and signals of
+ * one ordered before is not searched again. The canonical automaton is what gets searched, and its order is
+ * translated to the labels of each caller, so the order of an automaton doesn't depend on whether it was cached.
+ * <p>
+ * The least recently used orders are evicted once their codes and pairs exceed the capacity.
+ */
+@Slf4j
+final class CanonicalOrderCache {
+    private final long capacity;
+    private final int nodeLimit;
+    private final LinkedHashMap<Key, CachedOrder> orders = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedSize;
+
+    /**
+     * @param capacity  number of ints the codes and ordered pairs of the cached automata may occupy in total
+     * @param nodeLimit number of refinements after which an automaton is searched without the cache
+     */
+    CanonicalOrderCache(long capacity, int nodeLimit) {
+        this.capacity = capacity;
+        this.nodeLimit = nodeLimit;
+    }
+
+    LinearOrder orderAutomaton(DenseAutomaton automaton, Function<DenseAutomaton, LinearOrder> search,
+                               SearchRecorder recorder) {
+        long start = recorder.start();
+        AutomatonCanonizer.Canonization canonization = AutomatonCanonizer.canonize(automaton, nodeLimit);
+        recorder.stop(SearchStatistics.Phase.CACHE, start);
+        if (canonization == null) {
+            log.debug("orderAutomaton: no canonical form of {} states within {} refinements",
+                    automaton.getStateCount(), nodeLimit);
+            return search.apply(automaton);
+        }
+
+        Key key = new Key(canonization.getCode());
+        CachedOrder cachedOrder;
+        synchronized (this) {
+            cachedOrder = orders.get(key);
+        }
+        if (cachedOrder == null) {
+            cachedOrder = new CachedOrder(canonization.getAutomaton(), search.apply(canonization.getAutomaton()));
+            put(key, cachedOrder);
+        } else {
+            log.debug("orderAutomaton: canonical form of {} states is cached", automaton.getStateCount());
+        }
+        start = recorder.start();
+        LinearOrder linearOrder = cachedOrder.toLinearOrder(automaton, canonization);
+        recorder.stop(SearchStatistics.Phase.CACHE, start);
+        return linearOrder;
+    }
+
+    private synchronized void put(Key key, CachedOrder cachedOrder) {
+        CachedOrder previous = orders.put(key, cachedOrder);
+        if (previous != null) {
+            cachedSize -= previous.getSize(key);
+        }
+        cachedSize += cachedOrder.getSize(key);
+        Iterator<Map.Entry<Key, CachedOrder>> eldest = orders.entrySet().iterator();
+        while (cachedSize > capacity && orders.size() > 1) {
+            Map.Entry<Key, CachedOrder> entry = eldest.next();
+            cachedSize -= entry.getValue().getSize(entry.getKey());
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return orders.size();
+    }
+
+    private static final class Key {
+        private final int[] code;
+        private final int hashCode;
+
+        Key(int[] code) {
+            this.code = code;
+            this.hashCode = Arrays.hashCode(code);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hashCode == ((Key) o).hashCode && Arrays.equals(code, ((Key) o).code);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Order of a canonical automaton by canonical indices, pairs are encoded as {@code left * count + right}.
+     */
+    private static final class CachedOrder {
+        private final boolean resolution;
+        private final String reason;
+        private final long[] statePairs;
+        private final long[] outputPairs;
+
+        CachedOrder(DenseAutomaton canonicalAutomaton, LinearOrder linearOrder) {
+            this.resolution = linearOrder.isResolution();
+            this.reason = linearOrder.getReason();
+            if (!resolution) {
+                this.statePairs = new long[0];
+                this.outputPairs = new long[0];
+                return;
+            }
+            int stateCount = canonicalAutomaton.getStateCount();
+            this.statePairs = linearOrder.getOrderOnStateSet().stream()
+                    .mapToLong(pair -> (long) canonicalAutomaton.indexOf(pair.getLeft()) * stateCount
+                            + canonicalAutomaton.indexOf(pair.getRight()))
+                    .toArray();
+            Map<OutputSignal, Integer> outputIndices = new HashMap<>();
+            for (int output = 0; output < canonicalAutomaton.getOutputCount(); output++) {
+                outputIndices.put(canonicalAutomaton.getOutput(output), output);
+            }
+            int outputCount = canonicalAutomaton.getOutputCount();
+            this.outputPairs = linearOrder.getOrderOnOutputSignalSet().stream()
+                    .mapToLong(pair -> (long) outputIndices.get(pair.getLeft()) * outputCount
+                            + outputIndices.get(pair.getRight()))
+                    .toArray();
+        }
+
+        long getSize(Key key) {
+            return key.code.length + 2L * (statePairs.length + outputPairs.length);
+        }
+
+        LinearOrder toLinearOrder(DenseAutomaton automaton, AutomatonCanonizer.Canonization canonization) {
+            if (!resolution) {
+                return new LinearOrder(false, reason);
+            }
+            int stateCount = automaton.getStateCount();
+            Set<Pair<State>> orderOnStateSet = new HashSet<>();
+            for (long pair : statePairs) {
+                orderOnStateSet.add(new Pair<>(automaton.getState(canonization.getState((int) (pair / stateCount))),
+                        automaton.getState(canonization.getState((int) (pair % stateCount)))));
+            }
+            int outputCount = automaton.getOutputCount();
+            Set<Pair<OutputSignal>> orderOnOutputSignalSet = new HashSet<>();
+            for (long pair : outputPairs) {
+                orderOnOutputSignalSet.add(new Pair<>(
+                        automaton.getOutput(canonization.getOutput((int) (pair / outputCount))),
+                        automaton.getOutput(canonization.getOutput((int) (pair % outputCount)))));
+            }
+            return new LinearOrder(orderOnStateSet, orderOnOutputSignalSet);
+        }
+    }
+}
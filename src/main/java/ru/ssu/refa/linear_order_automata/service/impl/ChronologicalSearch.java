@@ -0,0 +1,197 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.Order;
+import ru.ssu.refa.linear_order_automata.model.TransitiveClosure;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chronological backtracking: a pair is tried in the preferred orientation, then in the other one, and when both
+ * fail the most recent decision still in the preferred orientation is turned around.
+ */
+@Slf4j
+class ChronologicalSearch extends OrderingSearch {
+
+    ChronologicalSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                        IOrbitProvider orbitProvider, PairSelector pairSelector, boolean revertedFirst) {
+        super(automataUtilsService, automaton, orbitProvider, pairSelector, revertedFirst);
+    }
+
+    ChronologicalSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                        IOrbitProvider orbitProvider, PairSelector pairSelector, boolean revertedFirst,
+                        TransitiveClosure wRelation, TransitiveClosure w1Relation, AtomicBoolean cancelled,
+                        AtomicBoolean stopped, SearchRecorder recorder) {
+        super(automataUtilsService, automaton, orbitProvider, pairSelector, revertedFirst, wRelation, w1Relation,
+                cancelled, stopped, recorder);
+    }
+
+    @Override
+    LinearOrder run() {
+        int stepNo = 0;
+        Deque<Step> steps = new LinkedList<>();
+        steps.push(new Step(wRelation.mark(), w1Relation.mark()));
+        log.trace("[{}] - stack is initiated", stepNo++);
+
+        long currentPair;
+        while (true) {
+            checkCancelled();
+            Step previousStep = steps.peek();
+            log.trace("previousStep - {}", previousStep);
+
+            // previousStep mayn't be null here, so we can skip an assertion
+            if (isOrderConstructed()) {
+                return toLinearOrder();
+            }
+
+            currentPair = selectNextPair();
+            if (currentPair == NO_PAIR) {
+                return failure("Can't select next pair for order construction");
+            }
+            int left = (int) (currentPair / stateCount);
+            int right = (int) (currentPair % stateCount);
+            log.trace("currentPair - ({}, {})", automaton.getState(left), automaton.getState(right));
+
+            DenseOrbit orbit;
+            try {
+                orbit = orbitProvider.getOrbit(left, right);
+            } catch (SymmetricRelationException e) {
+                // only with orbits calculated on demand, the other pairs are checked up front
+                return orbitViolatesAntisymmetry(e);
+            }
+
+            int wMark = wRelation.mark();
+            int w1Mark = w1Relation.mark();
+            Order partialOrder = tryToAddOrbits(orbit, revertedFirst);
+            if (partialOrder != null) {
+                log.trace("partialOrder - {}", partialOrder);
+                steps.push(new Step(currentPair, partialOrder.isPairReverted(), wMark, w1Mark));
+                recorder.step(steps.size() - 1);
+                if (!partialOrder.isPairReverted()) {
+                    log.trace("[{}] - added straight pair ({}, {}) to stack", stepNo++, left, right);
+                } else {
+                    log.trace("[{}] - added reverted pair ({}, {}) to stack", stepNo++, right, left);
+                }
+                continue;
+            }
+            wRelation.rollback(wMark);
+            w1Relation.rollback(w1Mark);
+            recorder.rollback();
+            log.trace("Straight and reverted pair ({}, {}) violates antisymmetry -> roll back", left, right);
+
+            while (true) {
+                // initial step is never exhausted, so we can skip an assertion
+                while (isExhausted(steps.peek())) {
+                    rollback(steps.pop());
+                    log.trace("[{}] - removed pair ({}, {}) from stack", stepNo++, left, right);
+                }
+
+                if (steps.peek().currentPair == NO_PAIR) {
+                    return failure(TREE_EXHAUSTED);
+                }
+
+                Step stepToRevert = steps.pop();
+                log.trace("stepToRevert - {}", stepToRevert);
+                rollback(stepToRevert);
+                long pairOfStepToRevert = stepToRevert.currentPair;
+                int revertedWMark = wRelation.mark();
+                int revertedW1Mark = w1Relation.mark();
+                if (addOrbit(wRelation, w1Relation, getDecidedOrbit(pairOfStepToRevert), !revertedFirst)) {
+                    log.trace("[{}] - reverted pair of {}", stepNo++, stepToRevert);
+                    steps.push(new Step(pairOfStepToRevert, !revertedFirst, revertedWMark, revertedW1Mark));
+                    recorder.step(steps.size() - 1);
+                    break;
+                }
+                wRelation.rollback(revertedWMark);
+                w1Relation.rollback(revertedW1Mark);
+                recorder.rollback();
+                log.trace("Reverted pair violates antisymmetry, continue rolling back");
+            }
+        }
+    }
+
+    /**
+     * Adds the orbit to the relations, in the other orientation if the preferred one violates antisymmetry.
+     * Changes made by a failed attempt are rolled back, but the relations are left changed if both attempts fail.
+     *
+     * @return {@code null} if both orientations violate antisymmetry
+     */
+    private Order tryToAddOrbits(DenseOrbit orbit, boolean isReverted) {
+        int wMark = wRelation.mark();
+        int w1Mark = w1Relation.mark();
+        if (addOrbit(wRelation, w1Relation, orbit, isReverted)) {
+            return new Order(wRelation, w1Relation, isReverted);
+        }
+        if (isReverted == revertedFirst) {
+            wRelation.rollback(wMark);
+            w1Relation.rollback(w1Mark);
+            recorder.rollback();
+            return tryToAddOrbits(orbit, !revertedFirst);
+        }
+        return null;
+    }
+
+    private DenseOrbit getDecidedOrbit(long pair) {
+        try {
+            return orbitProvider.getOrbit((int) (pair / stateCount), (int) (pair % stateCount));
+        } catch (SymmetricRelationException e) {
+            throw new IllegalStateException("Orbit of a decided pair violates antisymmetry", e);
+        }
+    }
+
+    /**
+     * @return whether both orientations of the pair of the step are tried
+     */
+    private boolean isExhausted(Step step) {
+        return step.currentPair != NO_PAIR && step.isReverted != revertedFirst;
+    }
+
+    private void rollback(Step step) {
+        wRelation.rollback(step.wMark);
+        w1Relation.rollback(step.w1Mark);
+        recorder.rollback();
+    }
+
+    /**
+     * A pair added to the relations, straight or reverted. The relations themselves are shared by all steps, a
+     * step keeps the marks taken before its orbits were added, so popping it rolls back exactly its own changes.
+     */
+    private static class Step {
+        private final long currentPair;
+        private final boolean isReverted;
+        private final int wMark;
+        private final int w1Mark;
+
+        public Step(int wMark, int w1Mark) {
+            this.wMark = wMark;
+            this.w1Mark = w1Mark;
+            this.currentPair = NO_PAIR;
+            this.isReverted = false;
+        }
+
+        public Step(long currentPair, boolean isReverted, int wMark, int w1Mark) {
+            this.currentPair = currentPair;
+            this.isReverted = isReverted;
+            this.wMark = wMark;
+            this.w1Mark = w1Mark;
+        }
+
+        @Override
+        public String toString() {
+            return "Step{" +
+                    "currentPair=" + currentPair +
+                    ", isReverted=" + isReverted +
+                    ", wMark=" + wMark +
+                    ", w1Mark=" + w1Mark +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.BitRelation;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.State;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits an automaton into the groups of states connected by transitions, in either direction. No orbit leaves a
+ * group, so each group is an automaton of its own and is ordered independently; a group without a linear order
+ * leaves the whole automaton without one.
+ * <p>
+ * The groups still share the output signals, and the pairs of states of different groups are ordered too, so the
+ * orders of the groups are {@link #merge(List) merged}: the output orders are joined into one, the states are
+ * interleaved by their outputs and the result is checked. A merge may fail although the automaton has an order.
+ */
+@Slf4j
+final class ComponentDecomposition {
+    private final IAutomataUtilsService automataUtilsService;
+    private final DenseAutomaton automaton;
+    private final int[][] componentStates;
+    private final List<DenseAutomaton> components;
+
+    private ComponentDecomposition(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                                   int[][] componentStates, List<DenseAutomaton> components) {
+        this.automataUtilsService = automataUtilsService;
+        this.automaton = automaton;
+        this.componentStates = componentStates;
+        this.components = components;
+    }
+
+    /**
+     * @return decomposition of {@code automaton}, {@code null} if its states are all connected
+     */
+    static ComponentDecomposition of(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton) {
+        int stateCount = automaton.getStateCount();
+        int inputCount = automaton.getInputCount();
+        int[] parents = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            parents[state] = state;
+        }
+        for (int state = 0; state < stateCount; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                int target = automaton.getTargetState(state, input);
+                if (target != DenseAutomaton.NONE) {
+                    parents[find(parents, state)] = find(parents, target);
+                }
+            }
+        }
+
+        // number the components by their first states, states keep their order inside a component
+        int[] componentOfRoot = new int[stateCount];
+        Arrays.fill(componentOfRoot, -1);
+        int[] componentOf = new int[stateCount];
+        int[] indexInComponent = new int[stateCount];
+        List<Integer> sizes = new ArrayList<>();
+        for (int state = 0; state < stateCount; state++) {
+            int root = find(parents, state);
+            if (componentOfRoot[root] < 0) {
+                componentOfRoot[root] = sizes.size();
+                sizes.add(0);
+            }
+            componentOf[state] = componentOfRoot[root];
+            indexInComponent[state] = sizes.get(componentOf[state]);
+            sizes.set(componentOf[state], indexInComponent[state] + 1);
+        }
+        if (sizes.size() <= 1) {
+            return null;
+        }
+
+        int[][] componentStates = new int[sizes.size()][];
+        for (int component = 0; component < sizes.size(); component++) {
+            componentStates[component] = new int[sizes.get(component)];
+        }
+        for (int state = 0; state < stateCount; state++) {
+            componentStates[componentOf[state]][indexInComponent[state]] = state;
+        }
+        List<DenseAutomaton> components = new ArrayList<>();
+        for (int[] states : componentStates) {
+            List<State> stateList = new ArrayList<>();
+            int[] transitions = new int[states.length * inputCount];
+            int[] outputs = new int[states.length * inputCount];
+            for (int i = 0; i < states.length; i++) {
+                stateList.add(automaton.getState(states[i]));
+                for (int input = 0; input < inputCount; input++) {
+                    int target = automaton.getTargetState(states[i], input);
+                    transitions[i * inputCount + input] = target == DenseAutomaton.NONE
+                            ? DenseAutomaton.NONE : indexInComponent[target];
+                    outputs[i * inputCount + input] = automaton.getOutputSignal(states[i], input);
+                }
+            }
+            components.add(new DenseAutomaton(stateList, automaton.getInputSignals(), automaton.getOutputSignals(),
+                    transitions, outputs));
+        }
+        log.debug("of: {} states fall into {} components", stateCount, components.size());
+        return new ComponentDecomposition(automataUtilsService, automaton, componentStates, components);
+    }
+
+    /**
+     * Components in the order of their first states.
+     */
+    List<DenseAutomaton> getComponents() {
+        return components;
+    }
+
+    /**
+     * Joins the orders of the output signals each component emits and sorts the union topologically. The states
+     * are then merged like sorted lists, the next state being the head whose outputs, compared input by input,
+     * come first. The merge is an order if the targets and outputs of every input follow the states in order.
+     *
+     * @param componentOrders linear orders of the {@link #getComponents() components}
+     * @return linear order of the automaton, {@code null} if the orders don't merge
+     */
+    LinearOrder merge(List<LinearOrder> componentOrders) {
+        int inputCount = automaton.getInputCount();
+        int outputCount = automaton.getOutputCount();
+        List<OutputSignal> outputSignals = automaton.getOutputSignals();
+        Map<OutputSignal, Integer> outputIndices = new HashMap<>();
+        for (int output = 0; output < outputCount; output++) {
+            outputIndices.put(outputSignals.get(output), output);
+        }
+
+        BitRelation outputRelation = BitRelation.identity(outputCount);
+        List<int[]> sequences = new ArrayList<>();
+        for (int component = 0; component < components.size(); component++) {
+            DenseAutomaton componentAutomaton = components.get(component);
+            boolean[] emitted = new boolean[outputCount];
+            for (int state = 0; state < componentAutomaton.getStateCount(); state++) {
+                for (int input = 0; input < inputCount; input++) {
+                    int output = componentAutomaton.getOutputSignal(state, input);
+                    if (output != DenseAutomaton.NONE) {
+                        emitted[output] = true;
+                    }
+                }
+            }
+            for (Pair<OutputSignal> pair : componentOrders.get(component).getOrderOnOutputSignalSet()) {
+                int left = outputIndices.get(pair.getLeft());
+                int right = outputIndices.get(pair.getRight());
+                if (emitted[left] && emitted[right]) {
+                    outputRelation.add(left, right);
+                }
+            }
+
+            int[] sequence = LinearOrders.stateSequence(componentAutomaton, componentOrders.get(component));
+            for (int i = 0; i < sequence.length; i++) {
+                sequence[i] = componentStates[component][sequence[i]];
+            }
+            sequences.add(sequence);
+        }
+
+        BitRelation outputClosure;
+        try {
+            outputClosure = automataUtilsService.getTransitiveClosure(outputRelation);
+        } catch (SymmetricRelationException e) {
+            log.debug("merge: components order output signals differently");
+            return null;
+        }
+        Set<Pair<OutputSignal>> orderOnOutputSignalSet = automataUtilsService.doTopologicalSort(outputSignals,
+                outputClosure);
+        int[] outputRanks = LinearOrders.outputRanks(outputSignals, orderOnOutputSignalSet);
+
+        int[] order = interleave(sequences, outputRanks);
+        if (!LinearOrders.isMonotone(automaton, order, outputRanks)) {
+            log.debug("merge: interleaved states of {} components are not ordered", components.size());
+            return null;
+        }
+        return LinearOrders.toLinearOrder(automaton, order, orderOnOutputSignalSet);
+    }
+
+    private int[] interleave(List<int[]> sequences, int[] outputRanks) {
+        int[] order = new int[automaton.getStateCount()];
+        int[] heads = new int[sequences.size()];
+        for (int position = 0; position < order.length; position++) {
+            int next = -1;
+            for (int component = 0; component < sequences.size(); component++) {
+                if (heads[component] < sequences.get(component).length && (next < 0
+                        || LinearOrders.compareOutputs(automaton, sequences.get(component)[heads[component]],
+                        sequences.get(next)[heads[next]], outputRanks) < 0)) {
+                    next = component;
+                }
+            }
+            order[position] = sequences.get(next)[heads[next]++];
+        }
+        return order;
+    }
+
+    private static int find(int[] parents, int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+}
@@ -0,0 +1,174 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.InputSignal;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.service.IParseProgressListener;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills the tables of a {@link DenseAutomaton} one transition at a time, as a parser reads them. Signals are
+ * declared once and looked up by name, states by a binary search of their sorted labels, so nothing is kept per
+ * transition beyond its two table entries.
+ */
+final class DenseAutomatonBuilder {
+    private static final int PROGRESS_INTERVAL = 1 << 16;
+
+    private final IParseProgressListener listener;
+    private int[] labels;
+    private List<InputSignal> inputSignals;
+    private List<OutputSignal> outputSignals;
+    private final Map<String, Integer> inputIndex = new HashMap<>();
+    private final Map<String, Integer> outputIndex = new HashMap<>();
+    private int[] transitions;
+    private int[] outputs;
+    /**
+     * Cells of the tables given by a transition, which may have left both entries missing.
+     */
+    private BitSet defined;
+    private long transitionCount;
+
+    DenseAutomatonBuilder(IParseProgressListener listener) {
+        this.listener = listener;
+    }
+
+    void states(int[] labels) throws MalformedAutomatonException {
+        checkNotDeclared(this.labels, "states");
+        int[] sorted = labels.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1] == sorted[i]) {
+                throw new MalformedAutomatonException("State " + sorted[i] + " is declared twice");
+            }
+        }
+        this.labels = sorted;
+    }
+
+    void inputSignals(List<String> names) throws MalformedAutomatonException {
+        checkNotDeclared(inputSignals, "input signals");
+        inputSignals = new ArrayList<>(names.size());
+        for (String name : names) {
+            index(inputIndex, name, "Input signal");
+            inputSignals.add(new InputSignal(name));
+        }
+    }
+
+    void outputSignals(List<String> names) throws MalformedAutomatonException {
+        checkNotDeclared(outputSignals, "output signals");
+        outputSignals = new ArrayList<>(names.size());
+        for (String name : names) {
+            index(outputIndex, name, "Output signal");
+            outputSignals.add(new OutputSignal(name));
+        }
+    }
+
+    /**
+     * @param target label of the target state, ignored unless {@code hasTarget}
+     * @param output name of the output signal, null if missing
+     */
+    void transition(int state, String input, boolean hasTarget, int target, String output)
+            throws MalformedAutomatonException {
+        if (transitions == null) {
+            allocate();
+        }
+        int index = stateIndex(state) * inputSignals.size() + lookup(inputIndex, input, "input signal");
+        if (defined.get(index)) {
+            throw new MalformedAutomatonException("Transition from " + state + " on " + input + " is defined twice");
+        }
+        defined.set(index);
+        if (hasTarget) {
+            transitions[index] = stateIndex(target);
+        }
+        if (output != null) {
+            outputs[index] = lookup(outputIndex, output, "output signal");
+        }
+        if (++transitionCount % PROGRESS_INTERVAL == 0) {
+            listener.onProgress(transitionCount, transitions.length);
+        }
+    }
+
+    /**
+     * @throws MalformedAutomatonException if the automaton is incomplete and {@code allowPartial} is false, the
+     *                                     search would otherwise leave the pairs through missing entries
+     *                                     unconstrained
+     */
+    DenseAutomaton build(boolean allowPartial) throws MalformedAutomatonException {
+        if (transitions == null) {
+            allocate();
+        }
+        listener.onProgress(transitionCount, transitions.length);
+        if (!allowPartial) {
+            int missing = 0;
+            int first = -1;
+            for (int index = 0; index < transitions.length; index++) {
+                if (transitions[index] == DenseAutomaton.NONE || outputs[index] == DenseAutomaton.NONE) {
+                    if (missing++ == 0) {
+                        first = index;
+                    }
+                }
+            }
+            if (missing > 0) {
+                int inputCount = inputSignals.size();
+                throw new MalformedAutomatonException("Automaton misses the target or the output of " + missing
+                        + " transitions, the first from " + labels[first / inputCount] + " on "
+                        + inputSignals.get(first % inputCount));
+            }
+        }
+        return new DenseAutomaton(new MappedStateList(IntBuffer.wrap(labels)), inputSignals, outputSignals,
+                transitions, outputs);
+    }
+
+    private void allocate() throws MalformedAutomatonException {
+        if (labels == null || inputSignals == null || outputSignals == null) {
+            throw new MalformedAutomatonException("States, input and output signals must be declared before the "
+                    + "transitions");
+        }
+        long length = (long) labels.length * inputSignals.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new MalformedAutomatonException("Automaton has " + length + " transitions, more than a table holds");
+        }
+        transitions = new int[(int) length];
+        outputs = new int[(int) length];
+        Arrays.fill(transitions, DenseAutomaton.NONE);
+        Arrays.fill(outputs, DenseAutomaton.NONE);
+        defined = new BitSet((int) length);
+    }
+
+    private int stateIndex(int label) throws MalformedAutomatonException {
+        int index = Arrays.binarySearch(labels, label);
+        if (index < 0) {
+            throw new MalformedAutomatonException("State " + label + " is not declared");
+        }
+        return index;
+    }
+
+    private static void index(Map<String, Integer> index, String name, String kind)
+            throws MalformedAutomatonException {
+        if (name == null || index.putIfAbsent(name, index.size()) != null) {
+            throw new MalformedAutomatonException(kind + " " + name + " is null or declared twice");
+        }
+    }
+
+    private static int lookup(Map<String, Integer> index, String name, String kind)
+            throws MalformedAutomatonException {
+        Integer result = name == null ? null : index.get(name);
+        if (result == null) {
+            throw new MalformedAutomatonException("The " + kind + " " + name + " is not declared");
+        }
+        return result;
+    }
+
+    private static void checkNotDeclared(Object declaration, String what) throws MalformedAutomatonException {
+        if (declaration != null) {
+            throw new MalformedAutomatonException("The " + what + " are declared twice");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+/**
+ * Orbits of all pairs calculated up front, powers are exact.
+ */
+final class EagerOrbitProvider implements IOrbitProvider {
+    private final DenseAutomaton automaton;
+    private final DenseOrbit[] orbits;
+    private final long calculationCount;
+
+    /**
+     * @param orbits           orbits by {@link DenseAutomaton#getPairIndex(int, int)}
+     * @param calculationCount number of orbits calculated, pairs of one component share an orbit
+     */
+    EagerOrbitProvider(DenseAutomaton automaton, DenseOrbit[] orbits, long calculationCount) {
+        this.automaton = automaton;
+        this.orbits = orbits;
+        this.calculationCount = calculationCount;
+    }
+
+    @Override
+    public DenseOrbit getOrbit(int left, int right) {
+        return orbits[automaton.getPairIndex(left, right)];
+    }
+
+    @Override
+    public int estimatePower(int left, int right) {
+        return getOrbit(left, right).getPower();
+    }
+
+    @Override
+    public long getCalculationCount() {
+        return calculationCount;
+    }
+}
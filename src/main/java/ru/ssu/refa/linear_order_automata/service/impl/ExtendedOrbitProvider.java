@@ -0,0 +1,198 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orbits of an automaton grown from one whose orbits are known, by new states and the transitions and outputs of
+ * new states only. No new transition leaves an old state, so the orbit of a pair of old states reaches old states
+ * only and stays what it was: it is taken from the provider of the old automaton and renumbered when first asked
+ * for. The orbits of the pairs with a new state are calculated up front, so that a violation of antisymmetry among
+ * them is found before the search.
+ * <p>
+ * A provider extended from an extended one takes over the orbits that one calculated and shares its base, so the
+ * providers of an automaton growing delta by delta don't chain. Orbits are immutable and are published to the
+ * threads of a portfolio or split search without a lock, two threads asking for the same old pair at once both
+ * renumber its orbit.
+ */
+final class ExtendedOrbitProvider implements IOrbitProvider {
+    /**
+     * State without a counterpart in the old automaton.
+     */
+    static final int NEW = -1;
+
+    private final DenseAutomaton automaton;
+    private final IOrbitProvider base;
+    private final DenseAutomaton baseAutomaton;
+    private final int[] baseStates;
+    private final Renumbering fromBase;
+    private final DenseOrbit[] orbits;
+    private final long calculationCount;
+
+    private ExtendedOrbitProvider(DenseAutomaton automaton, IOrbitProvider base, DenseAutomaton baseAutomaton,
+                                  int[] baseStates, DenseOrbit[] orbits, long calculationCount) {
+        this.automaton = automaton;
+        this.base = base;
+        this.baseAutomaton = baseAutomaton;
+        this.baseStates = baseStates;
+        this.fromBase = new Renumbering(baseAutomaton, automaton, baseStates);
+        this.orbits = orbits;
+        this.calculationCount = calculationCount;
+    }
+
+    /**
+     * @param previous       orbits of {@code previousAutomaton}
+     * @param previousStates state of {@code previousAutomaton} for every state of {@code automaton}, {@link #NEW}
+     *                       for the states added since
+     * @throws SymmetricRelationException if the orbit of a pair with a new state violates antisymmetry
+     */
+    static ExtendedOrbitProvider extend(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                                        DenseAutomaton previousAutomaton, IOrbitProvider previous,
+                                        int[] previousStates) throws SymmetricRelationException {
+        int stateCount = automaton.getStateCount();
+        DenseOrbit[] orbits = new DenseOrbit[automaton.getPairCount()];
+        if (!(previous instanceof ExtendedOrbitProvider)) {
+            return new ExtendedOrbitProvider(automaton, previous, previousAutomaton, previousStates, orbits,
+                    calculateNewPairs(automataUtilsService, automaton, previousStates, orbits));
+        }
+
+        // the pairs new to the base were calculated by the previous provider, the base keeps the other ones
+        ExtendedOrbitProvider extended = (ExtendedOrbitProvider) previous;
+        Renumbering fromPrevious = new Renumbering(previousAutomaton, automaton, previousStates);
+        int[] baseStates = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            baseStates[state] = previousStates[state] == NEW ? NEW : extended.baseStates[previousStates[state]];
+        }
+        for (int left = 0, pairIndex = 0; left < stateCount; left++) {
+            for (int right = left + 1; right < stateCount; right++, pairIndex++) {
+                int previousLeft = previousStates[left];
+                int previousRight = previousStates[right];
+                if (previousLeft != NEW && previousRight != NEW
+                        && (baseStates[left] == NEW || baseStates[right] == NEW)) {
+                    int previousPairIndex = previousAutomaton.getPairIndex(Math.min(previousLeft, previousRight),
+                            Math.max(previousLeft, previousRight));
+                    orbits[pairIndex] = fromPrevious.renumber(extended.orbits[previousPairIndex],
+                            previousLeft > previousRight);
+                }
+            }
+        }
+        return new ExtendedOrbitProvider(automaton, extended.base, extended.baseAutomaton, baseStates, orbits,
+                calculateNewPairs(automataUtilsService, automaton, previousStates, orbits));
+    }
+
+    /**
+     * @return number of orbits calculated
+     */
+    private static long calculateNewPairs(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                                          int[] previousStates, DenseOrbit[] orbits)
+            throws SymmetricRelationException {
+        int stateCount = automaton.getStateCount();
+        long calculationCount = 0;
+        for (int left = 0, pairIndex = 0; left < stateCount; left++) {
+            for (int right = left + 1; right < stateCount; right++, pairIndex++) {
+                if (previousStates[left] == NEW || previousStates[right] == NEW) {
+                    long[] transitionOrbit = automataUtilsService.getTransitionOrbit(automaton, left, right, orbits);
+                    orbits[pairIndex] = new DenseOrbit(transitionOrbit,
+                            automataUtilsService.getOutputOrbit(automaton, transitionOrbit));
+                    calculationCount++;
+                }
+            }
+        }
+        return calculationCount;
+    }
+
+    @Override
+    public DenseOrbit getOrbit(int left, int right) throws SymmetricRelationException {
+        int pairIndex = automaton.getPairIndex(left, right);
+        DenseOrbit orbit = orbits[pairIndex];
+        if (orbit == null) {
+            int baseLeft = baseStates[left];
+            int baseRight = baseStates[right];
+            DenseOrbit baseOrbit = base.getOrbit(Math.min(baseLeft, baseRight), Math.max(baseLeft, baseRight));
+            orbit = fromBase.renumber(baseOrbit, baseLeft > baseRight);
+            orbits[pairIndex] = orbit;
+        }
+        return orbit;
+    }
+
+    @Override
+    public int estimatePower(int left, int right) {
+        DenseOrbit orbit = orbits[automaton.getPairIndex(left, right)];
+        if (orbit != null) {
+            return orbit.getPower();
+        }
+        int baseLeft = baseStates[left];
+        int baseRight = baseStates[right];
+        return base.estimatePower(Math.min(baseLeft, baseRight), Math.max(baseLeft, baseRight));
+    }
+
+    @Override
+    public long getCalculationCount() {
+        return calculationCount;
+    }
+
+    /**
+     * Encodes the pairs of an orbit of one automaton with the states and output signals of another one. The
+     * orbit of a reversed pair is the reversed orbit.
+     */
+    private static final class Renumbering {
+        private final int fromStateCount;
+        private final int fromOutputCount;
+        private final int toStateCount;
+        private final int toOutputCount;
+        private final int[] states;
+        private final int[] outputs;
+
+        /**
+         * @param fromStates state of {@code from} for every state of {@code to}, {@link #NEW} if there is none
+         */
+        Renumbering(DenseAutomaton from, DenseAutomaton to, int[] fromStates) {
+            this.fromStateCount = from.getStateCount();
+            this.fromOutputCount = from.getOutputCount();
+            this.toStateCount = to.getStateCount();
+            this.toOutputCount = to.getOutputCount();
+            this.states = new int[fromStateCount];
+            Arrays.fill(states, NEW);
+            for (int state = 0; state < toStateCount; state++) {
+                if (fromStates[state] != NEW) {
+                    states[fromStates[state]] = state;
+                }
+            }
+            List<OutputSignal> toOutputSignals = to.getOutputSignals();
+            Map<OutputSignal, Integer> toOutputs = new HashMap<>();
+            for (int output = 0; output < toOutputCount; output++) {
+                toOutputs.put(toOutputSignals.get(output), output);
+            }
+            this.outputs = new int[fromOutputCount];
+            for (int output = 0; output < fromOutputCount; output++) {
+                outputs[output] = toOutputs.get(from.getOutput(output));
+            }
+        }
+
+        DenseOrbit renumber(DenseOrbit orbit, boolean reversed) {
+            return new DenseOrbit(
+                    renumber(orbit.getTransitionOrbit(), fromStateCount, states, toStateCount, reversed),
+                    renumber(orbit.getOutputOrbit(), fromOutputCount, outputs, toOutputCount, reversed));
+        }
+
+        private static long[] renumber(long[] encodedPairs, int fromCount, int[] elements, int toCount,
+                                       boolean reversed) {
+            long[] result = new long[encodedPairs.length];
+            for (int i = 0; i < encodedPairs.length; i++) {
+                int left = elements[(int) (encodedPairs[i] / fromCount)];
+                int right = elements[(int) (encodedPairs[i] % fromCount)];
+                result[i] = reversed ? (long) right * toCount + left : (long) left * toCount + right;
+            }
+            return result;
+        }
+    }
+}
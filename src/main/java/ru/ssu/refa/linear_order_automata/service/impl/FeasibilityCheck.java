@@ -0,0 +1,197 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.InfeasibleAutomatonException;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.Arrays;
+
+/**
+ * Necessary conditions of a linear order which need no orbits. The pairs of a strongly connected component of the
+ * pair graph are in the orbit of each of them, so a component which can be ordered neither straight nor reverted
+ * rules out every linear order: any order contains one of its pairs or the reverse. A component fails when
+ * <ul>
+ * <li>it contains the reverse of its own pairs,</li>
+ * <li>its pairs form a cycle of states,</li>
+ * <li>the output signals of its pairs form a cycle, a pair of opposite output pairs included.</li>
+ * </ul>
+ * Reversing a component reverses its cycles, so only one of each two reverse components is checked. The checks
+ * take time linear in the size of the pair graph.
+ */
+@Slf4j
+final class FeasibilityCheck {
+    static final String STATE_CYCLE = "Orbits of the automaton order states cyclically";
+    static final String OUTPUT_CYCLE = "Orbits of the automaton order output signals cyclically";
+
+    private final DenseAutomaton automaton;
+    private final PairGraph pairGraph;
+    private final CycleFinder stateCycles;
+    private final CycleFinder outputCycles;
+
+    private FeasibilityCheck(DenseAutomaton automaton, PairGraph pairGraph) {
+        this.automaton = automaton;
+        this.pairGraph = pairGraph;
+        this.stateCycles = new CycleFinder(automaton.getStateCount());
+        this.outputCycles = new CycleFinder(automaton.getOutputCount());
+    }
+
+    /**
+     * @throws SymmetricRelationException   if a component contains its reversed pairs, as the orbit calculation
+     *                                      would report
+     * @throws InfeasibleAutomatonException if a component orders states or output signals cyclically
+     */
+    static void check(DenseAutomaton automaton, PairGraph pairGraph) throws SymmetricRelationException {
+        new FeasibilityCheck(automaton, pairGraph).checkComponents();
+    }
+
+    private void checkComponents() throws SymmetricRelationException {
+        int stateCount = automaton.getStateCount();
+        for (int componentId = 0; componentId < pairGraph.getComponentCount(); componentId++) {
+            int reverseComponent = pairGraph.getReverseComponent(componentId);
+            if (reverseComponent == componentId) {
+                int pair = pairGraph.getMember(componentId, 0);
+                Pair<State> statePair = new Pair<>(automaton.getState(pair / stateCount),
+                        automaton.getState(pair % stateCount));
+                log.error("Property of antisymmetry is violated. Component of {} contains its reverse", statePair);
+                throw new SymmetricRelationException("Found symmetric pair for pair " + statePair);
+            }
+            if (reverseComponent < componentId) {
+                continue;
+            }
+
+            int memberCount = pairGraph.getMemberCount(componentId);
+            if (memberCount > 2) {
+                stateCycles.clear();
+                for (int member = 0; member < memberCount; member++) {
+                    int pair = pairGraph.getMember(componentId, member);
+                    stateCycles.addEdge(pair / stateCount, pair % stateCount);
+                }
+                if (stateCycles.hasCycle()) {
+                    log.debug("check: component {} of {} pairs orders states cyclically", componentId, memberCount);
+                    throw new InfeasibleAutomatonException(STATE_CYCLE);
+                }
+            }
+
+            outputCycles.clear();
+            for (int member = 0; member < memberCount; member++) {
+                int pair = pairGraph.getMember(componentId, member);
+                for (int inputSignal = 0; inputSignal < automaton.getInputCount(); inputSignal++) {
+                    int outputLeft = automaton.getOutputSignal(pair / stateCount, inputSignal);
+                    int outputRight = automaton.getOutputSignal(pair % stateCount, inputSignal);
+                    if (outputLeft != DenseAutomaton.NONE && outputRight != DenseAutomaton.NONE
+                            && outputLeft != outputRight) {
+                        outputCycles.addEdge(outputLeft, outputRight);
+                    }
+                }
+            }
+            if (outputCycles.hasCycle()) {
+                log.debug("check: component {} of {} pairs orders output signals cyclically", componentId,
+                        memberCount);
+                throw new InfeasibleAutomatonException(OUTPUT_CYCLE);
+            }
+        }
+    }
+
+    /**
+     * Kahn's algorithm on the vertices touched since the last {@link #clear()}, so a small graph costs time
+     * proportional to its own size only.
+     */
+    private static final class CycleFinder {
+        private final int[] stamp;
+        private final int[] inDegree;
+        private final int[] outDegree;
+        private final int[] edgeStart;
+        private int token;
+        private int[] vertices = new int[16];
+        private int vertexCount;
+        private int[] edgeFrom = new int[16];
+        private int[] edgeTo = new int[16];
+        private int edgeCount;
+        private int[] targets = new int[16];
+        private int[] queue = new int[16];
+
+        CycleFinder(int vertexSpace) {
+            this.stamp = new int[vertexSpace];
+            this.inDegree = new int[vertexSpace];
+            this.outDegree = new int[vertexSpace];
+            this.edgeStart = new int[vertexSpace];
+        }
+
+        void clear() {
+            if (++token == 0) {
+                Arrays.fill(stamp, 0);
+                token = 1;
+            }
+            vertexCount = 0;
+            edgeCount = 0;
+        }
+
+        void addEdge(int from, int to) {
+            touch(from);
+            touch(to);
+            if (edgeCount == edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+                edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+            }
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeCount++;
+            outDegree[from]++;
+            inDegree[to]++;
+        }
+
+        boolean hasCycle() {
+            if (edgeCount < 2) {
+                return false;
+            }
+            if (targets.length < edgeCount) {
+                targets = new int[edgeCount];
+            }
+            // edgeStart counts down from the end of the targets of a vertex to their start
+            int offset = 0;
+            for (int i = 0; i < vertexCount; i++) {
+                int vertex = vertices[i];
+                offset += outDegree[vertex];
+                edgeStart[vertex] = offset;
+            }
+            for (int edge = 0; edge < edgeCount; edge++) {
+                targets[--edgeStart[edgeFrom[edge]]] = edgeTo[edge];
+            }
+
+            if (queue.length < vertexCount) {
+                queue = new int[vertexCount];
+            }
+            int tail = 0;
+            for (int i = 0; i < vertexCount; i++) {
+                if (inDegree[vertices[i]] == 0) {
+                    queue[tail++] = vertices[i];
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int vertex = queue[head];
+                int end = edgeStart[vertex] + outDegree[vertex];
+                for (int edge = edgeStart[vertex]; edge < end; edge++) {
+                    if (--inDegree[targets[edge]] == 0) {
+                        queue[tail++] = targets[edge];
+                    }
+                }
+            }
+            return tail < vertexCount;
+        }
+
+        private void touch(int vertex) {
+            if (stamp[vertex] != token) {
+                stamp[vertex] = token;
+                inDegree[vertex] = 0;
+                outDegree[vertex] = 0;
+                if (vertexCount == vertices.length) {
+                    vertices = Arrays.copyOf(vertices, vertexCount * 2);
+                }
+                vertices[vertexCount++] = vertex;
+            }
+        }
+    }
+}
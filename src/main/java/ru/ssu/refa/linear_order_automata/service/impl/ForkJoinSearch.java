@@ -0,0 +1,136 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.BitRelation;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.TransitiveClosure;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Explores the decision tree on a fork-join pool. Each of the first {@code splitDepth} decisions forks a task per
+ * orientation, every task owns a copy of the relations. Below that depth a task runs a sequential search of the
+ * subtree, created by the {@link OrderingSearch.Factory}. Every task selects pairs with a selector of its own.
+ * Idle workers steal the remaining subtrees, so an unequal
+ * tree still keeps the pool busy.
+ * <p>
+ * The first subtree which yields an order stops the others through the shared stop flag. Which one that is depends
+ * on timing, so the order found may differ from run to run when the automaton has several. No order exists only
+ * when every subtree is exhausted. Interrupting the caller doesn't reach the pool, so the subtree searches check
+ * the cancellation flag of the ordering as well.
+ */
+@Slf4j
+class ForkJoinSearch extends OrderingSearch {
+    private final Supplier<PairSelector> pairSelectors;
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+    private final OrderingSearch.Factory subtreeSearchFactory;
+    private final AtomicReference<LinearOrder> result = new AtomicReference<>();
+    private final AtomicInteger subtreeCount = new AtomicInteger();
+
+    ForkJoinSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                   IOrbitProvider orbitProvider, Supplier<PairSelector> pairSelectors, boolean revertedFirst,
+                   ForkJoinPool pool, int splitDepth, OrderingSearch.Factory subtreeSearchFactory,
+                   AtomicBoolean cancelled, SearchRecorder recorder) {
+        super(automataUtilsService, automaton, orbitProvider, pairSelectors.get(), revertedFirst,
+                new TransitiveClosure(BitRelation.identity(automaton.getStateCount())),
+                new TransitiveClosure(BitRelation.identity(automaton.getOutputCount())), cancelled,
+                new AtomicBoolean(), recorder);
+        this.pairSelectors = pairSelectors;
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+        this.subtreeSearchFactory = subtreeSearchFactory;
+    }
+
+    @Override
+    LinearOrder run() {
+        pool.invoke(new Subtree(wRelation, w1Relation, 0));
+        log.debug("run: {} subtrees searched", subtreeCount.get());
+
+        LinearOrder linearOrder = result.get();
+        if (linearOrder != null) {
+            return linearOrder;
+        }
+        checkCancelled();
+        return failure(TREE_EXHAUSTED);
+    }
+
+    /**
+     * Records the result which ends the whole search: an order, or orbits violating antisymmetry, after which no
+     * order can exist.
+     */
+    private void finish(LinearOrder linearOrder) {
+        if (result.compareAndSet(null, linearOrder)) {
+            stopped.set(true);
+        }
+    }
+
+    private class Subtree extends RecursiveAction {
+        private final TransitiveClosure wRelation;
+        private final TransitiveClosure w1Relation;
+        private final int depth;
+
+        Subtree(TransitiveClosure wRelation, TransitiveClosure w1Relation, int depth) {
+            this.wRelation = wRelation;
+            this.w1Relation = w1Relation;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (isStopped()) {
+                return;
+            }
+            long pair = depth < splitDepth && !automataUtilsService.isOrderConstructed(wRelation.getRelation())
+                    ? pairSelectors.get().select(wRelation) : NO_PAIR;
+            DenseOrbit orbit = null;
+            if (pair != NO_PAIR) {
+                try {
+                    orbit = orbitProvider.getOrbit((int) (pair / stateCount), (int) (pair % stateCount));
+                } catch (SymmetricRelationException e) {
+                    // the sequential search reports it
+                }
+            }
+            if (orbit == null) {
+                searchSequentially();
+                return;
+            }
+
+            List<Subtree> children = new ArrayList<>(2);
+            for (boolean isReverted : new boolean[]{revertedFirst, !revertedFirst}) {
+                TransitiveClosure childWRelation = wRelation.copy();
+                TransitiveClosure childW1Relation = w1Relation.copy();
+                if (addOrbit(childWRelation, childW1Relation, orbit, isReverted)) {
+                    children.add(new Subtree(childWRelation, childW1Relation, depth + 1));
+                }
+            }
+            invokeAll(children);
+        }
+
+        private void searchSequentially() {
+            subtreeCount.incrementAndGet();
+            LinearOrder linearOrder;
+            try {
+                linearOrder = subtreeSearchFactory.create(wRelation, w1Relation, stopped).run();
+            } catch (CancellationException e) {
+                return;
+            }
+            if (linearOrder.isResolution() || !TREE_EXHAUSTED.equals(linearOrder.getReason())) {
+                finish(linearOrder);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.BitRelation;
+
+import java.util.List;
+
+/**
+ * Directed graph on {@code 0..size-1} in compressed sparse row form: successors of {@code v} are
+ * {@code targets[offsets[v]] .. targets[offsets[v + 1] - 1]}. All traversals use explicit stacks, so their depth
+ * is not limited by the thread stack.
+ */
+final class IntDigraph {
+    private static final byte WHITE = 0;
+    private static final byte GREY = 1;
+    private static final byte BLACK = 2;
+
+    private final int size;
+    private final int[] offsets;
+    private final int[] targets;
+
+    private IntDigraph(int size, int[] offsets, int[] targets) {
+        this.size = size;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Builds a graph from the edges {@code sources[i] -> targets[i]}, {@code i < edgeCount}. Successors keep the
+     * order in which edges are given.
+     */
+    static IntDigraph of(int size, int[] sources, int[] targets, int edgeCount) {
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[sources[i] + 1]++;
+        }
+        for (int v = 0; v < size; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] position = new int[size];
+        System.arraycopy(offsets, 0, position, 0, size);
+        int[] sortedTargets = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            sortedTargets[position[sources[i]]++] = targets[i];
+        }
+        return new IntDigraph(size, offsets, sortedTargets);
+    }
+
+    static IntDigraph of(BitRelation relation) {
+        int size = relation.getSize();
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[Math.toIntExact(relation.getCount())];
+        int edge = 0;
+        for (int v = 0; v < size; v++) {
+            long[] row = relation.getRow(v);
+            for (int i = 0; i < row.length; i++) {
+                long word = row[i];
+                while (word != 0) {
+                    targets[edge++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            offsets[v + 1] = edge;
+        }
+        return new IntDigraph(size, offsets, targets);
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Reverse postorder of a depth-first search started from {@code 0, 1, ..., size - 1} in turn. For an acyclic
+     * graph every edge goes from an earlier to a later element of the result.
+     */
+    int[] topologicalOrder() {
+        byte[] color = new byte[size];
+        int[] stack = new int[size];
+        int[] edgePosition = new int[size];
+        int[] postorder = new int[size];
+        int finished = 0;
+        for (int root = 0; root < size; root++) {
+            if (color[root] != WHITE) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = root;
+            edgePosition[0] = offsets[root];
+            color[root] = GREY;
+            while (depth >= 0) {
+                int v = stack[depth];
+                if (edgePosition[depth] < offsets[v + 1]) {
+                    int next = targets[edgePosition[depth]++];
+                    if (color[next] == WHITE) {
+                        color[next] = GREY;
+                        stack[++depth] = next;
+                        edgePosition[depth] = offsets[next];
+                    }
+                } else {
+                    color[v] = BLACK;
+                    postorder[finished++] = v;
+                    depth--;
+                }
+            }
+        }
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = postorder[size - 1 - i];
+        }
+        return order;
+    }
+
+    /**
+     * Reflexive transitive closure. Each element is finished after all its successors, so its row is the OR of
+     * their already complete rows.
+     *
+     * @param elements used to name the elements of a symmetric pair in the exception message, may be null
+     * @throws SymmetricRelationException if the graph has a cycle other than a loop
+     */
+    BitRelation transitiveClosure(List<?> elements) throws SymmetricRelationException {
+        BitRelation closure = new BitRelation(size);
+        byte[] color = new byte[size];
+        int[] stack = new int[size];
+        int[] edgePosition = new int[size];
+        for (int root = 0; root < size; root++) {
+            if (color[root] != WHITE) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = root;
+            edgePosition[0] = offsets[root];
+            color[root] = GREY;
+            while (depth >= 0) {
+                int v = stack[depth];
+                if (edgePosition[depth] < offsets[v + 1]) {
+                    int next = targets[edgePosition[depth]++];
+                    if (color[next] == WHITE) {
+                        color[next] = GREY;
+                        stack[++depth] = next;
+                        edgePosition[depth] = offsets[next];
+                    } else if (color[next] == GREY && next != v) {
+                        throw new SymmetricRelationException("Found symmetric pair for pair ("
+                                + name(elements, v) + ", " + name(elements, next)
+                                + ") during transitive closure calculation");
+                    }
+                } else {
+                    closure.add(v, v);
+                    for (int edge = offsets[v]; edge < offsets[v + 1]; edge++) {
+                        if (targets[edge] != v) {
+                            closure.unionRow(v, closure.getRow(targets[edge]));
+                        }
+                    }
+                    color[v] = BLACK;
+                    depth--;
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static Object name(List<?> elements, int index) {
+        return elements != null ? elements.get(index) : index;
+    }
+}
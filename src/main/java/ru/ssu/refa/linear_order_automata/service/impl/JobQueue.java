@@ -0,0 +1,72 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.exception.JobTooLargeException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Automata of the running jobs waiting for a worker. The workers take one automaton from each job in turn, so a
+ * large batch submitted first doesn't hold back the jobs submitted after it. The number of automata waiting is
+ * bounded, a job which doesn't fit is rejected and the client has to come back later.
+ */
+final class JobQueue {
+    private final int capacity;
+    private final Deque<OrderingJob> jobs = new ArrayDeque<>();
+    private int waiting;
+
+    JobQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @throws JobTooLargeException       if the job has more automata than the queue holds when empty
+     * @throws RejectedExecutionException if the automata waiting leave no room for the job
+     */
+    synchronized void offer(OrderingJob job) {
+        if (job.getSize() > capacity) {
+            throw new JobTooLargeException("Job of " + job.getSize() + " automata exceeds the queue capacity of "
+                    + capacity);
+        }
+        if (waiting + job.getSize() > capacity) {
+            throw new RejectedExecutionException("Queue has room for " + (capacity - waiting) + " of "
+                    + job.getSize() + " automata");
+        }
+        jobs.addLast(job);
+        waiting += job.getSize();
+        notifyAll();
+    }
+
+    /**
+     * Blocks until an automaton is waiting.
+     *
+     * @return orders the next automaton of the job next in turn
+     */
+    synchronized Runnable take() throws InterruptedException {
+        while (jobs.isEmpty()) {
+            wait();
+        }
+        OrderingJob job = jobs.pollFirst();
+        int index = job.queued++;
+        if (job.queued < job.getSize()) {
+            jobs.addLast(job);
+        }
+        waiting--;
+        return () -> job.order(index);
+    }
+
+    /**
+     * Drops the automata of {@code job} still waiting.
+     */
+    synchronized void remove(OrderingJob job) {
+        if (jobs.remove(job)) {
+            waiting -= job.getSize() - job.queued;
+            job.queued = job.getSize();
+        }
+    }
+
+    synchronized int getWaiting() {
+        return waiting;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calculates the orbit of a pair the first time it is asked for. Orbits are kept per strongly connected component
+ * of the pair graph in a least recently used cache holding at most {@code capacity} encoded pairs in total, an
+ * evicted orbit is calculated again when needed. Powers are estimated from the pair graph alone and count the
+ * transition orbit only.
+ * <p>
+ * Cached orbits are indexed by component and linked in recency order through {@code int[]} arrays, so a hit
+ * neither boxes the component id nor allocates an entry.
+ * <p>
+ * Searches of a portfolio or a split search share the provider. The lock guards the cache only, orbits are
+ * calculated outside of it on a traversal of the calling thread, so two threads missing the same component at
+ * once both calculate it and the first to finish is cached.
+ */
+@Slf4j
+final class LazyOrbitProvider implements IOrbitProvider {
+    private static final int NONE = -1;
+
+    private final PairGraph pairGraph;
+    private final Map<Thread, PairGraph.Traversal> traversals = new ConcurrentHashMap<>();
+    private final ParallelOrbitCalculator.ComponentOrbitFunction orbitFunction;
+    private final long capacity;
+    private final DenseOrbit[] cache;
+    private final int[] older;
+    private final int[] newer;
+    private int eldest = NONE;
+    private int youngest = NONE;
+    private int cachedOrbitCount;
+    private long cachedPairCount;
+    private long calculationCount;
+    private long cacheHitCount;
+
+    LazyOrbitProvider(PairGraph pairGraph, ParallelOrbitCalculator.ComponentOrbitFunction orbitFunction,
+                      long capacity) {
+        this.pairGraph = pairGraph;
+        this.orbitFunction = orbitFunction;
+        this.capacity = capacity;
+        int componentCount = pairGraph.getComponentCount();
+        this.cache = new DenseOrbit[componentCount];
+        this.older = new int[componentCount];
+        this.newer = new int[componentCount];
+    }
+
+    @Override
+    public DenseOrbit getOrbit(int left, int right) throws SymmetricRelationException {
+        int componentId = pairGraph.getComponent(left, right);
+        DenseOrbit orbit = getCached(componentId);
+        if (orbit != null) {
+            return orbit;
+        }
+
+        PairGraph.Traversal traversal = traversals.computeIfAbsent(Thread.currentThread(),
+                thread -> pairGraph.newTraversal());
+        return cache(componentId, orbitFunction.apply(traversal, componentId));
+    }
+
+    @Override
+    public int estimatePower(int left, int right) {
+        return pairGraph.getOrbitSizeEstimate(pairGraph.getComponent(left, right));
+    }
+
+    @Override
+    public synchronized long getCalculationCount() {
+        return calculationCount;
+    }
+
+    @Override
+    public synchronized long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    private synchronized DenseOrbit getCached(int componentId) {
+        DenseOrbit orbit = cache[componentId];
+        if (orbit != null) {
+            cacheHitCount++;
+            unlink(componentId);
+            link(componentId);
+        }
+        return orbit;
+    }
+
+    private synchronized DenseOrbit cache(int componentId, DenseOrbit orbit) {
+        calculationCount++;
+        if (cache[componentId] != null) {
+            // another thread calculated it meanwhile
+            return cache[componentId];
+        }
+        cache[componentId] = orbit;
+        link(componentId);
+        cachedOrbitCount++;
+        cachedPairCount += orbit.getPower();
+        while (cachedPairCount > capacity && cachedOrbitCount > 1) {
+            int evicted = eldest;
+            unlink(evicted);
+            cachedPairCount -= cache[evicted].getPower();
+            cache[evicted] = null;
+            cachedOrbitCount--;
+        }
+        log.trace("getOrbit: {} orbits of {} pairs are cached", cachedOrbitCount, cachedPairCount);
+        return orbit;
+    }
+
+    private void link(int componentId) {
+        older[componentId] = youngest;
+        newer[componentId] = NONE;
+        if (youngest != NONE) {
+            newer[youngest] = componentId;
+        } else {
+            eldest = componentId;
+        }
+        youngest = componentId;
+    }
+
+    private void unlink(int componentId) {
+        int previous = older[componentId];
+        int next = newer[componentId];
+        if (previous != NONE) {
+            newer[previous] = next;
+        } else {
+            eldest = next;
+        }
+        if (next != NONE) {
+            older[next] = previous;
+        } else {
+            youngest = previous;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Linear orders as sequences of state indices, for the stages which build orders of one automaton from orders of
+ * others instead of searching.
+ */
+@Slf4j
+final class LinearOrders {
+
+    private LinearOrders() {
+    }
+
+    /**
+     * @return indices of the states of {@code automaton} in the order of {@code linearOrder}
+     */
+    static int[] stateSequence(DenseAutomaton automaton, LinearOrder linearOrder) {
+        int[] ranks = new int[automaton.getStateCount()];
+        for (Pair<State> pair : linearOrder.getOrderOnStateSet()) {
+            if (!pair.getLeft().equals(pair.getRight())) {
+                ranks[automaton.indexOf(pair.getRight())]++;
+            }
+        }
+        int[] sequence = new int[ranks.length];
+        for (int state = 0; state < ranks.length; state++) {
+            sequence[ranks[state]] = state;
+        }
+        return sequence;
+    }
+
+    /**
+     * @return positions of {@code outputSignals} in {@code outputOrder}
+     */
+    static int[] outputRanks(List<OutputSignal> outputSignals, Set<Pair<OutputSignal>> outputOrder) {
+        Map<OutputSignal, Integer> outputIndices = new HashMap<>();
+        for (int output = 0; output < outputSignals.size(); output++) {
+            outputIndices.put(outputSignals.get(output), output);
+        }
+        int[] ranks = new int[outputSignals.size()];
+        for (Pair<OutputSignal> pair : outputOrder) {
+            if (!pair.getLeft().equals(pair.getRight())) {
+                ranks[outputIndices.get(pair.getRight())]++;
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * Compares the outputs of two states input by input, a missing output comes first.
+     */
+    static int compareOutputs(DenseAutomaton automaton, int left, int right, int[] outputRanks) {
+        for (int input = 0; input < automaton.getInputCount(); input++) {
+            int comparison = Integer.compare(rank(automaton.getOutputSignal(left, input), outputRanks),
+                    rank(automaton.getOutputSignal(right, input), outputRanks));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Along the sequence, the defined targets of an input must not go back, and neither must the defined outputs.
+     * Any two states are then ordered as their targets and outputs are, missing transitions included.
+     *
+     * @param sequence indices of all states of {@code automaton}
+     */
+    static boolean isMonotone(DenseAutomaton automaton, int[] sequence, int[] outputRanks) {
+        int[] positions = new int[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            positions[sequence[i]] = i;
+        }
+        for (int input = 0; input < automaton.getInputCount(); input++) {
+            int lastTarget = -1;
+            int lastOutput = -1;
+            for (int state : sequence) {
+                int target = automaton.getTargetState(state, input);
+                if (target != DenseAutomaton.NONE) {
+                    if (positions[target] < lastTarget) {
+                        return false;
+                    }
+                    lastTarget = positions[target];
+                }
+                int output = automaton.getOutputSignal(state, input);
+                if (output != DenseAutomaton.NONE) {
+                    if (outputRanks[output] < lastOutput) {
+                        return false;
+                    }
+                    lastOutput = outputRanks[output];
+                }
+            }
+        }
+        return true;
+    }
+
+    static LinearOrder toLinearOrder(DenseAutomaton automaton, int[] sequence,
+                                     Set<Pair<OutputSignal>> orderOnOutputSignalSet) {
+        Set<Pair<State>> orderOnStateSet = new HashSet<>();
+        for (int i = 0; i < sequence.length; i++) {
+            for (int j = i; j < sequence.length; j++) {
+                orderOnStateSet.add(new Pair<>(automaton.getState(sequence[i]), automaton.getState(sequence[j])));
+            }
+        }
+        LinearOrder linearOrder = new LinearOrder(orderOnStateSet, orderOnOutputSignalSet);
+        log.debug("orderAutomaton: result - {}", linearOrder);
+        return linearOrder;
+    }
+
+    private static int rank(int output, int[] outputRanks) {
+        return output == DenseAutomaton.NONE ? -1 : outputRanks[output];
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Set of encoded pairs, open addressing with linear probing over a single {@code long[]}. Keys must not be
+ * negative, {@code -1} marks a free slot. Nothing is allocated per key, the table only grows when it becomes
+ * half full.
+ */
+final class LongHashSet {
+    private static final long FREE = -1;
+    private static final int SHRINK_FACTOR = 8;
+
+    private long[] keys;
+    private int size;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int expectedSize) {
+        keys = new long[tableSize(expectedSize)];
+        Arrays.fill(keys, FREE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return true;
+            }
+            if (current == FREE) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the key was not in the set before
+     */
+    boolean add(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative: " + key);
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (long current = keys[slot]; current != FREE; current = keys[slot]) {
+            if (current == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all keys. The table is kept, so a set reused across calls stops allocating once it is large enough,
+     * unless it is far larger than the keys removed needed: then clearing it would cost every later call as much
+     * as the largest set ever held, and a table for as many keys replaces it.
+     */
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        int tableSize = tableSize(size);
+        if (keys.length > SHRINK_FACTOR * tableSize) {
+            keys = new long[tableSize];
+        }
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return the keys in no particular order
+     */
+    long[] toArray() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != FREE) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    private void rehash(int tableSize) {
+        long[] oldKeys = keys;
+        keys = new long[tableSize];
+        Arrays.fill(keys, FREE);
+        int mask = tableSize - 1;
+        for (long key : oldKeys) {
+            if (key != FREE) {
+                int slot = slot(key, mask);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // Fibonacci hashing, encoded pairs of one row are consecutive and would cluster otherwise
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private static int tableSize(int expectedSize) {
+        int tableSize = 16;
+        while (tableSize < expectedSize * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+}
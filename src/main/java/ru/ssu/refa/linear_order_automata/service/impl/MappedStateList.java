@@ -0,0 +1,28 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * States of an automaton read from a file or a stream, created from their labels when asked for.
+ */
+final class MappedStateList extends AbstractList<State> implements RandomAccess {
+    private final IntBuffer labels;
+
+    MappedStateList(IntBuffer labels) {
+        this.labels = labels;
+    }
+
+    @Override
+    public State get(int index) {
+        return new State(labels.get(index));
+    }
+
+    @Override
+    public int size() {
+        return labels.limit();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.SearchStatistics;
+import ru.ssu.refa.linear_order_automata.service.ISearchStatisticsListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the statistics of orderings as {@code automata.*} meters, available through the {@code metrics}
+ * actuator endpoint. Counters sum over all orderings, the depth is a distribution of the maximum per ordering.
+ */
+@Component
+public class MicrometerStatisticsListener implements ISearchStatisticsListener {
+    private final Counter resolutions;
+    private final Counter failures;
+    private final Counter orbitCalculations;
+    private final Counter orbitCacheHits;
+    private final Counter closureCalls;
+    private final Counter closurePairs;
+    private final Counter steps;
+    private final Counter rollbacks;
+    private final DistributionSummary maxDepth;
+    private final Map<SearchStatistics.Phase, Counter> violations = new EnumMap<>(SearchStatistics.Phase.class);
+    private final Map<SearchStatistics.Phase, Timer> phaseTimers = new EnumMap<>(SearchStatistics.Phase.class);
+
+    public MicrometerStatisticsListener(MeterRegistry registry) {
+        resolutions = Counter.builder("automata.orderings").tag("resolution", "true")
+                .description("Orderings which found a linear order").register(registry);
+        failures = Counter.builder("automata.orderings").tag("resolution", "false")
+                .description("Orderings which proved there is no linear order").register(registry);
+        orbitCalculations = Counter.builder("automata.orbits.calculated").register(registry);
+        orbitCacheHits = Counter.builder("automata.orbits.cache.hits").register(registry);
+        closureCalls = Counter.builder("automata.closure.calls").register(registry);
+        closurePairs = Counter.builder("automata.closure.pairs")
+                .description("Pairs given to transitive closure updates").register(registry);
+        steps = Counter.builder("automata.search.steps").register(registry);
+        rollbacks = Counter.builder("automata.search.rollbacks").register(registry);
+        maxDepth = DistributionSummary.builder("automata.search.depth")
+                .description("Maximum number of decisions on the stack of an ordering").register(registry);
+        for (SearchStatistics.Phase phase : SearchStatistics.Phase.values()) {
+            String tag = phase.name().toLowerCase();
+            violations.put(phase, Counter.builder("automata.violations").tag("phase", tag).register(registry));
+            phaseTimers.put(phase, Timer.builder("automata.phase").tag("phase", tag).register(registry));
+        }
+    }
+
+    @Override
+    public void onOrdered(LinearOrder linearOrder, SearchStatistics statistics) {
+        (linearOrder.isResolution() ? resolutions : failures).increment();
+        orbitCalculations.increment(statistics.getOrbitCalculations());
+        orbitCacheHits.increment(statistics.getOrbitCacheHits());
+        closureCalls.increment(statistics.getClosureCalls());
+        closurePairs.increment(statistics.getClosurePairs());
+        steps.increment(statistics.getSteps());
+        rollbacks.increment(statistics.getRollbacks());
+        maxDepth.record(statistics.getMaxDepth());
+        statistics.getViolations().forEach((phase, count) -> violations.get(phase).increment(count));
+        statistics.getPhaseNanos().forEach((phase, nanos) -> {
+            if (nanos > 0) {
+                phaseTimers.get(phase).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+}
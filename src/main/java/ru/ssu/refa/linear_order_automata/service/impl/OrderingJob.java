@@ -0,0 +1,299 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.JobResult;
+import ru.ssu.refa.linear_order_automata.model.JobResult.Outcome;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.State;
+import ru.ssu.refa.linear_order_automata.service.IAutomataOrderingService;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Automata submitted together, ordered one per worker at a time. Every automaton gets exactly one result: the
+ * worker records it, or {@link #stop(Status)} does for the automata no worker has started. Every ordering gets a
+ * cancellation flag, stopping the job sets it, which the orbit calculation and the searches notice at their next
+ * check, also on the pool threads. The workers are interrupted too, for the waits outside of those.
+ * <p>
+ * Results are handed to the subscribers on the delivery executor, one task at a time per subscriber, so a slow
+ * subscriber such as a stalled stream holds up neither the workers nor the deadlines.
+ */
+@Slf4j
+final class OrderingJob implements IOrderingJob {
+    /**
+     * Bytes per ordered pair of states the ordering is estimated to need. It is a heuristic, not a bound: the pair
+     * graph takes about 12 bytes per pair (the components, their members and the traversal stacks at worst) and the
+     * relations and their trails a few bits more, but eager orbits may take far more when they are large and
+     * overlapping, and lazy orbits up to the cache capacity of them. The budget rejects the automata which
+     * certainly don't fit, not every one which doesn't.
+     */
+    private static final long BYTES_PER_PAIR = 16;
+
+    private final String id;
+    private final List<DenseAutomaton> automata;
+    private final IAutomataOrderingService orderingService;
+    private final Executor delivery;
+    private final long memoryBudget;
+    private final boolean[] started;
+    private final List<JobResult> results = new ArrayList<>();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final Map<Thread, AtomicBoolean> workers = new HashMap<>();
+    private Status status = Status.RUNNING;
+    private long finishedAt;
+    private ScheduledFuture<?> deadline;
+    /**
+     * Number of automata handed to the workers, guarded by the {@link JobQueue}.
+     */
+    int queued;
+
+    OrderingJob(String id, List<DenseAutomaton> automata, IAutomataOrderingService orderingService,
+                Executor delivery, long memoryBudget) {
+        this.id = id;
+        this.automata = automata;
+        this.orderingService = orderingService;
+        this.delivery = delivery;
+        this.memoryBudget = memoryBudget;
+        this.started = new boolean[automata.size()];
+    }
+
+    static long estimateMemory(DenseAutomaton automaton) {
+        long stateCount = automaton.getStateCount();
+        return BYTES_PER_PAIR * stateCount * stateCount + 8L * stateCount * automaton.getInputCount();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public int getSize() {
+        return automata.size();
+    }
+
+    @Override
+    public synchronized List<JobResult> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    @Override
+    public synchronized Runnable subscribe(Consumer<JobResult> onResult, Runnable onFinish) {
+        Subscription subscription = new Subscription(onResult, onFinish, delivery);
+        results.forEach(subscription::result);
+        if (results.size() == automata.size()) {
+            subscription.finish();
+        } else {
+            subscriptions.add(subscription);
+        }
+        return () -> unsubscribe(subscription);
+    }
+
+    synchronized void setDeadline(ScheduledFuture<?> deadline) {
+        this.deadline = deadline;
+        if (results.size() == automata.size()) {
+            deadline.cancel(false);
+        }
+    }
+
+    /**
+     * @return whether the job has finished before {@code nanoTime}
+     */
+    synchronized boolean finishedBefore(long nanoTime) {
+        return status != Status.RUNNING && results.size() == automata.size() && finishedAt - nanoTime < 0;
+    }
+
+    /**
+     * Gives up the automata no worker has started and cancels the orderings of the others.
+     *
+     * @return false if the job was already finished or stopped
+     */
+    synchronized boolean stop(Status status) {
+        if (this.status != Status.RUNNING) {
+            return false;
+        }
+        log.info("stop: job {} is {} with {} of {} automata finished", id, status, results.size(), automata.size());
+        this.status = status;
+        for (int index = 0; index < automata.size(); index++) {
+            if (!started[index]) {
+                started[index] = true;
+                finish(JobResult.givenUp(index, outcome(), "Job is " + status, 0));
+            }
+        }
+        workers.forEach((worker, cancelled) -> {
+            cancelled.set(true);
+            worker.interrupt();
+        });
+        return true;
+    }
+
+    /**
+     * Called by the worker which took the automaton from the {@link JobQueue}.
+     */
+    void order(int index) {
+        Thread worker = Thread.currentThread();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        synchronized (this) {
+            if (started[index]) {
+                return;
+            }
+            started[index] = true;
+            workers.put(worker, cancelled);
+        }
+        long start = System.nanoTime();
+        DenseAutomaton automaton = automata.get(index);
+        JobResult result;
+        try {
+            long estimate = estimateMemory(automaton);
+            if (estimate > memoryBudget) {
+                result = JobResult.givenUp(index, Outcome.OVER_MEMORY_BUDGET, "Automaton is estimated to need "
+                        + estimate + " bytes, the budget is " + memoryBudget, 0);
+            } else {
+                LinearOrder linearOrder = orderingService.orderAutomaton(automaton, cancelled);
+                result = linearOrder.isResolution()
+                        ? JobResult.ordered(index, linearOrder, stateOrder(automaton, linearOrder),
+                        outputSignalOrder(automaton, linearOrder), elapsedMillis(start))
+                        : JobResult.ordered(index, linearOrder, null, null, elapsedMillis(start));
+            }
+        } catch (CancellationException e) {
+            result = JobResult.givenUp(index, outcome(), e.getMessage(), elapsedMillis(start));
+        } catch (RuntimeException e) {
+            log.error("Ordering of automaton " + index + " of job " + id + " failed", e);
+            result = JobResult.givenUp(index, Outcome.FAILED, e.toString(), elapsedMillis(start));
+        } finally {
+            synchronized (this) {
+                workers.remove(worker);
+            }
+            // an interrupt meant for this job must not stop the next one
+            Thread.interrupted();
+        }
+        synchronized (this) {
+            finish(result);
+        }
+    }
+
+    private void finish(JobResult result) {
+        results.add(result);
+        for (Subscription subscription : subscriptions) {
+            subscription.result(result);
+        }
+        if (results.size() == automata.size()) {
+            if (status == Status.RUNNING) {
+                status = Status.FINISHED;
+            }
+            finishedAt = System.nanoTime();
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            log.info("finish: job {} is {}", id, status);
+            for (Subscription subscription : subscriptions) {
+                subscription.finish();
+            }
+            subscriptions.clear();
+        }
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscription.cancelled = true;
+        subscriptions.remove(subscription);
+    }
+
+    private Outcome outcome() {
+        return status == Status.TIMED_OUT ? Outcome.TIMED_OUT : Outcome.CANCELLED;
+    }
+
+    private static List<State> stateOrder(DenseAutomaton automaton, LinearOrder linearOrder) {
+        List<State> stateOrder = new ArrayList<>();
+        for (int state : LinearOrders.stateSequence(automaton, linearOrder)) {
+            stateOrder.add(automaton.getState(state));
+        }
+        return stateOrder;
+    }
+
+    private static List<OutputSignal> outputSignalOrder(DenseAutomaton automaton, LinearOrder linearOrder) {
+        List<OutputSignal> outputSignals = automaton.getOutputSignals();
+        int[] ranks = LinearOrders.outputRanks(outputSignals, linearOrder.getOrderOnOutputSignalSet());
+        OutputSignal[] outputSignalOrder = new OutputSignal[ranks.length];
+        for (int output = 0; output < ranks.length; output++) {
+            outputSignalOrder[ranks[output]] = outputSignals.get(output);
+        }
+        return Collections.unmodifiableList(Arrays.asList(outputSignalOrder));
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Events of one subscriber in the order they happened. Posting never blocks, a single delivery task at a
+     * time drains the events.
+     */
+    private static final class Subscription {
+        private final Consumer<JobResult> onResult;
+        private final Runnable onFinish;
+        private final Executor delivery;
+        private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        private Subscription(Consumer<JobResult> onResult, Runnable onFinish, Executor delivery) {
+            this.onResult = onResult;
+            this.onFinish = onFinish;
+            this.delivery = delivery;
+        }
+
+        private void result(JobResult result) {
+            post(() -> onResult.accept(result));
+        }
+
+        private void finish() {
+            post(onFinish);
+        }
+
+        private void post(Runnable event) {
+            events.add(event);
+            if (draining.compareAndSet(false, true)) {
+                delivery.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            Runnable event;
+            while ((event = events.poll()) != null) {
+                if (cancelled) {
+                    continue;
+                }
+                try {
+                    event.run();
+                } catch (RuntimeException e) {
+                    log.error("Subscriber failed", e);
+                }
+            }
+            draining.set(false);
+            // an event posted after the last poll but before the flag was cleared
+            if (!events.isEmpty() && draining.compareAndSet(false, true)) {
+                delivery.execute(this::drain);
+            }
+        }
+    }
+}
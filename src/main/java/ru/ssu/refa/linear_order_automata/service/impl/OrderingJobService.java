@@ -0,0 +1,130 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.service.IAutomataOrderingService;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJob;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJobService;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders batches of automata on a fixed number of workers. The automata wait in a bounded {@link JobQueue} which
+ * hands them out one job after another, a worker orders one automaton at a time, so a huge automaton occupies a
+ * single worker while the others go on with the rest. Every job has a deadline, after which its automata are
+ * given up, and a memory budget which automata estimated to exceed are not ordered at all.
+ */
+@Slf4j
+@Service
+public class OrderingJobService implements IOrderingJobService {
+    private final IAutomataOrderingService orderingService;
+    private final AutomataProperties.Jobs properties;
+    private final JobQueue queue;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Hands the results to the subscribers. A stalled subscriber holds one of its threads, the others go on.
+     */
+    private final ExecutorService delivery = Executors.newCachedThreadPool();
+    private final Map<String, OrderingJob> jobs = new ConcurrentHashMap<>();
+
+    public OrderingJobService(IAutomataOrderingService orderingService, AutomataProperties properties) {
+        this.orderingService = orderingService;
+        this.properties = properties.getJobs();
+        this.queue = new JobQueue(this.properties.getQueueCapacity());
+        this.workers = Executors.newFixedThreadPool(this.properties.getWorkers());
+        for (int i = 0; i < this.properties.getWorkers(); i++) {
+            workers.execute(this::work);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        long retention = this.properties.getRetention().toNanos();
+        scheduler.scheduleWithFixedDelay(() -> evictFinishedJobs(retention), retention, retention,
+                TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        delivery.shutdown();
+    }
+
+    @Override
+    public IOrderingJob submit(List<Automaton> automata, Duration timeBudget, Long memoryBudget) {
+        List<DenseAutomaton> denseAutomata = new ArrayList<>();
+        if (automata != null) {
+            for (Automaton automaton : automata) {
+                denseAutomata.add(DenseAutomaton.of(automaton));
+            }
+        }
+        return submitDense(denseAutomata, timeBudget, memoryBudget);
+    }
+
+    @Override
+    public IOrderingJob submitDense(List<DenseAutomaton> automata, Duration timeBudget, Long memoryBudget) {
+        if (automata == null || automata.isEmpty()) {
+            throw new IllegalArgumentException("Job has no automata");
+        }
+        Duration jobTimeBudget = timeBudget == null || timeBudget.compareTo(properties.getTimeBudget()) > 0
+                ? properties.getTimeBudget() : timeBudget;
+        long jobMemoryBudget = Math.min(memoryBudget == null ? Long.MAX_VALUE : memoryBudget,
+                properties.getMemoryBudget().toBytes());
+
+        OrderingJob job = new OrderingJob(UUID.randomUUID().toString(), new ArrayList<>(automata), orderingService,
+                delivery, jobMemoryBudget);
+        queue.offer(job);
+        jobs.put(job.getId(), job);
+        job.setDeadline(scheduler.schedule(() -> expire(job), jobTimeBudget.toNanos(), TimeUnit.NANOSECONDS));
+        log.info("submit: job {} of {} automata, {} waiting", job.getId(), job.getSize(), queue.getWaiting());
+        return job;
+    }
+
+    @Override
+    public IOrderingJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    @Override
+    public boolean cancel(String id) {
+        OrderingJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        queue.remove(job);
+        return job.stop(IOrderingJob.Status.CANCELLED);
+    }
+
+    private void expire(OrderingJob job) {
+        queue.remove(job);
+        job.stop(IOrderingJob.Status.TIMED_OUT);
+    }
+
+    private void evictFinishedJobs(long retention) {
+        long finishedBefore = System.nanoTime() - retention;
+        jobs.values().removeIf(job -> job.finishedBefore(finishedBefore));
+    }
+
+    private void work() {
+        try {
+            // the job clears the interrupt of a worker stopped while ordering, so the flag can't tell shutdown
+            while (!workers.isShutdown()) {
+                queue.take().run();
+            }
+        } catch (InterruptedException e) {
+            log.debug("work: worker is shut down");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Search for a linear order of one automaton. The search decides pairs of states one at a time, as chosen by the
+ * {@link PairSelector}: the orbits of a decided pair are added to the order on states {@code w} and the order on
+ * output signals {@code w1}, straight or reverted, in the preferred orientation first. An instance runs once, it
+ * may be stopped from another thread: by itself, or together with the rest of the ordering it is part of.
+ */
+@Slf4j
+abstract class OrderingSearch {
+    static final long NO_PAIR = -1;
+    static final String TREE_EXHAUSTED = "Rolled back to the root of stack, all options violate antisymmetry";
+
+    protected final IAutomataUtilsService automataUtilsService;
+    protected final DenseAutomaton automaton;
+    protected final IOrbitProvider orbitProvider;
+    protected final PairSelector pairSelector;
+    protected final boolean revertedFirst;
+    protected final int stateCount;
+    protected final TransitiveClosure wRelation;
+    protected final TransitiveClosure w1Relation;
+    protected final AtomicBoolean cancelled;
+    protected final AtomicBoolean stopped;
+    protected final SearchRecorder recorder;
+
+    OrderingSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                   IOrbitProvider orbitProvider, PairSelector pairSelector, boolean revertedFirst) {
+        this(automataUtilsService, automaton, orbitProvider, pairSelector, revertedFirst,
+                new TransitiveClosure(BitRelation.identity(automaton.getStateCount())),
+                new TransitiveClosure(BitRelation.identity(automaton.getOutputCount())), new AtomicBoolean(),
+                new AtomicBoolean(), SearchRecorder.DISABLED);
+    }
+
+    /**
+     * @param wRelation  order on states to start from, it becomes owned by the search
+     * @param w1Relation order on output signals to start from, it becomes owned by the search
+     * @param cancelled  cancellation of the ordering the search is part of, the search never sets it
+     * @param stopped    stop flag set by {@link #cancel()}, it may be shared by several searches
+     * @param recorder   statistics of the ordering the search is part of
+     */
+    OrderingSearch(IAutomataUtilsService automataUtilsService, DenseAutomaton automaton,
+                   IOrbitProvider orbitProvider, PairSelector pairSelector, boolean revertedFirst,
+                   TransitiveClosure wRelation, TransitiveClosure w1Relation, AtomicBoolean cancelled,
+                   AtomicBoolean stopped, SearchRecorder recorder) {
+        this.automataUtilsService = automataUtilsService;
+        this.automaton = automaton;
+        this.orbitProvider = orbitProvider;
+        this.pairSelector = pairSelector;
+        this.revertedFirst = revertedFirst;
+        this.stateCount = automaton.getStateCount();
+        this.wRelation = wRelation;
+        this.w1Relation = w1Relation;
+        this.cancelled = cancelled;
+        this.stopped = stopped;
+        this.recorder = recorder;
+        log.trace("w and w1 are initialized: w - {}, w1 - {}", wRelation, w1Relation);
+    }
+
+    /**
+     * @throws CancellationException if the search is cancelled before it finishes
+     */
+    abstract LinearOrder run();
+
+    /**
+     * Makes {@link #run()} stop at the next decision. Setting the cancellation flag of the ordering or interrupting
+     * the thread running the search does the same.
+     */
+    void cancel() {
+        stopped.set(true);
+    }
+
+    protected boolean isStopped() {
+        return stopped.get() || cancelled.get();
+    }
+
+    protected void checkCancelled() {
+        if (isStopped()) {
+            throw new CancellationException("Search is cancelled");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search is interrupted");
+        }
+    }
+
+    /**
+     * Adds the orbit to both relations, straight or reverted. Nothing is rolled back on failure.
+     *
+     * @return {@code false} if the orbit violates antisymmetry of either relation
+     */
+    protected boolean addOrbit(TransitiveClosure wRelation, TransitiveClosure w1Relation, DenseOrbit orbit,
+                               boolean isReverted) {
+        recorder.closure(orbit.getTransitionOrbit().length);
+        if (automataUtilsService.tryUpdateTransitiveClosure(wRelation, orbit.getTransitionOrbit(), isReverted)
+                != IAutomataUtilsService.NO_VIOLATION) {
+            recorder.violation(SearchStatistics.Phase.SEARCH);
+            return false;
+        }
+        recorder.closure(orbit.getOutputOrbit().length);
+        if (automataUtilsService.tryUpdateTransitiveClosure(w1Relation, orbit.getOutputOrbit(), isReverted)
+                != IAutomataUtilsService.NO_VIOLATION) {
+            recorder.violation(SearchStatistics.Phase.SEARCH);
+            return false;
+        }
+        return true;
+    }
+
+    protected boolean isOrderConstructed() {
+        return automataUtilsService.isOrderConstructed(wRelation.getRelation());
+    }
+
+    protected LinearOrder toLinearOrder() {
+        Set<Pair<OutputSignal>> lOrderOnOutputSet = automataUtilsService.doTopologicalSort(
+                automaton.getOutputSignals(), w1Relation.getRelation());
+        LinearOrder linearOrder = new LinearOrder(
+                automataUtilsService.toPairs(wRelation.getRelation(), automaton.getStates()), lOrderOnOutputSet);
+        log.debug("orderAutomaton: result - {}", linearOrder);
+        return linearOrder;
+    }
+
+    /**
+     * @return the pair to decide next, it is not ordered by {@code w} yet
+     */
+    protected long selectNextPair() {
+        return pairSelector.select(wRelation);
+    }
+
+    protected static LinearOrder failure(String reason) {
+        LinearOrder linearOrder = new LinearOrder(false, reason);
+        log.debug("orderAutomaton: result - {}", linearOrder);
+        return linearOrder;
+    }
+
+    /**
+     * For a violation found by an orbit calculated on demand.
+     */
+    protected LinearOrder orbitViolatesAntisymmetry(SymmetricRelationException e) {
+        recorder.violation(SearchStatistics.Phase.ORBITS);
+        return orbitsViolateAntisymmetry(e);
+    }
+
+    static LinearOrder orbitsViolateAntisymmetry(SymmetricRelationException e) {
+        log.error("Found symmetric pair during calculation of orbits: " + e.getMessage(), e);
+        return failure("The property of antisymmetry is violated on the step of orbits calculation");
+    }
+
+    /**
+     * Creates searches of one automaton with the same settings starting from different relations, all of them
+     * cancelled with the same ordering.
+     */
+    interface Factory {
+        OrderingSearch create(TransitiveClosure wRelation, TransitiveClosure w1Relation, AtomicBoolean stopped);
+    }
+}
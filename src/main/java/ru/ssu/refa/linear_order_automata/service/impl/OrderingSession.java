@@ -0,0 +1,314 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.exception.InfeasibleAutomatonException;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.Automaton;
+import ru.ssu.refa.linear_order_automata.model.AutomatonDelta;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.InputSignal;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.OutputSignal;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.State;
+import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+import ru.ssu.refa.linear_order_automata.service.IOrderingSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deltas only add states and transitions, and the restriction of an order of the grown automaton to the old states
+ * is an order of the old automaton. So an automaton without an order keeps having none, and the session answers
+ * without a search. Otherwise the old order is extended: the new states are merged into it by their outputs, the
+ * new output signals go last, and the result is checked. Only if the check fails is the grown automaton searched,
+ * with its states numbered along the extended order, so that every decision tries the orientation of the old
+ * order first and the search goes down the old path until a new transition contradicts it.
+ * <p>
+ * The orbits of the last search are kept as well. As long as the deltas add transitions and outputs of new states
+ * only, the orbits of the old pairs stay valid, so the next search takes them over and calculates just the orbits
+ * of the pairs with a new state, see {@link ExtendedOrbitProvider}. A delta which adds a transition or an output of
+ * an old state drops them, and the next search calculates all orbits again. The closure and the decision stack
+ * are not kept: every decision of the search can be undone by a new state, so it starts from an empty closure.
+ */
+@Slf4j
+class OrderingSession implements IOrderingSession {
+    private final AutomataOrderingService orderingService;
+    private final IAutomataUtilsService automataUtilsService;
+    private Automaton automaton;
+    private LinearOrder linearOrder;
+    private List<State> stateSequence;
+    private List<OutputSignal> outputSequence;
+    /**
+     * Orbits of the last search, of the automaton {@code orbitAutomaton} with the states {@code orbitStates} by
+     * index, or {@code null} if they are no longer valid.
+     */
+    private IOrbitProvider orbitProvider;
+    private DenseAutomaton orbitAutomaton;
+    private List<State> orbitStates;
+
+    OrderingSession(AutomataOrderingService orderingService, IAutomataUtilsService automataUtilsService,
+                    Automaton automaton) {
+        this.orderingService = orderingService;
+        this.automataUtilsService = automataUtilsService;
+        DenseAutomaton denseAutomaton = DenseAutomaton.of(automaton);
+        update(automaton, denseAutomaton, orderingService.orderAutomaton(denseAutomaton));
+    }
+
+    @Override
+    public synchronized Automaton getAutomaton() {
+        return automaton;
+    }
+
+    @Override
+    public synchronized LinearOrder getLinearOrder() {
+        return linearOrder;
+    }
+
+    @Override
+    public synchronized LinearOrder apply(AutomatonDelta delta) {
+        Automaton grownAutomaton = grow(automaton, delta);
+        DenseAutomaton denseAutomaton = DenseAutomaton.of(grownAutomaton);
+        if (orbitProvider != null && (leavesOrbitStates(delta.getTransitions())
+                || leavesOrbitStates(delta.getOutputs()))) {
+            log.debug("apply: delta adds transitions or outputs of old states, orbits are calculated again");
+            orbitProvider = null;
+        }
+        if (!linearOrder.isResolution()) {
+            log.debug("apply: automaton had no linear order, it has none with {} states",
+                    denseAutomaton.getStateCount());
+            automaton = grownAutomaton;
+            return linearOrder;
+        }
+
+        List<OutputSignal> outputSignals = new ArrayList<>(outputSequence);
+        for (OutputSignal outputSignal : denseAutomaton.getOutputSignals()) {
+            if (!outputSequence.contains(outputSignal)) {
+                outputSignals.add(outputSignal);
+            }
+        }
+        Set<Pair<OutputSignal>> orderOnOutputSignalSet = new HashSet<>();
+        for (int i = 0; i < outputSignals.size(); i++) {
+            for (int j = i; j < outputSignals.size(); j++) {
+                orderOnOutputSignalSet.add(new Pair<>(outputSignals.get(i), outputSignals.get(j)));
+            }
+        }
+        int[] outputRanks = LinearOrders.outputRanks(denseAutomaton.getOutputSignals(), orderOnOutputSignalSet);
+        int[] sequence = extend(denseAutomaton, outputRanks);
+        if (LinearOrders.isMonotone(denseAutomaton, sequence, outputRanks)) {
+            log.debug("apply: extended order of {} states", denseAutomaton.getStateCount());
+            update(grownAutomaton, denseAutomaton,
+                    LinearOrders.toLinearOrder(denseAutomaton, sequence, orderOnOutputSignalSet));
+        } else {
+            log.debug("apply: extended order of {} states is violated, searching from it",
+                    denseAutomaton.getStateCount());
+            update(grownAutomaton, denseAutomaton, searchFrom(denseAutomaton, sequence));
+        }
+        return linearOrder;
+    }
+
+    /**
+     * @return the old states in the old order, with the new ones merged in by their outputs
+     */
+    private int[] extend(DenseAutomaton denseAutomaton, int[] outputRanks) {
+        Set<State> oldStates = new HashSet<>(stateSequence);
+        List<Integer> newStates = new ArrayList<>();
+        for (int state = 0; state < denseAutomaton.getStateCount(); state++) {
+            if (!oldStates.contains(denseAutomaton.getState(state))) {
+                newStates.add(state);
+            }
+        }
+        newStates.sort((left, right) -> LinearOrders.compareOutputs(denseAutomaton, left, right, outputRanks));
+
+        int[] sequence = new int[denseAutomaton.getStateCount()];
+        int oldHead = 0;
+        int newHead = 0;
+        for (int position = 0; position < sequence.length; position++) {
+            if (newHead < newStates.size() && (oldHead == stateSequence.size()
+                    || LinearOrders.compareOutputs(denseAutomaton, newStates.get(newHead),
+                    denseAutomaton.indexOf(stateSequence.get(oldHead)), outputRanks) < 0)) {
+                sequence[position] = newStates.get(newHead++);
+            } else {
+                sequence[position] = denseAutomaton.indexOf(stateSequence.get(oldHead++));
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Searches the automaton with state {@code i} renumbered to its position in {@code sequence}.
+     */
+    private LinearOrder searchFrom(DenseAutomaton denseAutomaton, int[] sequence) {
+        int stateCount = denseAutomaton.getStateCount();
+        int inputCount = denseAutomaton.getInputCount();
+        int[] positions = new int[stateCount];
+        List<State> states = new ArrayList<>();
+        for (int position = 0; position < stateCount; position++) {
+            positions[sequence[position]] = position;
+            states.add(new State(position));
+        }
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        for (int position = 0; position < stateCount; position++) {
+            for (int input = 0; input < inputCount; input++) {
+                int target = denseAutomaton.getTargetState(sequence[position], input);
+                transitions[position * inputCount + input] = target == DenseAutomaton.NONE
+                        ? DenseAutomaton.NONE : positions[target];
+                outputs[position * inputCount + input] = denseAutomaton.getOutputSignal(sequence[position], input);
+            }
+        }
+        DenseAutomaton renumbered = new DenseAutomaton(states, denseAutomaton.getInputSignals(),
+                denseAutomaton.getOutputSignals(), transitions, outputs);
+        if (stateCount > DenseAutomaton.MAX_STATE_COUNT) {
+            // the search reports that the automaton is too large
+            return orderingService.search(renumbered);
+        }
+
+        List<State> renumberedStates = new ArrayList<>();
+        for (int position = 0; position < stateCount; position++) {
+            renumberedStates.add(denseAutomaton.getState(sequence[position]));
+        }
+        IOrbitProvider renumberedOrbits;
+        try {
+            renumberedOrbits = getOrbitProvider(renumbered, renumberedStates);
+        } catch (InfeasibleAutomatonException e) {
+            return OrderingSearch.failure(e.getMessage());
+        } catch (SymmetricRelationException e) {
+            return OrderingSearch.orbitsViolateAntisymmetry(e);
+        }
+        orbitProvider = renumberedOrbits;
+        orbitAutomaton = renumbered;
+        orbitStates = renumberedStates;
+
+        LinearOrder renumberedOrder = orderingService.search(renumbered, renumberedOrbits);
+        if (!renumberedOrder.isResolution()) {
+            return renumberedOrder;
+        }
+        int[] renumberedSequence = LinearOrders.stateSequence(renumbered, renumberedOrder);
+        for (int i = 0; i < stateCount; i++) {
+            renumberedSequence[i] = sequence[renumberedSequence[i]];
+        }
+        return LinearOrders.toLinearOrder(denseAutomaton, renumberedSequence,
+                renumberedOrder.getOrderOnOutputSignalSet());
+    }
+
+    /**
+     * Extends the kept orbits to {@code renumbered} if there are any, otherwise calculates them.
+     */
+    private IOrbitProvider getOrbitProvider(DenseAutomaton renumbered,
+                                            List<State> renumberedStates) throws SymmetricRelationException {
+        if (orbitProvider == null) {
+            return automataUtilsService.getOrbitProvider(renumbered);
+        }
+        Map<State, Integer> orbitIndex = new HashMap<>();
+        for (int state = 0; state < orbitStates.size(); state++) {
+            orbitIndex.put(orbitStates.get(state), state);
+        }
+        int[] previousStates = new int[renumberedStates.size()];
+        int newStateCount = 0;
+        for (int state = 0; state < previousStates.length; state++) {
+            previousStates[state] = orbitIndex.getOrDefault(renumberedStates.get(state), ExtendedOrbitProvider.NEW);
+            if (previousStates[state] == ExtendedOrbitProvider.NEW) {
+                newStateCount++;
+            }
+        }
+        log.debug("getOrbitProvider: orbits of {} old states are kept, {} states are new", orbitStates.size(),
+                newStateCount);
+        return ExtendedOrbitProvider.extend(automataUtilsService, renumbered, orbitAutomaton, orbitProvider,
+                previousStates);
+    }
+
+    private boolean leavesOrbitStates(Map<State, ? extends Map<InputSignal, ?>> rows) {
+        if (rows == null) {
+            return false;
+        }
+        Set<State> states = new HashSet<>(orbitStates);
+        return rows.entrySet().stream()
+                .anyMatch(row -> !row.getValue().isEmpty() && states.contains(row.getKey()));
+    }
+
+    private void update(Automaton automaton, DenseAutomaton denseAutomaton, LinearOrder linearOrder) {
+        this.automaton = automaton;
+        this.linearOrder = linearOrder;
+        if (!linearOrder.isResolution()) {
+            return;
+        }
+        stateSequence = new ArrayList<>();
+        for (int state : LinearOrders.stateSequence(denseAutomaton, linearOrder)) {
+            stateSequence.add(denseAutomaton.getState(state));
+        }
+        int[] outputRanks = LinearOrders.outputRanks(denseAutomaton.getOutputSignals(),
+                linearOrder.getOrderOnOutputSignalSet());
+        OutputSignal[] outputs = new OutputSignal[outputRanks.length];
+        for (int output = 0; output < outputRanks.length; output++) {
+            outputs[outputRanks[output]] = denseAutomaton.getOutput(output);
+        }
+        outputSequence = List.of(outputs);
+    }
+
+    private static Automaton grow(Automaton automaton, AutomatonDelta delta) {
+        List<State> states = concat(automaton.getStates(), delta.getStates(), "State");
+        List<InputSignal> inputSignals = concat(automaton.getInputSignals(), delta.getInputSignals(),
+                "Input signal");
+        List<OutputSignal> outputSignals = concat(automaton.getOutputSignals(), delta.getOutputSignals(),
+                "Output signal");
+        Set<State> declaredStates = new HashSet<>(states);
+        Set<InputSignal> declaredInputSignals = new HashSet<>(inputSignals);
+        Set<OutputSignal> declaredOutputSignals = new HashSet<>(outputSignals);
+
+        Map<State, Map<InputSignal, State>> transitions = copy(automaton.getTransitions());
+        if (delta.getTransitions() != null) {
+            delta.getTransitions().forEach((state, row) -> row.forEach((inputSignal, target) -> {
+                require(declaredStates.contains(state) && declaredStates.contains(target)
+                        && declaredInputSignals.contains(inputSignal),
+                        "Transition " + state + " -" + inputSignal + "-> " + target + " uses undeclared elements");
+                State previous = transitions.computeIfAbsent(state, s -> new HashMap<>()).put(inputSignal, target);
+                require(previous == null || previous.equals(target),
+                        "Transition from " + state + " by " + inputSignal + " is already defined");
+            }));
+        }
+        Map<State, Map<InputSignal, OutputSignal>> outputs = copy(automaton.getOutputs());
+        if (delta.getOutputs() != null) {
+            delta.getOutputs().forEach((state, row) -> row.forEach((inputSignal, outputSignal) -> {
+                require(declaredStates.contains(state) && declaredInputSignals.contains(inputSignal)
+                        && declaredOutputSignals.contains(outputSignal),
+                        "Output " + outputSignal + " of " + state + " by " + inputSignal
+                                + " uses undeclared elements");
+                OutputSignal previous = outputs.computeIfAbsent(state, s -> new HashMap<>())
+                        .put(inputSignal, outputSignal);
+                require(previous == null || previous.equals(outputSignal),
+                        "Output of " + state + " by " + inputSignal + " is already defined");
+            }));
+        }
+        return new Automaton(states, inputSignals, outputSignals, transitions, outputs);
+    }
+
+    private static <T> List<T> concat(List<T> declared, Collection<T> added, String kind) {
+        List<T> result = new ArrayList<>(declared);
+        Set<T> declaredSet = new HashSet<>(declared);
+        for (T element : added == null ? Collections.<T>emptyList() : added) {
+            require(declaredSet.add(element), kind + " " + element + " is already declared");
+            result.add(element);
+        }
+        return result;
+    }
+
+    private static <K, V> Map<State, Map<K, V>> copy(Map<State, Map<K, V>> map) {
+        Map<State, Map<K, V>> result = new HashMap<>();
+        map.forEach((state, row) -> result.put(state, new HashMap<>(row)));
+        return result;
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Strongly connected components of the pair graph of an automaton. Nodes are the ordered pairs of distinct states
+ * encoded as {@code left * stateCount + right}, the pair {@code (p, q)} has an edge to {@code (p', q')} when some
+ * input signal moves {@code p} to {@code p'} and {@code q} to {@code q'}. The transition orbit of a pair is the set
+ * of pairs reachable from it, so all pairs of one component share the same orbit, and the orbit of a component is
+ * the union of the components reachable from it in the condensation.
+ * <p>
+ * Components are numbered so that every condensation edge goes from a smaller to a greater number.
+ */
+final class PairGraph {
+    /**
+     * Reachable sets are kept as bitsets over components only up to this number of components.
+     */
+    private static final int REACHABLE_BITSET_LIMIT = 1 << 13;
+
+    private final int stateCount;
+    private final int componentCount;
+    private final int[] component;
+    private final int[] memberOffsets;
+    private final int[] members;
+    private final int[] successorOffsets;
+    private final int[] successors;
+    private final int[] reverseComponent;
+    private final long[][] reachable;
+    private final int[] orbitSizes;
+    private final int[] orbitSizeEstimates;
+
+    private PairGraph(DenseAutomaton automaton, AtomicBoolean cancelled) {
+        this.stateCount = automaton.getStateCount();
+        this.component = findComponents(automaton, cancelled);
+        int count = 0;
+        for (int componentId : component) {
+            count = Math.max(count, componentId + 1);
+        }
+        this.componentCount = count;
+
+        this.memberOffsets = new int[componentCount + 1];
+        for (int componentId : component) {
+            if (componentId >= 0) {
+                memberOffsets[componentId + 1]++;
+            }
+        }
+        for (int i = 0; i < componentCount; i++) {
+            memberOffsets[i + 1] += memberOffsets[i];
+        }
+        this.members = new int[memberOffsets[componentCount]];
+        int[] position = Arrays.copyOf(memberOffsets, componentCount);
+        for (int pair = 0; pair < component.length; pair++) {
+            if (component[pair] >= 0) {
+                members[position[component[pair]]++] = pair;
+            }
+        }
+
+        this.reverseComponent = new int[componentCount];
+        for (int componentId = 0; componentId < componentCount; componentId++) {
+            int pair = members[memberOffsets[componentId]];
+            reverseComponent[componentId] = component[(pair % stateCount) * stateCount + pair / stateCount];
+        }
+
+        int[][] condensation = condense(automaton);
+        this.successorOffsets = condensation[0];
+        this.successors = condensation[1];
+
+        this.orbitSizes = new int[componentCount];
+        Arrays.fill(orbitSizes, -1);
+        this.reachable = componentCount <= REACHABLE_BITSET_LIMIT ? computeReachable(cancelled) : null;
+        this.orbitSizeEstimates = reachable != null ? orbitSizes : estimateOrbitSizes();
+    }
+
+    static PairGraph of(DenseAutomaton automaton) {
+        return of(automaton, new AtomicBoolean());
+    }
+
+    /**
+     * @throws CancellationException if {@code cancelled} is set before the graph is built
+     */
+    static PairGraph of(DenseAutomaton automaton, AtomicBoolean cancelled) {
+        if (automaton.getStateCount() > DenseAutomaton.MAX_STATE_COUNT) {
+            throw new IllegalArgumentException("Pair graph of " + automaton.getStateCount()
+                    + " states doesn't fit into int indices");
+        }
+        return new PairGraph(automaton, cancelled);
+    }
+
+    int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return component of the pair {@code (left, right)}, {@code -1} if {@code left == right}
+     */
+    int getComponent(int left, int right) {
+        return component[left * stateCount + right];
+    }
+
+    /**
+     * Component which consists of the reversed pairs of {@code componentId}. The pair graph is symmetric with
+     * respect to reversal, so the orbit of the reverse component is the reversed orbit.
+     */
+    int getReverseComponent(int componentId) {
+        return reverseComponent[componentId];
+    }
+
+    /**
+     * Upper bound of the transition orbit size of the component, exact while reachable sets are kept. Otherwise
+     * member counts are summed along the condensation edges, so a component reachable in several ways is counted
+     * several times, and the bound is capped at the number of pairs.
+     */
+    int getOrbitSizeEstimate(int componentId) {
+        return orbitSizeEstimates[componentId];
+    }
+
+    int getMemberCount(int componentId) {
+        return memberOffsets[componentId + 1] - memberOffsets[componentId];
+    }
+
+    int getMember(int componentId, int index) {
+        return members[memberOffsets[componentId] + index];
+    }
+
+    /**
+     * Traversals keep their own scratch arrays, one instance must not be used by several threads at once.
+     */
+    Traversal newTraversal() {
+        return new Traversal();
+    }
+
+    /**
+     * Iterative variant of Pearce's space efficient algorithm: a single {@code int} per node serves as the visit
+     * index while the node is open and as the component number once it is closed.
+     */
+    private static int[] findComponents(DenseAutomaton automaton, AtomicBoolean cancelled) {
+        int stateCount = automaton.getStateCount();
+        int nodeCount = stateCount * stateCount;
+        int[] rindex = new int[nodeCount];
+        int[] sccStack = new int[16];
+        int sccSize = 0;
+        int[] callNode = new int[16];
+        int[] callInput = new int[16];
+        boolean[] callRoot = new boolean[16];
+        int index = 1;
+        int nextComponent = nodeCount - 1;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (rindex[root] != 0 || root / stateCount == root % stateCount) {
+                continue;
+            }
+            checkCancelled(cancelled);
+            int depth = 0;
+            callNode[0] = root;
+            callInput[0] = 0;
+            callRoot[0] = true;
+            rindex[root] = index++;
+            while (depth >= 0) {
+                int v = callNode[depth];
+                if (callInput[depth] < automaton.getInputCount()) {
+                    int w = successor(automaton, v, callInput[depth]++);
+                    if (w < 0) {
+                        continue;
+                    }
+                    if (rindex[w] == 0) {
+                        if (++depth == callNode.length) {
+                            callNode = Arrays.copyOf(callNode, depth * 2);
+                            callInput = Arrays.copyOf(callInput, depth * 2);
+                            callRoot = Arrays.copyOf(callRoot, depth * 2);
+                        }
+                        callNode[depth] = w;
+                        callInput[depth] = 0;
+                        callRoot[depth] = true;
+                        rindex[w] = index++;
+                    } else if (rindex[w] < rindex[v]) {
+                        rindex[v] = rindex[w];
+                        callRoot[depth] = false;
+                    }
+                } else {
+                    if (callRoot[depth]) {
+                        index--;
+                        while (sccSize > 0 && rindex[v] <= rindex[sccStack[sccSize - 1]]) {
+                            rindex[sccStack[--sccSize]] = nextComponent;
+                            index--;
+                        }
+                        rindex[v] = nextComponent--;
+                    } else {
+                        if (sccSize == sccStack.length) {
+                            sccStack = Arrays.copyOf(sccStack, sccSize * 2);
+                        }
+                        sccStack[sccSize++] = v;
+                    }
+                    depth--;
+                    if (depth >= 0 && rindex[v] < rindex[callNode[depth]]) {
+                        rindex[callNode[depth]] = rindex[v];
+                        callRoot[depth] = false;
+                    }
+                }
+            }
+        }
+
+        // components were numbered downwards as they were closed, sinks first, shift them to 0..count-1
+        int offset = nextComponent + 1;
+        for (int pair = 0; pair < nodeCount; pair++) {
+            rindex[pair] = rindex[pair] == 0 ? -1 : rindex[pair] - offset;
+        }
+        return rindex;
+    }
+
+    private static void checkCancelled(AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            throw new CancellationException("Pair graph construction is cancelled");
+        }
+    }
+
+    private static int successor(DenseAutomaton automaton, int pair, int inputSignal) {
+        int stateCount = automaton.getStateCount();
+        int nextLeft = automaton.getTargetState(pair / stateCount, inputSignal);
+        int nextRight = automaton.getTargetState(pair % stateCount, inputSignal);
+        if (nextLeft == DenseAutomaton.NONE || nextRight == DenseAutomaton.NONE || nextLeft == nextRight) {
+            return -1;
+        }
+        return nextLeft * stateCount + nextRight;
+    }
+
+    private int[][] condense(DenseAutomaton automaton) {
+        int[] offsets = new int[componentCount + 1];
+        for (int pair = 0; pair < component.length; pair++) {
+            if (component[pair] < 0) {
+                continue;
+            }
+            for (int inputSignal = 0; inputSignal < automaton.getInputCount(); inputSignal++) {
+                int next = successor(automaton, pair, inputSignal);
+                if (next >= 0 && component[next] != component[pair]) {
+                    offsets[component[pair] + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < componentCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[offsets[componentCount]];
+        int[] position = Arrays.copyOf(offsets, componentCount);
+        for (int pair = 0; pair < component.length; pair++) {
+            if (component[pair] < 0) {
+                continue;
+            }
+            for (int inputSignal = 0; inputSignal < automaton.getInputCount(); inputSignal++) {
+                int next = successor(automaton, pair, inputSignal);
+                if (next >= 0 && component[next] != component[pair]) {
+                    targets[position[component[pair]]++] = component[next];
+                }
+            }
+        }
+
+        // drop parallel edges
+        int[] lastSource = new int[componentCount];
+        Arrays.fill(lastSource, -1);
+        int[] uniqueOffsets = new int[componentCount + 1];
+        int edgeCount = 0;
+        for (int componentId = 0; componentId < componentCount; componentId++) {
+            for (int edge = offsets[componentId]; edge < offsets[componentId + 1]; edge++) {
+                if (lastSource[targets[edge]] != componentId) {
+                    lastSource[targets[edge]] = componentId;
+                    targets[edgeCount++] = targets[edge];
+                }
+            }
+            uniqueOffsets[componentId + 1] = edgeCount;
+        }
+        return new int[][]{uniqueOffsets, Arrays.copyOf(targets, edgeCount)};
+    }
+
+    private long[][] computeReachable(AtomicBoolean cancelled) {
+        int words = (componentCount + 63) >>> 6;
+        long[][] result = new long[componentCount][];
+        for (int componentId = componentCount - 1; componentId >= 0; componentId--) {
+            checkCancelled(cancelled);
+            long[] bits = new long[words];
+            bits[componentId >>> 6] |= 1L << componentId;
+            for (int edge = successorOffsets[componentId]; edge < successorOffsets[componentId + 1]; edge++) {
+                long[] successorBits = result[successors[edge]];
+                for (int i = 0; i < words; i++) {
+                    bits[i] |= successorBits[i];
+                }
+            }
+            result[componentId] = bits;
+
+            int orbitSize = 0;
+            for (int i = 0; i < words; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    orbitSize += getMemberCount((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            orbitSizes[componentId] = orbitSize;
+        }
+        return result;
+    }
+
+    private int[] estimateOrbitSizes() {
+        long pairCount = (long) stateCount * (stateCount - 1);
+        int[] result = new int[componentCount];
+        for (int componentId = componentCount - 1; componentId >= 0; componentId--) {
+            long estimate = getMemberCount(componentId);
+            for (int edge = successorOffsets[componentId]; edge < successorOffsets[componentId + 1]; edge++) {
+                estimate += result[successors[edge]];
+            }
+            result[componentId] = (int) Math.min(estimate, pairCount);
+        }
+        return result;
+    }
+
+    final class Traversal {
+        private final int[] stamp = new int[componentCount];
+        private int token;
+        private int[] reached = new int[16];
+        private int reachedCount;
+        private int symmetricComponent;
+
+        /**
+         * Collects the transition orbit of the component.
+         *
+         * @return encoded pairs of the orbit
+         */
+        long[] getOrbit(int componentId) {
+            int orbitSize = countOrbit(componentId);
+            long[] orbit = new long[orbitSize];
+            int position = 0;
+            for (int i = 0; i < reachedCount; i++) {
+                int reachedComponent = reached[i];
+                for (int member = memberOffsets[reachedComponent]; member < memberOffsets[reachedComponent + 1]; member++) {
+                    orbit[position++] = members[member];
+                }
+            }
+            return orbit;
+        }
+
+        /**
+         * Number of pairs in the transition orbit of every pair of the component. Sizes are remembered by the
+         * graph, so asking again for a component is free for every traversal.
+         */
+        int getOrbitSize(int componentId) {
+            int orbitSize = orbitSizes[componentId];
+            if (orbitSize < 0) {
+                orbitSize = countOrbit(componentId);
+                orbitSizes[componentId] = orbitSize;
+            }
+            return orbitSize;
+        }
+
+        /**
+         * Component reached by the last traversal whose reverse component was reached as well, {@code -1} if
+         * there is none. Every pair of such a component is in the orbit together with its reversed pair.
+         */
+        int getSymmetricComponent() {
+            return symmetricComponent;
+        }
+
+        private int countOrbit(int componentId) {
+            if (reachable != null) {
+                collectReachable(componentId);
+            } else {
+                collect(componentId);
+            }
+
+            int orbitSize = 0;
+            symmetricComponent = -1;
+            for (int i = 0; i < reachedCount; i++) {
+                int reachedComponent = reached[i];
+                orbitSize += getMemberCount(reachedComponent);
+                if (symmetricComponent < 0 && stamp[reverseComponent[reachedComponent]] == token) {
+                    symmetricComponent = reachedComponent;
+                }
+            }
+            return orbitSize;
+        }
+
+        private void collect(int componentId) {
+            nextToken();
+            reachedCount = 0;
+            stamp[componentId] = token;
+            push(componentId);
+            for (int head = 0; head < reachedCount; head++) {
+                int current = reached[head];
+                for (int edge = successorOffsets[current]; edge < successorOffsets[current + 1]; edge++) {
+                    int next = successors[edge];
+                    if (stamp[next] != token) {
+                        stamp[next] = token;
+                        push(next);
+                    }
+                }
+            }
+        }
+
+        private void collectReachable(int componentId) {
+            nextToken();
+            reachedCount = 0;
+            long[] bits = reachable[componentId];
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    int reachedComponent = (i << 6) + Long.numberOfTrailingZeros(word);
+                    stamp[reachedComponent] = token;
+                    push(reachedComponent);
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private void push(int componentId) {
+            if (reachedCount == reached.length) {
+                reached = Arrays.copyOf(reached, reachedCount * 2);
+            }
+            reached[reachedCount++] = componentId;
+        }
+
+        private void nextToken() {
+            if (++token == 0) {
+                Arrays.fill(stamp, 0);
+                token = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.TransitiveClosure;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses the pair of states an {@link OrderingSearch} decides next. A selector may keep state between calls, so
+ * every search needs its own instance.
+ */
+interface PairSelector {
+
+    /**
+     * @return encoded pair {@code (left, right)}, {@code left < right}, which is not ordered by {@code wRelation}
+     * in either direction, or {@link OrderingSearch#NO_PAIR} if there is none
+     */
+    long select(TransitiveClosure wRelation);
+
+    /**
+     * The first pair of {@code pairs} which is not ordered yet.
+     */
+    static PairSelector inOrder(long[] pairs) {
+        return new InOrder(pairs);
+    }
+
+    /**
+     * The pairs in an order shuffled with {@code seed}.
+     */
+    static PairSelector shuffled(long[] pairs, long seed) {
+        long[] shuffledPairs = pairs.clone();
+        Random random = new Random(seed);
+        for (int i = shuffledPairs.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = shuffledPairs[i];
+            shuffledPairs[i] = shuffledPairs[j];
+            shuffledPairs[j] = swap;
+        }
+        return inOrder(shuffledPairs);
+    }
+
+    /**
+     * The pair whose orbit has the fewest pairs not ordered yet, i.e. the decision which changes the relation
+     * least. Ties go to the pair coming first in {@code pairs}. Every selection looks at the orbits of all
+     * unordered pairs, so orbits calculated on demand are all calculated eventually.
+     */
+    static PairSelector fewestUnresolved(long[] pairs, IOrbitProvider orbitProvider) {
+        return wRelation -> {
+            int size = wRelation.getSize();
+            long bestPair = OrderingSearch.NO_PAIR;
+            int bestCount = Integer.MAX_VALUE;
+            for (long pair : pairs) {
+                int left = (int) (pair / size);
+                int right = (int) (pair % size);
+                if (wRelation.contains(left, right) || wRelation.contains(right, left)) {
+                    continue;
+                }
+                long[] orbit;
+                try {
+                    orbit = orbitProvider.getOrbit(left, right).getTransitionOrbit();
+                } catch (SymmetricRelationException e) {
+                    // let the search fetch the orbit again and report the violation
+                    return pair;
+                }
+                int count = 0;
+                for (long orbitPair : orbit) {
+                    int orbitLeft = (int) (orbitPair / size);
+                    int orbitRight = (int) (orbitPair % size);
+                    if (!wRelation.contains(orbitLeft, orbitRight) && !wRelation.contains(orbitRight, orbitLeft)
+                            && ++count >= bestCount) {
+                        break;
+                    }
+                }
+                if (count < bestCount) {
+                    bestPair = pair;
+                    bestCount = count;
+                    if (count <= 1) {
+                        // the pair itself is always unordered
+                        break;
+                    }
+                }
+            }
+            return bestPair;
+        };
+    }
+
+    /**
+     * Keeps a cursor per open level of the relation: every pair before the cursor was ordered while the level was
+     * the innermost one, so it is still ordered while the level is open. A selection continues from the cursor of
+     * the innermost level still open, a rolled back level drops its cursor. Along a branch of the search every
+     * pair is passed over once, instead of once per decision.
+     */
+    class InOrder implements PairSelector {
+        private final long[] pairs;
+        private TransitiveClosure relation;
+        private int[] levels = new int[16];
+        private int[] cursors = new int[16];
+        private int cursorCount;
+
+        InOrder(long[] pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        public long select(TransitiveClosure wRelation) {
+            if (wRelation != relation) {
+                relation = wRelation;
+                cursorCount = 0;
+            }
+            while (cursorCount > 0 && !wRelation.isOpen(levels[cursorCount - 1])) {
+                cursorCount--;
+            }
+
+            int size = wRelation.getSize();
+            int cursor = cursorCount > 0 ? cursors[cursorCount - 1] : 0;
+            while (cursor < pairs.length) {
+                int left = (int) (pairs[cursor] / size);
+                int right = (int) (pairs[cursor] % size);
+                if (!wRelation.contains(left, right) && !wRelation.contains(right, left)) {
+                    break;
+                }
+                cursor++;
+            }
+
+            int level = wRelation.getLevel();
+            if (cursorCount == 0 || levels[cursorCount - 1] != level) {
+                if (cursorCount == levels.length) {
+                    levels = Arrays.copyOf(levels, cursorCount * 2);
+                    cursors = Arrays.copyOf(cursors, cursorCount * 2);
+                }
+                levels[cursorCount++] = level;
+            }
+            cursors[cursorCount - 1] = cursor;
+            return cursor < pairs.length ? pairs[cursor] : OrderingSearch.NO_PAIR;
+        }
+    }
+}
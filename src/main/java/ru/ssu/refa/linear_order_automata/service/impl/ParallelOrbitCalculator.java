@@ -0,0 +1,208 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Calculates the orbits of many state pairs on a fork/join pool. The pairs are split into blocks of consecutive
+ * positions and every block writes only its own slots of the result array. Pairs of one strongly connected
+ * component of the pair graph share the orbit, it is published to the other workers with a compare-and-set, so
+ * two workers racing for the same component cost one extra traversal and nothing else.
+ * <p>
+ * The result does not depend on the number of threads: an orbit is determined by its component alone, and when
+ * several pairs violate antisymmetry the violation at the smallest position is reported. Once a violation is
+ * found, blocks after it are skipped and the running ones stop at their next pair. Blocks before it still
+ * complete, as they may hold an earlier violation. Setting the cancellation flag stops the blocks the same way,
+ * all of them.
+ */
+final class ParallelOrbitCalculator {
+
+    /**
+     * Orbit of a component, {@code traversal} is owned by the calling thread for the duration of the call.
+     */
+    interface ComponentOrbitFunction {
+        DenseOrbit apply(PairGraph.Traversal traversal, int componentId) throws SymmetricRelationException;
+    }
+
+    private final ForkJoinPool pool;
+    private final int blockSize;
+
+    ParallelOrbitCalculator(ForkJoinPool pool, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, got " + blockSize);
+        }
+        this.pool = pool;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param pairs encoded pairs {@code left * stateCount + right} to calculate orbits for, or {@code null} for
+     *              all pairs {@code left < right} in the order of {@link DenseAutomaton#getPairIndex(int, int)}
+     * @return orbits by position in {@code pairs}
+     * @throws SymmetricRelationException the violation found at the smallest position
+     * @throws CancellationException      if {@code cancelled} is set before all orbits are calculated
+     */
+    DenseOrbit[] calculate(DenseAutomaton automaton, PairGraph pairGraph, int[] pairs,
+                           ComponentOrbitFunction orbitFunction,
+                           AtomicBoolean cancelled) throws SymmetricRelationException {
+        int pairCount = pairs != null ? pairs.length : automaton.getPairCount();
+        DenseOrbit[] result = new DenseOrbit[pairCount];
+        if (pairCount == 0) {
+            return result;
+        }
+
+        Run run = new Run(automaton, pairGraph, pairs, orbitFunction, result, cancelled);
+        int blockCount = (int) ((pairCount + (long) blockSize - 1) / blockSize);
+        pool.invoke(new BlockRange(run, 0, blockCount));
+
+        if (cancelled.get()) {
+            // skipped blocks may hold an earlier violation as well as the missing orbits
+            throw new CancellationException("Orbit calculation is cancelled");
+        }
+
+        int violatingBlock = run.firstViolatingBlock.get();
+        if (violatingBlock != Integer.MAX_VALUE) {
+            throw run.violations.get(violatingBlock);
+        }
+        return result;
+    }
+
+    private final class Run {
+        private final DenseAutomaton automaton;
+        private final PairGraph pairGraph;
+        private final int[] pairs;
+        private final ComponentOrbitFunction orbitFunction;
+        private final DenseOrbit[] result;
+        private final AtomicBoolean cancelled;
+        private final AtomicReferenceArray<DenseOrbit> componentOrbits;
+        private final Map<Thread, PairGraph.Traversal> traversals = new ConcurrentHashMap<>();
+        private final AtomicInteger firstViolatingBlock = new AtomicInteger(Integer.MAX_VALUE);
+        private final Map<Integer, SymmetricRelationException> violations = new ConcurrentHashMap<>();
+
+        Run(DenseAutomaton automaton, PairGraph pairGraph, int[] pairs, ComponentOrbitFunction orbitFunction,
+            DenseOrbit[] result, AtomicBoolean cancelled) {
+            this.automaton = automaton;
+            this.pairGraph = pairGraph;
+            this.pairs = pairs;
+            this.orbitFunction = orbitFunction;
+            this.result = result;
+            this.cancelled = cancelled;
+            this.componentOrbits = new AtomicReferenceArray<>(pairGraph.getComponentCount());
+        }
+
+        boolean isSkipped(int block) {
+            return block > firstViolatingBlock.get() || cancelled.get();
+        }
+
+        void calculateBlock(int block) {
+            if (isSkipped(block)) {
+                return;
+            }
+            PairGraph.Traversal traversal = traversals.computeIfAbsent(Thread.currentThread(),
+                    thread -> pairGraph.newTraversal());
+            int stateCount = automaton.getStateCount();
+            int from = block * blockSize;
+            int to = (int) Math.min((long) from + blockSize, result.length);
+
+            int left = 0;
+            int right = 0;
+            if (pairs == null) {
+                left = findLeft(from);
+                right = from - automaton.getPairIndex(left, left + 1) + left + 1;
+            }
+            try {
+                for (int position = from; position < to; position++) {
+                    if (isSkipped(block)) {
+                        return;
+                    }
+                    int pair;
+                    if (pairs != null) {
+                        pair = pairs[position];
+                    } else {
+                        pair = left * stateCount + right;
+                        if (++right == stateCount) {
+                            left++;
+                            right = left + 1;
+                        }
+                    }
+                    result[position] = getOrbit(traversal, pair, stateCount);
+                }
+            } catch (SymmetricRelationException e) {
+                violations.put(block, e);
+                firstViolatingBlock.accumulateAndGet(block, Math::min);
+            }
+        }
+
+        private DenseOrbit getOrbit(PairGraph.Traversal traversal, int pair,
+                                    int stateCount) throws SymmetricRelationException {
+            int componentId = pairGraph.getComponent(pair / stateCount, pair % stateCount);
+            if (componentId < 0) {
+                return new DenseOrbit(new long[]{pair}, new long[0]);
+            }
+            DenseOrbit orbit = componentOrbits.get(componentId);
+            if (orbit == null) {
+                orbit = orbitFunction.apply(traversal, componentId);
+                if (!componentOrbits.compareAndSet(componentId, null, orbit)) {
+                    orbit = componentOrbits.get(componentId);
+                }
+            }
+            return orbit;
+        }
+
+        /**
+         * The state {@code left} such that the pair at {@code pairIndex} is {@code (left, right)}.
+         */
+        private int findLeft(int pairIndex) {
+            int low = 0;
+            int high = automaton.getStateCount() - 2;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (automaton.getPairIndex(middle, middle + 1) <= pairIndex) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Splits the blocks {@code [from, to)} in halves until a single block is left, idle workers steal the halves.
+     */
+    private static final class BlockRange extends RecursiveAction {
+        private final Run run;
+        private final int from;
+        private final int to;
+
+        BlockRange(Run run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (run.isSkipped(from)) {
+                return;
+            }
+            if (to - from == 1) {
+                run.calculateBlock(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ForkJoinTask.invokeAll(new BlockRange(run, from, middle), new BlockRange(run, middle, to));
+        }
+    }
+}
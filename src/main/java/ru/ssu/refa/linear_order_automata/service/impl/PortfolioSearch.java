@@ -0,0 +1,62 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs several searches of the same automaton concurrently. Every search is complete, so the first one to finish
+ * decides the result: an order, or the proof that there is none. The other searches are cancelled then.
+ * <p>
+ * Which search finishes first depends on timing. The resolution does not, but the order found may differ from
+ * run to run when the automaton has several linear orders.
+ */
+@Slf4j
+class PortfolioSearch {
+    private final Executor executor;
+    private final List<OrderingSearch> searches;
+
+    PortfolioSearch(Executor executor, List<OrderingSearch> searches) {
+        this.executor = executor;
+        this.searches = searches;
+    }
+
+    LinearOrder run() {
+        CompletionService<LinearOrder> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<LinearOrder>, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < searches.size(); i++) {
+            indexes.put(completionService.submit(searches.get(i)::run), i);
+        }
+
+        RuntimeException failure = null;
+        try {
+            for (int i = 0; i < searches.size(); i++) {
+                Future<LinearOrder> future = completionService.take();
+                try {
+                    LinearOrder linearOrder = future.get();
+                    log.debug("run: search {} of {} finished first", indexes.get(future), searches.size());
+                    return linearOrder;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        // the ordering is cancelled, the searches stop one by one
+                        throw (CancellationException) e.getCause();
+                    }
+                    log.error("Search " + indexes.get(future) + " failed", e.getCause());
+                    if (failure == null) {
+                        failure = new IllegalStateException("Every search of the portfolio failed", e.getCause());
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the searches");
+        } finally {
+            searches.forEach(OrderingSearch::cancel);
+        }
+    }
+}
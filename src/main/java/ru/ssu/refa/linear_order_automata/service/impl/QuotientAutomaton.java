@@ -0,0 +1,365 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.LinearOrder;
+import ru.ssu.refa.linear_order_automata.model.Pair;
+import ru.ssu.refa.linear_order_automata.model.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Automaton whose states are the classes of equivalent states of a complete automaton, i.e. of states giving the
+ * same output on every input word. The classes are found by Hopcroft's partition refinement.
+ * <p>
+ * Every linear order of the automaton gives one of the quotient: for fixed output order, the states whose outputs
+ * never exceed those of another state form a total preorder compatible with transitions, and it orders the classes.
+ * So an automaton whose quotient has no linear order has none either. The converse doesn't hold: an order of the
+ * quotient must be {@link #lift(LinearOrder) lifted} by ordering the states inside each class so that the
+ * transitions stay monotone, which may fail even when the automaton has another order.
+ * <p>
+ * Missing transitions and outputs constrain nothing, so the argument above fails for partial automata and they
+ * are not reduced.
+ */
+@Slf4j
+final class QuotientAutomaton {
+    private final DenseAutomaton automaton;
+    private final DenseAutomaton quotient;
+    private final int[] classOf;
+
+    private QuotientAutomaton(DenseAutomaton automaton, DenseAutomaton quotient, int[] classOf) {
+        this.automaton = automaton;
+        this.quotient = quotient;
+        this.classOf = classOf;
+    }
+
+    /**
+     * @return quotient of {@code automaton}, {@code null} if it is partial or has no equivalent states
+     */
+    static QuotientAutomaton of(DenseAutomaton automaton) {
+        int stateCount = automaton.getStateCount();
+        int inputCount = automaton.getInputCount();
+        for (int state = 0; state < stateCount; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                if (automaton.getTargetState(state, input) == DenseAutomaton.NONE
+                        || automaton.getOutputSignal(state, input) == DenseAutomaton.NONE) {
+                    return null;
+                }
+            }
+        }
+
+        int[] blockOf = new Refinement(automaton).run();
+        // number the classes by their first states, the first state of a class represents it
+        int[] classOfBlock = new int[stateCount];
+        Arrays.fill(classOfBlock, -1);
+        int[] classOf = new int[stateCount];
+        List<State> states = new ArrayList<>();
+        List<Integer> representatives = new ArrayList<>();
+        for (int state = 0; state < stateCount; state++) {
+            if (classOfBlock[blockOf[state]] < 0) {
+                classOfBlock[blockOf[state]] = states.size();
+                states.add(automaton.getState(state));
+                representatives.add(state);
+            }
+            classOf[state] = classOfBlock[blockOf[state]];
+        }
+        if (states.size() == stateCount) {
+            return null;
+        }
+
+        int[] transitions = new int[states.size() * inputCount];
+        int[] outputs = new int[states.size() * inputCount];
+        for (int classIndex = 0; classIndex < states.size(); classIndex++) {
+            int representative = representatives.get(classIndex);
+            for (int input = 0; input < inputCount; input++) {
+                transitions[classIndex * inputCount + input] =
+                        classOf[automaton.getTargetState(representative, input)];
+                outputs[classIndex * inputCount + input] = automaton.getOutputSignal(representative, input);
+            }
+        }
+        log.debug("of: {} states fall into {} classes", stateCount, states.size());
+        return new QuotientAutomaton(automaton, new DenseAutomaton(states, automaton.getInputSignals(),
+                automaton.getOutputSignals(), transitions, outputs), classOf);
+    }
+
+    DenseAutomaton getAutomaton() {
+        return quotient;
+    }
+
+    /**
+     * Orders the states class by class as {@code quotientOrder} orders the classes. Inside a class, the states
+     * start in the order of their indices. Two adjacent states whose successors by some input come in the wrong
+     * order require those successors, which are equivalent, to swap; the classes are sorted topologically by all
+     * requirements so far until the transitions are monotone.
+     *
+     * @param quotientOrder linear order of the {@link #getAutomaton() quotient}
+     * @return linear order of the automaton, {@code null} if the requirements become cyclic or don't settle
+     */
+    LinearOrder lift(LinearOrder quotientOrder) {
+        int stateCount = automaton.getStateCount();
+        int inputCount = automaton.getInputCount();
+        int[] classRanks = new int[quotient.getStateCount()];
+        for (Pair<State> pair : quotientOrder.getOrderOnStateSet()) {
+            if (!pair.getLeft().equals(pair.getRight())) {
+                classRanks[quotient.indexOf(pair.getRight())]++;
+            }
+        }
+
+        int[] order = IntStream.range(0, stateCount).boxed()
+                .sorted(Comparator.comparingInt((Integer state) -> classRanks[classOf[state]]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] positions = new int[stateCount];
+        List<List<Integer>> requiredBefore = new ArrayList<>();
+        for (int state = 0; state < stateCount; state++) {
+            requiredBefore.add(new ArrayList<>());
+        }
+        LongHashSet requirements = new LongHashSet();
+        for (int iteration = 0; iteration <= stateCount; iteration++) {
+            for (int i = 0; i < stateCount; i++) {
+                positions[order[i]] = i;
+            }
+            boolean monotone = true;
+            for (int i = 0; i + 1 < stateCount; i++) {
+                for (int input = 0; input < inputCount; input++) {
+                    int left = automaton.getTargetState(order[i], input);
+                    int right = automaton.getTargetState(order[i + 1], input);
+                    if (positions[left] <= positions[right]) {
+                        continue;
+                    }
+                    if (classOf[left] != classOf[right]) {
+                        // the quotient order itself is not monotone
+                        return null;
+                    }
+                    monotone = false;
+                    if (requirements.add((long) left * stateCount + right)) {
+                        requiredBefore.get(right).add(left);
+                    }
+                }
+            }
+            if (monotone) {
+                return LinearOrders.toLinearOrder(automaton, order, quotientOrder.getOrderOnOutputSignalSet());
+            }
+            if (!sortClasses(order, positions, requiredBefore)) {
+                log.debug("lift: states of a class are required in a cyclic order");
+                return null;
+            }
+        }
+        log.debug("lift: order inside classes didn't settle");
+        return null;
+    }
+
+    /**
+     * Sorts each run of states of one class in {@code order} topologically by the requirements, the states free
+     * to go first keep their previous order.
+     *
+     * @return {@code false} if the requirements are cyclic
+     */
+    private boolean sortClasses(int[] order, int[] positions, List<List<Integer>> requiredBefore) {
+        int stateCount = order.length;
+        int[] pendingCounts = new int[stateCount];
+        List<List<Integer>> requiredAfter = new ArrayList<>();
+        for (int state = 0; state < stateCount; state++) {
+            requiredAfter.add(new ArrayList<>());
+        }
+        for (int state = 0; state < stateCount; state++) {
+            pendingCounts[state] = requiredBefore.get(state).size();
+            for (int before : requiredBefore.get(state)) {
+                requiredAfter.get(before).add(state);
+            }
+        }
+
+        int[] sorted = new int[stateCount];
+        int start = 0;
+        while (start < stateCount) {
+            int end = start;
+            while (end < stateCount && classOf[order[end]] == classOf[order[start]]) {
+                end++;
+            }
+            PriorityQueue<Integer> free = new PriorityQueue<>(Comparator.comparingInt(state -> positions[state]));
+            for (int i = start; i < end; i++) {
+                if (pendingCounts[order[i]] == 0) {
+                    free.add(order[i]);
+                }
+            }
+            int next = start;
+            while (!free.isEmpty()) {
+                int state = free.poll();
+                sorted[next++] = state;
+                for (int after : requiredAfter.get(state)) {
+                    if (--pendingCounts[after] == 0) {
+                        free.add(after);
+                    }
+                }
+            }
+            if (next < end) {
+                return false;
+            }
+            start = end;
+        }
+        System.arraycopy(sorted, 0, order, 0, stateCount);
+        return true;
+    }
+
+    /**
+     * Hopcroft's algorithm: blocks start as the states with equal outputs, and a block is split by the
+     * predecessors of a splitter block under an input. Of the two halves of a split block only the smaller one
+     * becomes a splitter, unless the block was a pending splitter already.
+     */
+    private static final class Refinement {
+        private final DenseAutomaton automaton;
+        private final int stateCount;
+        private final int inputCount;
+        private final int[][] predecessorStarts;
+        private final int[][] predecessors;
+        private final int[] elements;
+        private final int[] locations;
+        private final int[] blockOf;
+        private final int[] blockStarts;
+        private final int[] blockEnds;
+        private final int[] markedEnds;
+        private int blockCount;
+        private final boolean[] pending;
+        private final int[] splitters;
+        private int splitterCount;
+
+        Refinement(DenseAutomaton automaton) {
+            this.automaton = automaton;
+            this.stateCount = automaton.getStateCount();
+            this.inputCount = automaton.getInputCount();
+            this.predecessorStarts = new int[inputCount][stateCount + 1];
+            this.predecessors = new int[inputCount][stateCount];
+            for (int input = 0; input < inputCount; input++) {
+                int[] starts = predecessorStarts[input];
+                for (int state = 0; state < stateCount; state++) {
+                    starts[automaton.getTargetState(state, input) + 1]++;
+                }
+                for (int state = 0; state < stateCount; state++) {
+                    starts[state + 1] += starts[state];
+                }
+                int[] next = Arrays.copyOf(starts, stateCount);
+                for (int state = 0; state < stateCount; state++) {
+                    predecessors[input][next[automaton.getTargetState(state, input)]++] = state;
+                }
+            }
+            this.elements = new int[stateCount];
+            this.locations = new int[stateCount];
+            this.blockOf = new int[stateCount];
+            this.blockStarts = new int[stateCount];
+            this.blockEnds = new int[stateCount];
+            this.markedEnds = new int[stateCount];
+            this.pending = new boolean[stateCount * inputCount];
+            this.splitters = new int[stateCount * inputCount];
+        }
+
+        int[] run() {
+            Integer[] byOutputs = IntStream.range(0, stateCount).boxed().toArray(Integer[]::new);
+            Comparator<Integer> outputComparator = (left, right) -> {
+                for (int input = 0; input < inputCount; input++) {
+                    int comparison = Integer.compare(automaton.getOutputSignal(left, input),
+                            automaton.getOutputSignal(right, input));
+                    if (comparison != 0) {
+                        return comparison;
+                    }
+                }
+                return 0;
+            };
+            Arrays.sort(byOutputs, outputComparator);
+            for (int i = 0; i < stateCount; i++) {
+                if (i == 0 || outputComparator.compare(byOutputs[i - 1], byOutputs[i]) != 0) {
+                    if (i > 0) {
+                        blockEnds[blockCount - 1] = i;
+                    }
+                    blockStarts[blockCount] = i;
+                    markedEnds[blockCount] = i;
+                    blockCount++;
+                }
+                elements[i] = byOutputs[i];
+                locations[byOutputs[i]] = i;
+                blockOf[byOutputs[i]] = blockCount - 1;
+            }
+            if (stateCount > 0) {
+                blockEnds[blockCount - 1] = stateCount;
+            }
+            for (int block = 0; block < blockCount; block++) {
+                for (int input = 0; input < inputCount; input++) {
+                    addSplitter(block, input);
+                }
+            }
+
+            int[] members = new int[stateCount];
+            int[] touched = new int[stateCount];
+            while (splitterCount > 0) {
+                int splitter = splitters[--splitterCount];
+                pending[splitter] = false;
+                int block = splitter / inputCount;
+                int input = splitter % inputCount;
+
+                int memberCount = blockEnds[block] - blockStarts[block];
+                System.arraycopy(elements, blockStarts[block], members, 0, memberCount);
+                int touchedCount = 0;
+                for (int i = 0; i < memberCount; i++) {
+                    int target = members[i];
+                    for (int p = predecessorStarts[input][target]; p < predecessorStarts[input][target + 1]; p++) {
+                        int state = predecessors[input][p];
+                        int stateBlock = blockOf[state];
+                        if (locations[state] < markedEnds[stateBlock]) {
+                            continue;
+                        }
+                        if (markedEnds[stateBlock] == blockStarts[stateBlock]) {
+                            touched[touchedCount++] = stateBlock;
+                        }
+                        swap(locations[state], markedEnds[stateBlock]++);
+                    }
+                }
+                for (int i = 0; i < touchedCount; i++) {
+                    split(touched[i]);
+                }
+            }
+            return blockOf;
+        }
+
+        private void split(int block) {
+            int markedEnd = markedEnds[block];
+            markedEnds[block] = blockStarts[block];
+            if (markedEnd == blockEnds[block]) {
+                return;
+            }
+            int newBlock = blockCount++;
+            blockStarts[newBlock] = blockStarts[block];
+            blockEnds[newBlock] = markedEnd;
+            markedEnds[newBlock] = blockStarts[newBlock];
+            blockStarts[block] = markedEnd;
+            markedEnds[block] = markedEnd;
+            for (int i = blockStarts[newBlock]; i < blockEnds[newBlock]; i++) {
+                blockOf[elements[i]] = newBlock;
+            }
+            boolean newIsSmaller = blockEnds[newBlock] - blockStarts[newBlock] <= blockEnds[block] - blockStarts[block];
+            for (int input = 0; input < inputCount; input++) {
+                addSplitter(pending[block * inputCount + input] || newIsSmaller ? newBlock : block, input);
+            }
+        }
+
+        private void addSplitter(int block, int input) {
+            int splitter = block * inputCount + input;
+            if (!pending[splitter]) {
+                pending[splitter] = true;
+                splitters[splitterCount++] = splitter;
+            }
+        }
+
+        private void swap(int first, int second) {
+            int firstState = elements[first];
+            int secondState = elements[second];
+            elements[first] = secondState;
+            elements[second] = firstState;
+            locations[secondState] = first;
+            locations[firstState] = second;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.model.SearchStatistics;
+import ru.ssu.refa.linear_order_automata.model.SearchStatistics.Phase;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the {@link SearchStatistics} of one ordering, possibly from several threads. {@link #DISABLED} is
+ * passed when nobody asked for statistics: every method then returns after a single field test, and
+ * {@link #start()} doesn't read the clock.
+ */
+final class SearchRecorder {
+    private static final Phase[] PHASES = Phase.values();
+
+    static final SearchRecorder DISABLED = new SearchRecorder(false);
+
+    private final boolean enabled;
+    private final LongAdder orbitCalculations = new LongAdder();
+    private final LongAdder orbitCacheHits = new LongAdder();
+    private final LongAdder closureCalls = new LongAdder();
+    private final LongAdder closurePairs = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder[] violations = adders();
+    private final LongAdder[] phaseNanos = adders();
+
+    SearchRecorder() {
+        this(true);
+    }
+
+    private SearchRecorder(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the start of a phase to pass to {@link #stop(Phase, long)}
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Phase phase, long start) {
+        if (enabled) {
+            phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    void orbits(long calculations, long cacheHits) {
+        if (enabled) {
+            orbitCalculations.add(calculations);
+            orbitCacheHits.add(cacheHits);
+        }
+    }
+
+    void closure(int pairCount) {
+        if (enabled) {
+            closureCalls.increment();
+            closurePairs.add(pairCount);
+        }
+    }
+
+    /**
+     * @param depth number of decisions including the one pushed
+     */
+    void step(int depth) {
+        if (enabled) {
+            steps.increment();
+            if (depth > maxDepth.get()) {
+                maxDepth.accumulateAndGet(depth, Math::max);
+            }
+        }
+    }
+
+    void rollback() {
+        if (enabled) {
+            rollbacks.increment();
+        }
+    }
+
+    void violation(Phase phase) {
+        if (enabled) {
+            violations[phase.ordinal()].increment();
+        }
+    }
+
+    SearchStatistics getStatistics() {
+        return new SearchStatistics(orbitCalculations.sum(), orbitCacheHits.sum(), closureCalls.sum(),
+                closurePairs.sum(), steps.sum(), rollbacks.sum(), maxDepth.get(), sums(violations),
+                sums(phaseNanos));
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[PHASES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Map<Phase, Long> sums(LongAdder[] adders) {
+        Map<Phase, Long> sums = new EnumMap<>(Phase.class);
+        for (Phase phase : PHASES) {
+            sums.put(phase, adders[phase.ordinal()].sum());
+        }
+        return sums;
+    }
+}
@@ -8,8 +8,7 @@ import ru.ssu.refa.linear_order_automata.service.IAutomataUtilsService;
 
 import java.util.*;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class AutomataUtilsServiceTest {
 
@@ -314,4 +313,197 @@ public class AutomataUtilsServiceTest {
         expectedResult.add(new Pair<>(state6, state6));
         assertEquals(expectedResult, automataUtilsService.getTransitiveClosure(set, elements));
     }
+
+    @Test
+    public void getTransitiveClosure_bitRelation_negative() {
+        BitRelation relation = new BitRelation(4);
+        relation.add(0, 1);
+        relation.add(0, 2);
+        relation.add(1, 2);
+        relation.add(2, 0);
+        relation.add(2, 3);
+        relation.add(3, 3);
+        assertThrows(SymmetricRelationException.class, () -> automataUtilsService.getTransitiveClosure(relation));
+    }
+
+    @Test
+    public void getTransitiveClosure_bitRelation_positive() throws SymmetricRelationException {
+        BitRelation relation = new BitRelation(6);
+        relation.add(0, 1);
+        relation.add(1, 2);
+        relation.add(2, 5);
+        relation.add(3, 4);
+        relation.add(4, 2);
+        BitRelation expectedResult = BitRelation.identity(6);
+        expectedResult.add(0, 1);
+        expectedResult.add(1, 2);
+        expectedResult.add(2, 5);
+        expectedResult.add(3, 4);
+        expectedResult.add(4, 2);
+        expectedResult.add(0, 2);
+        expectedResult.add(0, 5);
+        expectedResult.add(1, 5);
+        expectedResult.add(3, 2);
+        expectedResult.add(3, 5);
+        expectedResult.add(4, 5);
+        assertEquals(expectedResult, automataUtilsService.getTransitiveClosure(relation));
+        assertEquals(17, automataUtilsService.getTransitiveClosure(relation).getCount());
+    }
+
+    @Test
+    public void revertRelation_bitRelation() {
+        BitRelation relation = new BitRelation(70);
+        relation.add(0, 65);
+        relation.add(69, 1);
+        relation.add(3, 3);
+        BitRelation reverted = automataUtilsService.revertRelation(relation);
+        assertEquals(3, reverted.getCount());
+        assertTrue(reverted.contains(65, 0));
+        assertTrue(reverted.contains(1, 69));
+        assertTrue(reverted.contains(3, 3));
+        assertFalse(reverted.contains(0, 65));
+        assertEquals(relation, reverted.reverse());
+    }
+
+    @Test
+    public void updateTransitiveClosure_positive() throws SymmetricRelationException {
+        BitRelation relation = new BitRelation(6);
+        relation.add(0, 1);
+        relation.add(3, 4);
+        TransitiveClosure closure = new TransitiveClosure(automataUtilsService.getTransitiveClosure(relation));
+
+        automataUtilsService.updateTransitiveClosure(closure, new long[]{1 * 6 + 2, 2 * 6 + 5, 4 * 6 + 2}, false);
+
+        relation.add(1, 2);
+        relation.add(2, 5);
+        relation.add(4, 2);
+        assertEquals(automataUtilsService.getTransitiveClosure(relation), closure.getRelation());
+    }
+
+    @Test
+    public void updateTransitiveClosure_reverted() throws SymmetricRelationException {
+        TransitiveClosure closure = new TransitiveClosure(BitRelation.identity(3));
+
+        automataUtilsService.updateTransitiveClosure(closure, new long[]{1 * 3 + 0, 2 * 3 + 1}, true);
+
+        assertTrue(closure.contains(0, 2));
+        assertFalse(closure.contains(2, 0));
+        assertEquals(6, closure.getCount());
+    }
+
+    @Test
+    public void updateTransitiveClosure_negative() throws SymmetricRelationException {
+        BitRelation relation = new BitRelation(4);
+        relation.add(0, 1);
+        relation.add(1, 2);
+        relation.add(2, 3);
+        TransitiveClosure closure = new TransitiveClosure(automataUtilsService.getTransitiveClosure(relation));
+
+        assertThrows(SymmetricRelationException.class, () ->
+                automataUtilsService.updateTransitiveClosure(closure, new long[]{3 * 4 + 0}, false));
+        assertFalse(closure.contains(3, 0));
+    }
+
+    @Test
+    public void tryUpdateTransitiveClosure_returnsViolation() {
+        TransitiveClosure closure = new TransitiveClosure(BitRelation.identity(4));
+
+        assertEquals(IAutomataUtilsService.NO_VIOLATION,
+                automataUtilsService.tryUpdateTransitiveClosure(closure, new long[]{0 * 4 + 1, 1 * 4 + 2}, false));
+        assertEquals(0 * 4 + 2, automataUtilsService.tryUpdateTransitiveClosure(closure,
+                new long[]{3 * 4 + 1, 0 * 4 + 2}, true));
+        // pairs before the violating one stay added
+        assertTrue(closure.contains(1, 3));
+        assertFalse(closure.contains(2, 0));
+    }
+
+    @Test
+    public void updateTransitiveClosure_rollback() throws SymmetricRelationException {
+        TransitiveClosure closure = new TransitiveClosure(BitRelation.identity(70));
+        automataUtilsService.updateTransitiveClosure(closure, new long[]{0 * 70 + 1}, false);
+        BitRelation expectedOuter = closure.getRelation().copy();
+
+        int outer = closure.mark();
+        automataUtilsService.updateTransitiveClosure(closure, new long[]{1 * 70 + 65, 65 * 70 + 2}, false);
+        BitRelation expectedInner = closure.getRelation().copy();
+        int inner = closure.mark();
+        automataUtilsService.updateTransitiveClosure(closure, new long[]{2 * 70 + 69, 3 * 70 + 0}, false);
+        assertTrue(closure.contains(3, 69));
+
+        closure.rollback(inner);
+        assertEquals(expectedInner, closure.getRelation());
+        automataUtilsService.updateTransitiveClosure(closure, new long[]{69 * 70 + 0}, false);
+        closure.rollback(outer);
+        assertEquals(expectedOuter, closure.getRelation());
+        assertEquals(0, closure.getTrailSize());
+        // the reverse relation is restored as well, so (1, 0) still closes a cycle
+        assertThrows(SymmetricRelationException.class, () ->
+                automataUtilsService.updateTransitiveClosure(closure, new long[]{1 * 70 + 0}, false));
+    }
+
+    @Test
+    public void updateTransitiveClosure_rollback_random() {
+        Random random = new Random(3);
+        int size = 90;
+        TransitiveClosure closure = new TransitiveClosure(BitRelation.identity(size));
+        Deque<Integer> marks = new ArrayDeque<>();
+        Deque<BitRelation> snapshots = new ArrayDeque<>();
+        for (int i = 0; i < 2000; i++) {
+            if (!marks.isEmpty() && random.nextInt(3) == 0) {
+                closure.rollback(marks.pop());
+                assertEquals(snapshots.pop(), closure.getRelation());
+                continue;
+            }
+            marks.push(closure.mark());
+            snapshots.push(closure.getRelation().copy());
+            int pairCount = 1 + random.nextInt(4);
+            for (int j = 0; j < pairCount; j++) {
+                int left = random.nextInt(size);
+                int right = random.nextInt(size);
+                BitRelation before = closure.getRelation().copy();
+                if (!closure.add(left, right)) {
+                    assertEquals(before, closure.getRelation());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void getAddedMark_random() {
+        Random random = new Random(4);
+        int size = 90;
+        TransitiveClosure closure = new TransitiveClosure(BitRelation.identity(size));
+        closure.add(0, 1);
+        List<Integer> marks = new ArrayList<>();
+        List<BitRelation> snapshots = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            if (!marks.isEmpty() && random.nextInt(3) == 0) {
+                closure.rollback(marks.remove(marks.size() - 1));
+                snapshots.remove(snapshots.size() - 1);
+            } else {
+                marks.add(closure.mark());
+                snapshots.add(closure.getRelation().copy());
+                for (int j = 0; j < 1 + random.nextInt(4); j++) {
+                    closure.add(random.nextInt(size), random.nextInt(size));
+                }
+            }
+
+            for (int j = 0; j < 20; j++) {
+                int left = random.nextInt(size);
+                int right = random.nextInt(size);
+                if (!closure.contains(left, right)) {
+                    continue;
+                }
+                // the pair was added on the innermost level whose relation didn't have it yet
+                int expected = -1;
+                for (int level = snapshots.size() - 1; level >= 0; level--) {
+                    if (!snapshots.get(level).contains(left, right)) {
+                        expected = marks.get(level);
+                        break;
+                    }
+                }
+                assertEquals(expected, closure.getAddedMark(left, right));
+            }
+        }
+    }
 }
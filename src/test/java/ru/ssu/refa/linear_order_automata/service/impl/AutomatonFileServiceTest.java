@@ -0,0 +1,107 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class AutomatonFileServiceTest {
+
+    private final AutomatonFileService automatonFileService = new AutomatonFileService();
+
+    private Path path;
+
+    @BeforeEach
+    public void createFile() throws IOException {
+        path = Files.createTempFile("automaton", ".bin");
+    }
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void read_sameAsWritten() throws IOException {
+        AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+        AutomataOrderingService orderingService = new AutomataOrderingService(automataUtilsService);
+        Random random = new Random(109);
+        for (int i = 0; i < 100; i++) {
+            DenseAutomaton automaton = randomPartialAutomaton(random, 1 + random.nextInt(8), 1 + random.nextInt(3),
+                    1 + random.nextInt(3));
+            automatonFileService.write(automaton, path);
+
+            DenseAutomaton read = automatonFileService.read(path);
+
+            assertEquals(automaton.getStates(), read.getStates());
+            assertEquals(automaton.getInputSignals(), read.getInputSignals());
+            assertEquals(automaton.getOutputSignals(), read.getOutputSignals());
+            for (int state = 0; state < automaton.getStateCount(); state++) {
+                for (int input = 0; input < automaton.getInputCount(); input++) {
+                    assertEquals(automaton.getTargetState(state, input), read.getTargetState(state, input));
+                    assertEquals(automaton.getOutputSignal(state, input), read.getOutputSignal(state, input));
+                }
+            }
+            LinearOrder expected = orderingService.orderAutomaton(automaton);
+            LinearOrder linearOrder = orderingService.orderAutomaton(read);
+            assertEquals(expected.isResolution(), linearOrder.isResolution());
+            assertEquals(expected.getOrderOnStateSet(), linearOrder.getOrderOnStateSet());
+            assertEquals(expected.getOrderOnOutputSignalSet(), linearOrder.getOrderOnOutputSignalSet());
+        }
+        orderingService.shutdown();
+    }
+
+    @Test
+    public void read_keepsLabelsAndNames() throws IOException {
+        DenseAutomaton automaton = new DenseAutomaton(Arrays.asList(new State(-7), new State(3), new State(40)),
+                Collections.singletonList(new InputSignal("вход")),
+                Arrays.asList(new OutputSignal(""), new OutputSignal("выход")),
+                new int[]{2, DenseAutomaton.NONE, 0}, new int[]{DenseAutomaton.NONE, 1, 0});
+        automatonFileService.write(automaton, path);
+
+        DenseAutomaton read = automatonFileService.read(path);
+
+        assertEquals(1, read.indexOf(new State(3)));
+        assertEquals(new State(40), read.getState(read.getTargetState(0, 0)));
+        assertEquals(DenseAutomaton.NONE, read.getTargetState(1, 0));
+        assertEquals(DenseAutomaton.NONE, read.getOutputSignal(0, 0));
+        assertEquals("выход", read.getOutput(read.getOutputSignal(1, 0)).getName());
+        assertEquals("вход", read.getInputSignals().get(0).getName());
+    }
+
+    @Test
+    public void read_rejectsMalformedFile() throws IOException {
+        automatonFileService.write(randomPartialAutomaton(new Random(113), 4, 2, 2), path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(MalformedAutomatonException.class, () -> automatonFileService.read(path));
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] = 'X';
+        Files.write(path, badMagic);
+        assertThrows(MalformedAutomatonException.class, () -> automatonFileService.read(path));
+
+        ByteBuffer badTarget = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        // the first transition follows the header of 6 ints and the 4 labels
+        badTarget.putInt(10 * Integer.BYTES, 4);
+        Files.write(path, badTarget.array());
+        assertThrows(MalformedAutomatonException.class, () -> automatonFileService.read(path));
+
+        ByteBuffer unorderedLabels = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        unorderedLabels.putInt(6 * Integer.BYTES, 2);
+        Files.write(path, unorderedLabels.array());
+        assertThrows(MalformedAutomatonException.class, () -> automatonFileService.read(path));
+    }
+}
@@ -0,0 +1,196 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.exception.MalformedAutomatonException;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IParseProgressListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AutomatonParserServiceTest {
+
+    private final AutomatonParserService automatonParserService = new AutomatonParserService();
+
+    @Test
+    public void parse_sameAsDenseAutomaton() throws IOException {
+        Random random = new Random(127);
+        for (int i = 0; i < 100; i++) {
+            boolean partial = random.nextBoolean();
+            Automaton automaton = randomAutomaton(random, 1 + random.nextInt(8), 1 + random.nextInt(3),
+                    1 + random.nextInt(3), partial);
+            DenseAutomaton expected = DenseAutomaton.of(automaton);
+
+            assertSameTables(expected, automatonParserService.parseJson(json(automaton, random), partial,
+                    IParseProgressListener.NONE));
+            assertSameTables(expected, automatonParserService.parseText(new StringReader(text(automaton, random)),
+                    partial, IParseProgressListener.NONE));
+        }
+    }
+
+    @Test
+    public void parse_rejectsIncompleteUnlessPartial() throws IOException {
+        String text = "states 1 2\ninputs a\noutputs x\n1 a 2 x\n2 a - x\n";
+
+        MalformedAutomatonException e = assertThrows(MalformedAutomatonException.class,
+                () -> automatonParserService.parseText(new StringReader(text), false, IParseProgressListener.NONE));
+        assertTrue(e.getMessage().contains("the first from 2 on a"), e.getMessage());
+
+        DenseAutomaton automaton = automatonParserService.parseText(new StringReader(text), true,
+                IParseProgressListener.NONE);
+        assertEquals(DenseAutomaton.NONE, automaton.getTargetState(1, 0));
+        assertEquals(0, automaton.getOutputSignal(1, 0));
+    }
+
+    @Test
+    public void parse_rejectsMalformedInput() {
+        List<String> texts = Arrays.asList(
+                "1 a 1 x\nstates 1\ninputs a\noutputs x\n",
+                "states 1\ninputs a\noutputs x\n1 a 2 x\n",
+                "states 1\ninputs a\noutputs x\n1 b 1 x\n",
+                "states 1\ninputs a\noutputs x\n1 a 1 y\n",
+                "states 1\ninputs a\noutputs x\n1 a 1 x\n1 a 1 x\n",
+                "states 1\ninputs a\noutputs x\n1 a - -\n1 a 1 x\n",
+                "states 1 1\ninputs a\noutputs x\n",
+                "states 1\ninputs a a\noutputs x\n",
+                "states one\ninputs a\noutputs x\n",
+                "states 1\ninputs a\noutputs x\n1 a 1\n");
+        for (String text : texts) {
+            assertThrows(MalformedAutomatonException.class, () -> automatonParserService.parseText(
+                    new StringReader(text), true, IParseProgressListener.NONE), text);
+        }
+        List<String> jsons = Arrays.asList(
+                "[]",
+                "{\"states\": [1], \"inputSignals\": [\"a\"], \"outputSignals\": [\"x\"], \"transitions\": "
+                        + "[{\"state\": 1, \"input\": \"a\", \"target\": 2, \"output\": \"x\"}]}",
+                "{\"states\": [1], \"inputSignals\": [\"a\"], \"outputSignals\": [\"x\"], \"transitions\": "
+                        + "[{\"input\": \"a\", \"target\": 1, \"output\": \"x\"}]}",
+                "{\"states\": [\"1\"], \"inputSignals\": [\"a\"], \"outputSignals\": [\"x\"]}",
+                "{\"states\": [1], \"inputSignals\": [\"a\"], \"outputSignals\": [\"x\"], \"transitions\": [");
+        for (String json : jsons) {
+            assertThrows(MalformedAutomatonException.class, () -> automatonParserService.parseJson(
+                    new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), true,
+                    IParseProgressListener.NONE), json);
+        }
+    }
+
+    @Test
+    public void parse_reportsProgress() throws IOException {
+        Random random = new Random(131);
+        Automaton automaton = randomAutomaton(random, 400, 400, 2, false);
+        List<long[]> progress = new ArrayList<>();
+
+        automatonParserService.parseJson(json(automaton, random), false,
+                (transitions, expectedTransitions) -> progress.add(new long[]{transitions, expectedTransitions}));
+
+        assertTrue(progress.size() > 1);
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i)[0] >= progress.get(i - 1)[0]);
+        }
+        assertArrayEquals(new long[]{160_000, 160_000}, progress.get(progress.size() - 1));
+    }
+
+    private static void assertSameTables(DenseAutomaton expected, DenseAutomaton automaton) {
+        assertEquals(expected.getStates(), automaton.getStates());
+        assertEquals(expected.getInputSignals(), automaton.getInputSignals());
+        assertEquals(expected.getOutputSignals(), automaton.getOutputSignals());
+        for (int state = 0; state < expected.getStateCount(); state++) {
+            for (int input = 0; input < expected.getInputCount(); input++) {
+                assertEquals(expected.getTargetState(state, input), automaton.getTargetState(state, input));
+                assertEquals(expected.getOutputSignal(state, input), automaton.getOutputSignal(state, input));
+            }
+        }
+    }
+
+    /**
+     * States are declared out of order and transitions are listed in a random order, with their fields too.
+     */
+    private static ByteArrayInputStream json(Automaton automaton, Random random) {
+        StringBuilder json = new StringBuilder("{\"ignored\": {\"states\": [0]}, \"states\": [");
+        List<State> states = new ArrayList<>(automaton.getStates());
+        Collections.shuffle(states, random);
+        json.append(states.stream().map(State::toString).reduce((a, b) -> a + ", " + b).orElse(""));
+        json.append("], \"inputSignals\": [");
+        json.append(automaton.getInputSignals().stream().map(signal -> "\"" + signal + "\"")
+                .reduce((a, b) -> a + ", " + b).orElse(""));
+        json.append("], \"outputSignals\": [");
+        json.append(automaton.getOutputSignals().stream().map(signal -> "\"" + signal + "\"")
+                .reduce((a, b) -> a + ", " + b).orElse(""));
+        json.append("], \"transitions\": [");
+        List<String> transitions = new ArrayList<>();
+        for (State state : automaton.getStates()) {
+            for (InputSignal inputSignal : automaton.getInputSignals()) {
+                State target = automaton.getTargetState(state, inputSignal);
+                OutputSignal output = automaton.getOutputSignal(state, inputSignal);
+                List<String> fields = new ArrayList<>(Arrays.asList("\"state\": " + state,
+                        "\"input\": \"" + inputSignal + "\"", "\"target\": " + target));
+                if (output != null || random.nextBoolean()) {
+                    fields.add("\"output\": " + (output == null ? "null" : "\"" + output + "\""));
+                }
+                Collections.shuffle(fields, random);
+                transitions.add("{" + String.join(", ", fields) + "}");
+            }
+        }
+        Collections.shuffle(transitions, random);
+        json.append(String.join(", ", transitions)).append("]}");
+        return new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(Automaton automaton, Random random) {
+        StringBuilder text = new StringBuilder("# generated\nstates");
+        automaton.getStates().forEach(state -> text.append(' ').append(state));
+        text.append("\n\ninputs");
+        automaton.getInputSignals().forEach(signal -> text.append(' ').append(signal));
+        text.append("\noutputs");
+        automaton.getOutputSignals().forEach(signal -> text.append(' ').append(signal));
+        text.append('\n');
+        List<String> transitions = new ArrayList<>();
+        for (State state : automaton.getStates()) {
+            for (InputSignal inputSignal : automaton.getInputSignals()) {
+                State target = automaton.getTargetState(state, inputSignal);
+                OutputSignal output = automaton.getOutputSignal(state, inputSignal);
+                transitions.add(state + "\t" + inputSignal + "  " + (target == null ? "-" : target) + " "
+                        + (output == null ? "-" : output));
+            }
+        }
+        Collections.shuffle(transitions, random);
+        transitions.forEach(transition -> text.append(transition).append('\n'));
+        return text.toString();
+    }
+
+    private static Automaton randomAutomaton(Random random, int stateCount, int inputCount, int outputCount,
+                                             boolean partial) {
+        List<State> states = new ArrayList<>();
+        for (int i = 0; i < stateCount; i++) {
+            states.add(new State(i * 3 - 5));
+        }
+        List<InputSignal> inputSignals = new ArrayList<>();
+        for (int i = 0; i < inputCount; i++) {
+            inputSignals.add(new InputSignal("x" + i));
+        }
+        List<OutputSignal> outputSignals = new ArrayList<>();
+        for (int i = 0; i < outputCount; i++) {
+            outputSignals.add(new OutputSignal("y" + i));
+        }
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        for (State state : states) {
+            for (InputSignal inputSignal : inputSignals) {
+                if (!partial || random.nextInt(5) != 0) {
+                    transitions.computeIfAbsent(state, s -> new HashMap<>())
+                            .put(inputSignal, states.get(random.nextInt(stateCount)));
+                }
+                if (!partial || random.nextInt(5) != 0) {
+                    outputs.computeIfAbsent(state, s -> new HashMap<>())
+                            .put(inputSignal, outputSignals.get(random.nextInt(outputCount)));
+                }
+            }
+        }
+        return new Automaton(states, inputSignals, outputSignals, transitions, outputs);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class BackjumpingSearchTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService chronologicalService = new AutomataOrderingService(automataUtilsService,
+            ForkJoinPool.commonPool(), searchProperties(AutomataProperties.Search.Mode.CHRONOLOGICAL, 1024, 64));
+    private final AutomataOrderingService backjumpingService = new AutomataOrderingService(automataUtilsService,
+            ForkJoinPool.commonPool(), searchProperties(AutomataProperties.Search.Mode.BACKJUMPING, 1024, 64));
+
+    @Test
+    public void orderAutomaton_sameAsChronological() {
+        Random random = new Random(5);
+        int resolutions = 0;
+        int rejections = 0;
+        for (int i = 0; i < 500; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(9), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+
+            LinearOrder expected = chronologicalService.orderAutomaton(automaton);
+            LinearOrder linearOrder = backjumpingService.orderAutomaton(automaton);
+
+            assertSameResult(expected, linearOrder);
+            if (expected.isResolution()) {
+                resolutions++;
+            } else {
+                rejections++;
+            }
+        }
+        assertTrue(resolutions > 0);
+        assertTrue(rejections > 0);
+    }
+
+    @Test
+    public void orderAutomaton_smallNogoodLimits() {
+        AutomataOrderingService boundedService = new AutomataOrderingService(automataUtilsService,
+                ForkJoinPool.commonPool(), searchProperties(AutomataProperties.Search.Mode.BACKJUMPING, 2, 3));
+        Random random = new Random(17);
+        for (int i = 0; i < 300; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(9), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+
+            assertSameResult(chronologicalService.orderAutomaton(automaton),
+                    boundedService.orderAutomaton(automaton));
+        }
+    }
+
+    @Test
+    public void orderAutomaton_chain() {
+        int size = 40;
+        int[] transitions = new int[size * 2];
+        int[] outputs = new int[size * 2];
+        for (int state = 0; state < size; state++) {
+            transitions[state * 2] = Math.min(state + 1, size - 1);
+            transitions[state * 2 + 1] = Math.min(state + 2, size - 1);
+            outputs[state * 2] = state / 10;
+            outputs[state * 2 + 1] = state / 20;
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(size),
+                Arrays.asList(new InputSignal("a"), new InputSignal("b")),
+                Arrays.asList(new OutputSignal("w"), new OutputSignal("x"), new OutputSignal("y"),
+                        new OutputSignal("z")),
+                transitions, outputs);
+
+        LinearOrder linearOrder = backjumpingService.orderAutomaton(automaton);
+
+        assertTrue(linearOrder.isResolution());
+        assertSameResult(chronologicalService.orderAutomaton(automaton), linearOrder);
+    }
+
+    private static void assertSameResult(LinearOrder expected, LinearOrder linearOrder) {
+        assertEquals(expected.isResolution(), linearOrder.isResolution());
+        assertEquals(expected.getReason(), linearOrder.getReason());
+        assertEquals(expected.getOrderOnStateSet(), linearOrder.getOrderOnStateSet());
+        assertEquals(expected.getOrderOnOutputSignalSet(), linearOrder.getOrderOnOutputSignalSet());
+    }
+
+    private static AutomataProperties searchProperties(AutomataProperties.Search.Mode mode, int nogoodLimit,
+                                                       int nogoodMaxSize) {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getSearch().setMode(mode);
+        properties.getSearch().setNogoodLimit(nogoodLimit);
+        properties.getSearch().setNogoodMaxSize(nogoodMaxSize);
+        return properties;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class CanonicalOrderCacheTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService searchingService = new AutomataOrderingService(automataUtilsService);
+
+    @Test
+    public void canonize_sameCodeForRelabelledAutomata() {
+        Random random = new Random(47);
+        for (int i = 0; i < 200; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(10), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+            DenseAutomaton relabelled = relabel(automaton, random);
+
+            AutomatonCanonizer.Canonization canonization = AutomatonCanonizer.canonize(automaton, 10_000);
+            AutomatonCanonizer.Canonization relabelledCanonization = AutomatonCanonizer.canonize(relabelled, 10_000);
+
+            assertNotNull(canonization);
+            assertArrayEquals(canonization.getCode(), relabelledCanonization.getCode());
+        }
+    }
+
+    @Test
+    public void canonize_differentCodeForDifferentAutomata() {
+        // the same shape, but only the second automaton outputs different signals in its two states
+        DenseAutomaton automaton = new DenseAutomaton(states(2), Collections.singletonList(new InputSignal("a")),
+                Arrays.asList(new OutputSignal("x"), new OutputSignal("y")), new int[]{1, 0}, new int[]{0, 0});
+        DenseAutomaton other = new DenseAutomaton(states(2), Collections.singletonList(new InputSignal("a")),
+                Arrays.asList(new OutputSignal("x"), new OutputSignal("y")), new int[]{1, 0}, new int[]{0, 1});
+
+        assertFalse(Arrays.equals(AutomatonCanonizer.canonize(automaton, 10_000).getCode(),
+                AutomatonCanonizer.canonize(other, 10_000).getCode()));
+    }
+
+    @Test
+    public void orderAutomaton_relabelledAutomataHitCache() {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getCache().setCapacity(1 << 20);
+        AutomataOrderingService cachingService = new AutomataOrderingService(automataUtilsService,
+                ForkJoinPool.commonPool(), properties);
+
+        Random random = new Random(53);
+        for (int i = 0; i < 100; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(8), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+            LinearOrder expected = searchingService.orderAutomaton(automaton);
+            cachingService.orderAutomaton(automaton);
+            int cachedOrderCount = cachingService.getCachedOrderCount();
+
+            for (int j = 0; j < 3; j++) {
+                DenseAutomaton relabelled = relabel(automaton, random);
+                LinearOrder linearOrder = cachingService.orderAutomaton(relabelled);
+
+                assertEquals(cachedOrderCount, cachingService.getCachedOrderCount());
+                assertEquals(expected.isResolution(), linearOrder.isResolution());
+                if (linearOrder.isResolution()) {
+                    assertOrdersAutomaton(relabelled, linearOrder);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void orderAutomaton_evictsLeastRecentlyUsed() {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getCache().setCapacity(1);
+        AutomataOrderingService cachingService = new AutomataOrderingService(automataUtilsService,
+                ForkJoinPool.commonPool(), properties);
+
+        Random random = new Random(59);
+        for (int i = 0; i < 10; i++) {
+            cachingService.orderAutomaton(randomAutomaton(random, 3 + i, 2, 2));
+        }
+
+        assertEquals(1, cachingService.getCachedOrderCount());
+    }
+
+    private static DenseAutomaton relabel(DenseAutomaton automaton, Random random) {
+        int stateCount = automaton.getStateCount();
+        int inputCount = automaton.getInputCount();
+        int outputCount = automaton.getOutputCount();
+        int[] states = permutation(stateCount, random);
+        int[] inputs = permutation(inputCount, random);
+        int[] outputs = permutation(outputCount, random);
+
+        List<State> stateList = new ArrayList<>();
+        for (int i = 0; i < stateCount; i++) {
+            stateList.add(new State(100 + i));
+        }
+        List<InputSignal> inputSignals = new ArrayList<>();
+        for (int i = 0; i < inputCount; i++) {
+            inputSignals.add(new InputSignal("a" + i));
+        }
+        List<OutputSignal> outputSignals = new ArrayList<>();
+        for (int i = 0; i < outputCount; i++) {
+            outputSignals.add(new OutputSignal("b" + i));
+        }
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputSignalIndices = new int[stateCount * inputCount];
+        for (int state = 0; state < stateCount; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                int slot = states[state] * inputCount + inputs[input];
+                transitions[slot] = states[automaton.getTargetState(state, input)];
+                outputSignalIndices[slot] = outputs[automaton.getOutputSignal(state, input)];
+            }
+        }
+        return new DenseAutomaton(stateList, inputSignals, outputSignals, transitions, outputSignalIndices);
+    }
+
+    private static int[] permutation(int size, Random random) {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            elements.add(i);
+        }
+        Collections.shuffle(elements, random);
+        return elements.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,138 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chain shaped automata and relations. Linear orders over long chains used to overflow the thread stack in the
+ * recursive closure and topological sort.
+ */
+public class ChainAutomataTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService automataOrderingService = new AutomataOrderingService(automataUtilsService);
+
+    @Test
+    public void orderAutomaton_chain() {
+        for (int size : new int[]{2, 10, 100, 250}) {
+            List<State> states = new ArrayList<>();
+            List<OutputSignal> outputSignals = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                states.add(new State(i));
+                outputSignals.add(new OutputSignal("y" + i));
+            }
+            // labels are declared in reverse order, the result must not depend on it
+            Collections.reverse(states);
+            InputSignal inputSignal = new InputSignal("a");
+
+            Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+            Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                State state = new State(i);
+                transitions.put(state, Collections.singletonMap(inputSignal, new State(Math.min(i + 1, size - 1))));
+                outputs.put(state, Collections.singletonMap(inputSignal, new OutputSignal("y" + i)));
+            }
+            Automaton automaton = new Automaton(states, Collections.singletonList(inputSignal), outputSignals,
+                    transitions, outputs);
+
+            LinearOrder linearOrder = automataOrderingService.orderAutomaton(automaton);
+
+            Set<Pair<State>> expectedOrderOnStates = new HashSet<>();
+            Set<Pair<OutputSignal>> expectedOrderOnOutputs = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                for (int j = i; j < size; j++) {
+                    expectedOrderOnStates.add(new Pair<>(new State(i), new State(j)));
+                    expectedOrderOnOutputs.add(new Pair<>(new OutputSignal("y" + i), new OutputSignal("y" + j)));
+                }
+            }
+            assertTrue(linearOrder.isResolution());
+            assertEquals(expectedOrderOnStates, linearOrder.getOrderOnStateSet());
+            assertEquals(expectedOrderOnOutputs, linearOrder.getOrderOnOutputSignalSet());
+        }
+    }
+
+    @Test
+    public void getTransitiveClosure_chain() throws SymmetricRelationException {
+        int size = 10_000;
+        BitRelation relation = new BitRelation(size);
+        for (int i = 0; i + 1 < size; i++) {
+            relation.add(i, i + 1);
+        }
+
+        BitRelation closure = automataUtilsService.getTransitiveClosure(relation);
+
+        assertEquals((long) size * (size + 1) / 2, closure.getCount());
+        assertTrue(closure.contains(0, size - 1));
+        assertFalse(closure.contains(size - 1, 0));
+        assertTrue(automataUtilsService.isOrderConstructed(closure));
+    }
+
+    @Test
+    public void getTransitiveClosure_chain_negative() {
+        int size = 10_000;
+        BitRelation relation = new BitRelation(size);
+        for (int i = 0; i + 1 < size; i++) {
+            relation.add(i, i + 1);
+        }
+        relation.add(size - 1, 0);
+
+        assertThrows(SymmetricRelationException.class, () -> automataUtilsService.getTransitiveClosure(relation));
+    }
+
+    @Test
+    public void getTransitiveClosure_chain_pairs() throws SymmetricRelationException {
+        int size = 1_000;
+        List<State> states = new ArrayList<>();
+        Set<Pair<State>> relation = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            states.add(new State(i));
+        }
+        for (int i = 0; i + 1 < size; i++) {
+            relation.add(new Pair<>(states.get(i), states.get(i + 1)));
+        }
+
+        Set<Pair<State>> closure = automataUtilsService.getTransitiveClosure(relation, states);
+
+        assertEquals(size * (size + 1) / 2, closure.size());
+        assertEquals(closure, automataUtilsService.doTopologicalSort(states, relation));
+    }
+
+    @Test
+    public void topologicalOrder_chain() {
+        int size = 1_000_000;
+        int[] sources = new int[size - 1];
+        int[] targets = new int[size - 1];
+        for (int i = 0; i + 1 < size; i++) {
+            sources[i] = i;
+            targets[i] = i + 1;
+        }
+
+        int[] order = IntDigraph.of(size, sources, targets, size - 1).topologicalOrder();
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(i, order[i]);
+        }
+    }
+
+    @Test
+    public void topologicalOrder_reversedChain() {
+        int size = 1_000_000;
+        int[] sources = new int[size - 1];
+        int[] targets = new int[size - 1];
+        for (int i = 0; i + 1 < size; i++) {
+            sources[i] = i + 1;
+            targets[i] = i;
+        }
+
+        int[] order = IntDigraph.of(size, sources, targets, size - 1).topologicalOrder();
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(size - 1 - i, order[i]);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class ComponentDecompositionTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService searchingService = new AutomataOrderingService(automataUtilsService);
+    private final AutomataOrderingService decomposingService = new AutomataOrderingService(automataUtilsService,
+            ForkJoinPool.commonPool(), decompositionProperties());
+
+    @Test
+    public void of_splitsDisconnectedStates() {
+        // 0 and 2 swap, 1 and 3 stay
+        DenseAutomaton automaton = new DenseAutomaton(states(4), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), new int[]{2, 1, 0, 3}, new int[4]);
+        DenseAutomaton connected = new DenseAutomaton(states(3), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), new int[]{1, 2, 2}, new int[3]);
+
+        ComponentDecomposition decomposition = ComponentDecomposition.of(automataUtilsService, automaton);
+
+        assertNotNull(decomposition);
+        assertEquals(Arrays.asList(Arrays.asList(new State(0), new State(2)),
+                Collections.singletonList(new State(1)), Collections.singletonList(new State(3))),
+                decomposition.getComponents().stream().map(DenseAutomaton::getStates).collect(Collectors.toList()));
+        assertArrayEquals(new int[]{1, 0}, new int[]{decomposition.getComponents().get(0).getTargetState(0, 0),
+                decomposition.getComponents().get(0).getTargetState(1, 0)});
+        assertNull(ComponentDecomposition.of(automataUtilsService, connected));
+    }
+
+    @Test
+    public void orderAutomaton_sameResolution() {
+        Random random = new Random(67);
+        int merged = 0;
+        for (int i = 0; i < 300; i++) {
+            int outputCount = 1 + random.nextInt(3);
+            List<DenseAutomaton> parts = new ArrayList<>();
+            for (int part = 0; part < 2 + random.nextInt(2); part++) {
+                parts.add(randomAutomaton(random, 1 + random.nextInt(4), 2, outputCount));
+            }
+            DenseAutomaton automaton = union(parts);
+
+            LinearOrder expected = searchingService.orderAutomaton(automaton);
+            LinearOrder linearOrder = decomposingService.orderAutomaton(automaton);
+
+            assertEquals(expected.isResolution(), linearOrder.isResolution());
+            if (linearOrder.isResolution()) {
+                assertOrdersAutomaton(automaton, linearOrder);
+                ComponentDecomposition decomposition = ComponentDecomposition.of(automataUtilsService, automaton);
+                if (decomposition != null && decomposition.merge(decomposition.getComponents().stream()
+                        .map(searchingService::orderAutomaton).collect(Collectors.toList())) != null) {
+                    merged++;
+                }
+            }
+        }
+        assertTrue(merged > 0);
+    }
+
+    private static AutomataProperties decompositionProperties() {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getSearch().setDecomposition(true);
+        return properties;
+    }
+
+    /**
+     * Disjoint union of automata with the same signals.
+     */
+    private static DenseAutomaton union(List<DenseAutomaton> parts) {
+        int stateCount = parts.stream().mapToInt(DenseAutomaton::getStateCount).sum();
+        int inputCount = parts.get(0).getInputCount();
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        int offset = 0;
+        for (DenseAutomaton part : parts) {
+            for (int state = 0; state < part.getStateCount(); state++) {
+                for (int input = 0; input < inputCount; input++) {
+                    transitions[(offset + state) * inputCount + input] = offset + part.getTargetState(state, input);
+                    outputs[(offset + state) * inputCount + input] = part.getOutputSignal(state, input);
+                }
+            }
+            offset += part.getStateCount();
+        }
+        return new DenseAutomaton(states(stateCount), parts.get(0).getInputSignals(),
+                parts.get(0).getOutputSignals(), transitions, outputs);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.DenseAutomaton;
+import ru.ssu.refa.linear_order_automata.model.DenseOrbit;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class ExtendedOrbitProviderTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+
+    @Test
+    public void extend_sameOrbitsAsCalculated() throws SymmetricRelationException {
+        Random random = new Random(61);
+        int extensions = 0;
+        int violations = 0;
+        for (int run = 0; run < 300; run++) {
+            DenseAutomaton automaton = randomPartialAutomaton(random, 2 + random.nextInt(4), 2, 1 + random.nextInt(2));
+            IOrbitProvider orbitProvider;
+            try {
+                orbitProvider = automataUtilsService.getOrbitProvider(automaton);
+            } catch (SymmetricRelationException e) {
+                continue;
+            }
+            // extended from extended providers from the second step on
+            for (int step = 0; step < 3; step++) {
+                int[] previousStates = renumbering(random, automaton.getStateCount(), 1 + random.nextInt(3));
+                DenseAutomaton grown = grow(random, automaton, previousStates);
+                DenseOrbit[] expected;
+                try {
+                    expected = automataUtilsService.getOrbits(grown);
+                } catch (SymmetricRelationException e) {
+                    // the orbits of the old pairs are those of the old automaton, so a new pair violates it
+                    IOrbitProvider previous = orbitProvider;
+                    DenseAutomaton previousAutomaton = automaton;
+                    assertThrows(SymmetricRelationException.class, () -> ExtendedOrbitProvider.extend(
+                            automataUtilsService, grown, previousAutomaton, previous, previousStates));
+                    violations++;
+                    break;
+                }
+
+                IOrbitProvider extended = ExtendedOrbitProvider.extend(automataUtilsService, grown, automaton,
+                        orbitProvider, previousStates);
+
+                for (int left = 0; left < grown.getStateCount(); left++) {
+                    for (int right = left + 1; right < grown.getStateCount(); right++) {
+                        DenseOrbit expectedOrbit = expected[grown.getPairIndex(left, right)];
+                        assertEquals(expectedOrbit.getPower(), extended.estimatePower(left, right));
+                        DenseOrbit orbit = extended.getOrbit(left, right);
+                        assertEquals(toSet(expectedOrbit.getTransitionOrbit()), toSet(orbit.getTransitionOrbit()));
+                        assertEquals(toSet(expectedOrbit.getOutputOrbit()), toSet(orbit.getOutputOrbit()));
+                    }
+                }
+                automaton = grown;
+                orbitProvider = extended;
+                extensions++;
+            }
+        }
+        assertTrue(extensions > 50);
+        assertTrue(violations > 0);
+    }
+
+    /**
+     * @return old state for every state of the grown automaton, in random order, {@link ExtendedOrbitProvider#NEW}
+     * for the added ones
+     */
+    private static int[] renumbering(Random random, int stateCount, int addedCount) {
+        List<Integer> previousStates = new ArrayList<>();
+        for (int state = 0; state < stateCount; state++) {
+            previousStates.add(state);
+        }
+        for (int i = 0; i < addedCount; i++) {
+            previousStates.add(ExtendedOrbitProvider.NEW);
+        }
+        Collections.shuffle(previousStates, random);
+        return previousStates.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Keeps the transitions and outputs of the old states, renumbered, and draws those of the new ones, which may
+     * lead to any state. Half of the new transitions are missing, so that not every automaton violates
+     * antisymmetry. Sometimes an output signal is added.
+     */
+    private static DenseAutomaton grow(Random random, DenseAutomaton automaton, int[] previousStates) {
+        int stateCount = previousStates.length;
+        int inputCount = automaton.getInputCount();
+        int outputCount = automaton.getOutputCount() + random.nextInt(2);
+        int[] grownStates = new int[automaton.getStateCount()];
+        for (int state = 0; state < stateCount; state++) {
+            if (previousStates[state] != ExtendedOrbitProvider.NEW) {
+                grownStates[previousStates[state]] = state;
+            }
+        }
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        for (int state = 0; state < stateCount; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                int previous = previousStates[state];
+                if (previous == ExtendedOrbitProvider.NEW) {
+                    transitions[state * inputCount + input] = random.nextBoolean()
+                            ? random.nextInt(stateCount) : DenseAutomaton.NONE;
+                    outputs[state * inputCount + input] = random.nextInt(outputCount);
+                } else {
+                    int target = automaton.getTargetState(previous, input);
+                    transitions[state * inputCount + input] = target == DenseAutomaton.NONE
+                            ? DenseAutomaton.NONE : grownStates[target];
+                    outputs[state * inputCount + input] = automaton.getOutputSignal(previous, input);
+                }
+            }
+        }
+        return new DenseAutomaton(states(stateCount), inputSignals(inputCount), outputSignals(outputCount),
+                transitions, outputs);
+    }
+
+    private static Set<Long> toSet(long[] encodedPairs) {
+        Set<Long> result = new HashSet<>();
+        for (long pair : encodedPairs) {
+            result.add(pair);
+        }
+        return result;
+    }
+}
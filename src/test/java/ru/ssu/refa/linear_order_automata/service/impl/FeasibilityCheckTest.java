@@ -0,0 +1,74 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class FeasibilityCheckTest {
+
+    private final AutomataOrderingService checkingService = new AutomataOrderingService(
+            new AutomataUtilsService(ForkJoinPool.commonPool(), orbitProperties(true)));
+    private final AutomataOrderingService searchingService = new AutomataOrderingService(
+            new AutomataUtilsService(ForkJoinPool.commonPool(), orbitProperties(false)));
+
+    @Test
+    public void orderAutomaton_stateCycle() {
+        // a single input signal rotates three states, so (0, 1), (1, 2) and (2, 0) force each other
+        DenseAutomaton automaton = new DenseAutomaton(states(3), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), new int[]{1, 2, 0}, new int[3]);
+
+        LinearOrder linearOrder = checkingService.orderAutomaton(automaton);
+
+        assertFalse(linearOrder.isResolution());
+        assertEquals(FeasibilityCheck.STATE_CYCLE, linearOrder.getReason());
+        assertFalse(searchingService.orderAutomaton(automaton).isResolution());
+    }
+
+    @Test
+    public void orderAutomaton_outputCycle() {
+        // both states stay, but the input signals output x and y in opposite orders
+        DenseAutomaton automaton = new DenseAutomaton(states(2),
+                Arrays.asList(new InputSignal("a"), new InputSignal("b")),
+                Arrays.asList(new OutputSignal("x"), new OutputSignal("y")),
+                new int[]{0, 0, 1, 1}, new int[]{0, 1, 1, 0});
+
+        LinearOrder linearOrder = checkingService.orderAutomaton(automaton);
+
+        assertFalse(linearOrder.isResolution());
+        assertEquals(FeasibilityCheck.OUTPUT_CYCLE, linearOrder.getReason());
+        assertFalse(searchingService.orderAutomaton(automaton).isResolution());
+    }
+
+    @Test
+    public void orderAutomaton_sameResolution() {
+        Random random = new Random(43);
+        int rejectedEarly = 0;
+        for (int i = 0; i < 500; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(10), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+
+            LinearOrder expected = searchingService.orderAutomaton(automaton);
+            LinearOrder linearOrder = checkingService.orderAutomaton(automaton);
+
+            assertEquals(expected.isResolution(), linearOrder.isResolution());
+            if (expected.isResolution()) {
+                assertEquals(expected.getOrderOnStateSet(), linearOrder.getOrderOnStateSet());
+            } else if (!expected.getReason().equals(linearOrder.getReason())) {
+                rejectedEarly++;
+            }
+        }
+        assertTrue(rejectedEarly > 0);
+    }
+
+    private static AutomataProperties.Orbits orbitProperties(boolean feasibilityChecks) {
+        AutomataProperties.Orbits orbitProperties = new AutomataProperties.Orbits();
+        orbitProperties.setFeasibilityChecks(feasibilityChecks);
+        return orbitProperties;
+    }
+}
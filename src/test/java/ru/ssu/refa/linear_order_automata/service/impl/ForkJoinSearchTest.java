@@ -0,0 +1,125 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class ForkJoinSearchTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService sequentialService = new AutomataOrderingService(automataUtilsService);
+    private final ForkJoinPool searchPool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void shutdown() {
+        searchPool.shutdown();
+    }
+
+    @Test
+    public void orderAutomaton_sameResolution() {
+        for (AutomataProperties.Search.Mode mode : AutomataProperties.Search.Mode.values()) {
+            for (int splitDepth : new int[]{1, 3, 6}) {
+                AutomataOrderingService forkJoinService = new AutomataOrderingService(automataUtilsService,
+                        searchPool, searchProperties(mode, splitDepth));
+                Random random = new Random(37);
+                int resolutions = 0;
+                int rejections = 0;
+                for (int i = 0; i < 200; i++) {
+                    DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(9), 2, 3);
+
+                    LinearOrder expected = sequentialService.orderAutomaton(automaton);
+                    LinearOrder linearOrder = forkJoinService.orderAutomaton(automaton);
+
+                    assertEquals(expected.isResolution(), linearOrder.isResolution());
+                    assertEquals(expected.getReason(), linearOrder.getReason());
+                    if (linearOrder.isResolution()) {
+                        resolutions++;
+                        assertOrdersAutomaton(automaton, linearOrder);
+                    } else {
+                        rejections++;
+                    }
+                }
+                assertTrue(resolutions > 0);
+                assertTrue(rejections > 0);
+            }
+        }
+    }
+
+    @Test
+    public void orderAutomaton_splitDeeperThanTree() {
+        // every decision of a chain orders the whole automaton at once
+        int size = 30;
+        int[] transitions = new int[size];
+        int[] outputs = new int[size];
+        for (int state = 0; state < size; state++) {
+            transitions[state] = Math.min(state + 1, size - 1);
+            outputs[state] = state / 10;
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(size), Collections.singletonList(new InputSignal("a")),
+                Arrays.asList(new OutputSignal("x"), new OutputSignal("y"), new OutputSignal("z")),
+                transitions, outputs);
+        AutomataOrderingService forkJoinService = new AutomataOrderingService(automataUtilsService, searchPool,
+                searchProperties(AutomataProperties.Search.Mode.CHRONOLOGICAL, 64));
+
+        LinearOrder linearOrder = forkJoinService.orderAutomaton(automaton);
+
+        assertTrue(linearOrder.isResolution());
+        assertOrdersAutomaton(automaton, linearOrder);
+    }
+
+    @Test
+    public void run_cancelledOnPool() throws SymmetricRelationException {
+        // a chain with a skip, ordered by the state numbers
+        int[] transitions = new int[16];
+        int[] outputs = new int[16];
+        for (int state = 0; state < 8; state++) {
+            transitions[2 * state] = Math.min(state + 1, 7);
+            transitions[2 * state + 1] = Math.min(state + 2, 7);
+            outputs[2 * state] = state / 3;
+            outputs[2 * state + 1] = state / 4;
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(8), inputSignals(2), outputSignals(3), transitions,
+                outputs);
+        IOrbitProvider orbitProvider = automataUtilsService.getOrbitProvider(automaton);
+        long[] pairs = new long[automaton.getPairCount()];
+        for (int left = 0, i = 0; left < 8; left++) {
+            for (int right = left + 1; right < 8; right++) {
+                pairs[i++] = left * 8L + right;
+            }
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        // the ordering is cancelled once the first subtree search is created on the pool
+        OrderingSearch search = new ForkJoinSearch(automataUtilsService, automaton, orbitProvider,
+                () -> PairSelector.inOrder(pairs), false, searchPool, 2, (wRelation, w1Relation, stopped) -> {
+            cancelled.set(true);
+            return new ChronologicalSearch(automataUtilsService, automaton, orbitProvider,
+                    PairSelector.inOrder(pairs), false, wRelation, w1Relation, cancelled, stopped,
+                    SearchRecorder.DISABLED);
+        }, cancelled, SearchRecorder.DISABLED);
+
+        assertThrows(CancellationException.class, search::run);
+    }
+
+    /**
+     * Both orders are linear and every input signal maps ordered states to ordered states and ordered output
+     * signals.
+     */
+
+    private static AutomataProperties searchProperties(AutomataProperties.Search.Mode mode, int splitDepth) {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getSearch().setMode(mode);
+        properties.getSearch().setSplitDepth(splitDepth);
+        return properties;
+    }
+}
@@ -0,0 +1,186 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class LazyOrbitProviderTest {
+
+    private final AutomataUtilsService eagerService = new AutomataUtilsService(ForkJoinPool.commonPool(),
+            orbitProperties(AutomataProperties.Orbits.Mode.EAGER, 0));
+    private final AutomataUtilsService lazyService = new AutomataUtilsService(ForkJoinPool.commonPool(),
+            orbitProperties(AutomataProperties.Orbits.Mode.LAZY, 8));
+
+    @Test
+    public void getOrbit_sameAsEager() throws SymmetricRelationException {
+        Random random = new Random(11);
+        int checked = 0;
+        for (int i = 0; i < 200; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(15), 2, 2);
+            IOrbitProvider eagerProvider;
+            try {
+                eagerProvider = eagerService.getOrbitProvider(automaton);
+            } catch (SymmetricRelationException e) {
+                continue;
+            }
+            checked++;
+            // the cache holds a few pairs only, so orbits are evicted and calculated again
+            IOrbitProvider lazyProvider = lazyService.getOrbitProvider(automaton);
+            for (int repeat = 0; repeat < 2; repeat++) {
+                for (int left = 0; left < automaton.getStateCount(); left++) {
+                    for (int right = left + 1; right < automaton.getStateCount(); right++) {
+                        DenseOrbit expected = eagerProvider.getOrbit(left, right);
+                        DenseOrbit orbit = lazyProvider.getOrbit(left, right);
+                        assertArrayEquals(expected.getTransitionOrbit(), orbit.getTransitionOrbit());
+                        assertArrayEquals(expected.getOutputOrbit(), orbit.getOutputOrbit());
+                        assertEquals(expected.getTransitionOrbit().length, lazyProvider.estimatePower(left, right));
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    @Test
+    public void getOrbit_concurrent() throws Exception {
+        // both inputs move every state forward, so the orbits are large and feasible
+        int size = 60;
+        int[] transitions = new int[size * 2];
+        int[] outputs = new int[size * 2];
+        for (int state = 0; state < size; state++) {
+            transitions[state * 2] = Math.min(state + 1, size - 1);
+            transitions[state * 2 + 1] = Math.min(state + 2, size - 1);
+            outputs[state * 2] = state;
+            outputs[state * 2 + 1] = state;
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(size), inputSignals(2), outputSignals(size),
+                transitions, outputs);
+        IOrbitProvider eagerProvider = eagerService.getOrbitProvider(automaton);
+        IOrbitProvider lazyProvider = lazyService.getOrbitProvider(automaton);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int left = first; left < automaton.getStateCount(); left++) {
+                        for (int right = left + 1; right < automaton.getStateCount(); right++) {
+                            DenseOrbit expected = eagerProvider.getOrbit(left, right);
+                            DenseOrbit orbit = lazyProvider.getOrbit(left, right);
+                            assertArrayEquals(expected.getTransitionOrbit(), orbit.getTransitionOrbit());
+                            assertArrayEquals(expected.getOutputOrbit(), orbit.getOutputOrbit());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void estimatePower_manyComponents() throws SymmetricRelationException {
+        // every pair of a chain is a component of its own, too many to keep reachable sets
+        int size = 200;
+        int[] transitions = new int[size];
+        for (int state = 0; state < size; state++) {
+            transitions[state] = Math.min(state + 1, size - 1);
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(size), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), transitions, new int[size]);
+
+        IOrbitProvider lazyProvider = lazyService.getOrbitProvider(automaton);
+
+        for (int left = 0; left < size; left++) {
+            for (int right = left + 1; right < size; right++) {
+                assertEquals(size - 1 - left, lazyProvider.estimatePower(left, right));
+            }
+        }
+        assertEquals(size - 1, lazyProvider.getOrbit(0, 1).getTransitionOrbit().length);
+    }
+
+    @Test
+    public void orderAutomaton_lazy() {
+        int size = 60;
+        List<State> states = states(size);
+        List<OutputSignal> outputSignals = new ArrayList<>();
+        InputSignal inputSignal = new InputSignal("a");
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            outputSignals.add(new OutputSignal("y" + i));
+            transitions.put(states.get(i), Collections.singletonMap(inputSignal, states.get(Math.min(i + 1, size - 1))));
+            outputs.put(states.get(i), Collections.singletonMap(inputSignal, outputSignals.get(i)));
+        }
+        Automaton automaton = new Automaton(states, Collections.singletonList(inputSignal), outputSignals,
+                transitions, outputs);
+
+        LinearOrder expected = new AutomataOrderingService(eagerService).orderAutomaton(automaton);
+        LinearOrder linearOrder = new AutomataOrderingService(lazyService).orderAutomaton(automaton);
+
+        assertTrue(linearOrder.isResolution());
+        assertEquals(expected.getOrderOnStateSet(), linearOrder.getOrderOnStateSet());
+        assertEquals(expected.getOrderOnOutputSignalSet(), linearOrder.getOrderOnOutputSignalSet());
+    }
+
+    @Test
+    public void orderAutomaton_lazy_negative() {
+        // the orbit of (0, 1) contains (1, 0)
+        List<State> states = states(2);
+        InputSignal inputSignal = new InputSignal("a");
+        OutputSignal outputSignal = new OutputSignal("x");
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        transitions.put(states.get(0), Collections.singletonMap(inputSignal, states.get(1)));
+        transitions.put(states.get(1), Collections.singletonMap(inputSignal, states.get(0)));
+        outputs.put(states.get(0), Collections.singletonMap(inputSignal, outputSignal));
+        outputs.put(states.get(1), Collections.singletonMap(inputSignal, outputSignal));
+        Automaton automaton = new Automaton(states, Collections.singletonList(inputSignal),
+                Collections.singletonList(outputSignal), transitions, outputs);
+
+        LinearOrder linearOrder = new AutomataOrderingService(lazyService).orderAutomaton(automaton);
+
+        assertFalse(linearOrder.isResolution());
+        assertEquals("The property of antisymmetry is violated on the step of orbits calculation",
+                linearOrder.getReason());
+    }
+
+    @Test
+    public void orderAutomaton_lazy_tooManyStates() {
+        int size = DenseAutomaton.MAX_STATE_COUNT + 1;
+        int[] transitions = new int[size];
+        for (int state = 0; state < size; state++) {
+            transitions[state] = Math.min(state + 1, size - 1);
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(size), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), transitions, new int[size]);
+
+        LinearOrder linearOrder = new AutomataOrderingService(lazyService).orderAutomaton(automaton);
+
+        assertFalse(linearOrder.isResolution());
+        assertEquals("Automaton has 46341 states, at most 46340 states can be ordered", linearOrder.getReason());
+    }
+
+    private static AutomataProperties.Orbits orbitProperties(AutomataProperties.Orbits.Mode mode, long cacheCapacity) {
+        AutomataProperties.Orbits orbitProperties = new AutomataProperties.Orbits();
+        orbitProperties.setMode(mode);
+        orbitProperties.setCacheCapacity(cacheCapacity);
+        return orbitProperties;
+    }
+}
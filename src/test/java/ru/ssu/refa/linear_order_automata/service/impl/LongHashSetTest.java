@@ -0,0 +1,59 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongHashSetTest {
+
+    @Test
+    public void add_sameAsHashSet() {
+        Random random = new Random(73);
+        LongHashSet set = new LongHashSet();
+        for (int run = 0; run < 20; run++) {
+            Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < 2000; i++) {
+                // consecutive keys as in a row of encoded pairs, and some far apart
+                long key = random.nextBoolean() ? random.nextInt(1000) : random.nextLong() & Long.MAX_VALUE;
+                assertEquals(expected.add(key), set.add(key));
+                long probe = random.nextInt(2000);
+                assertEquals(expected.contains(probe), set.contains(probe));
+            }
+
+            assertEquals(expected.size(), set.size());
+            long[] keys = set.toArray();
+            Arrays.sort(keys);
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), keys);
+
+            set.clear();
+            assertEquals(0, set.size());
+            assertFalse(set.contains(keys[0]));
+        }
+    }
+
+    @Test
+    public void clear_shrinksTableAfterLargeSet() {
+        LongHashSet set = new LongHashSet();
+        for (long key = 0; key < 100_000; key++) {
+            set.add(key);
+        }
+        set.clear();
+        for (long key = 0; key < 10; key++) {
+            set.add(key * 1000);
+        }
+
+        set.clear();
+
+        assertTrue(set.capacity() <= 64);
+        assertFalse(set.contains(0));
+        assertTrue(set.add(5));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void add_rejectsNegativeKey() {
+        assertThrows(IllegalArgumentException.class, () -> new LongHashSet().add(-1));
+    }
+}
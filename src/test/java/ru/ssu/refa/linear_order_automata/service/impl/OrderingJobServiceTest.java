@@ -0,0 +1,224 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.JobTooLargeException;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IAutomataOrderingService;
+import ru.ssu.refa.linear_order_automata.service.IOrderingJob;
+import ru.ssu.refa.linear_order_automata.service.IOrderingSession;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class OrderingJobServiceTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final List<OrderingJobService> services = new ArrayList<>();
+
+    @AfterEach
+    public void shutdown() {
+        services.forEach(OrderingJobService::shutdown);
+    }
+
+    @Test
+    public void submit_sameOrdersAsService() throws InterruptedException {
+        AutomataOrderingService orderingService = new AutomataOrderingService(automataUtilsService);
+        OrderingJobService jobService = jobService(orderingService, 4, 1000);
+        Random random = new Random(89);
+        List<Automaton> automata = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            automata.add(randomMapAutomaton(random, 2 + random.nextInt(6), 2, 1 + random.nextInt(3)));
+        }
+
+        IOrderingJob job = jobService.submit(automata, null, null);
+
+        List<JobResult> results = awaitResults(job);
+        assertEquals(IOrderingJob.Status.FINISHED, job.getStatus());
+        assertEquals(automata.size(), results.size());
+        for (JobResult result : results) {
+            DenseAutomaton automaton = DenseAutomaton.of(automata.get(result.getIndex()));
+            LinearOrder expected = orderingService.orderAutomaton(automaton);
+            assertEquals(JobResult.Outcome.ORDERED, result.getOutcome());
+            assertEquals(expected.isResolution(), result.isResolution());
+            if (expected.isResolution()) {
+                List<State> expectedOrder = Arrays.stream(LinearOrders.stateSequence(automaton, expected))
+                        .mapToObj(automaton::getState).collect(Collectors.toList());
+                assertEquals(expectedOrder, result.getStateOrder());
+                assertEquals(automaton.getOutputCount(), result.getOutputSignalOrder().size());
+            }
+        }
+        orderingService.shutdown();
+    }
+
+    @Test
+    public void subscribe_stalledSubscriberHoldsNothingUp() throws InterruptedException {
+        AutomataOrderingService orderingService = new AutomataOrderingService(automataUtilsService);
+        OrderingJobService jobService = jobService(orderingService, 1, 1000);
+        Random random = new Random(137);
+        CountDownLatch stall = new CountDownLatch(1);
+        IOrderingJob job = jobService.submit(Arrays.asList(randomMapAutomaton(random, 3, 2, 2),
+                randomMapAutomaton(random, 3, 2, 2), randomMapAutomaton(random, 3, 2, 2)), null, null);
+        job.subscribe(result -> {
+            try {
+                stall.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> {
+        });
+
+        assertEquals(3, awaitResults(job).size());
+        assertEquals(IOrderingJob.Status.FINISHED, job.getStatus());
+        stall.countDown();
+        orderingService.shutdown();
+    }
+
+    @Test
+    public void submit_jobsTakeTurns() throws InterruptedException {
+        BlockingOrderingService orderingService = new BlockingOrderingService();
+        OrderingJobService jobService = jobService(orderingService, 1, 1000);
+        Random random = new Random(97);
+        IOrderingJob first = jobService.submit(Arrays.asList(randomMapAutomaton(random, 2, 1, 1),
+                randomMapAutomaton(random, 2, 1, 1), randomMapAutomaton(random, 2, 1, 1)), null, null);
+        assertTrue(orderingService.started.tryAcquire(10, TimeUnit.SECONDS));
+
+        IOrderingJob second = jobService.submit(Collections.singletonList(randomMapAutomaton(random, 3, 1, 1)),
+                null, null);
+        orderingService.gate.countDown();
+
+        awaitResults(first);
+        awaitResults(second);
+        List<Integer> stateCounts = orderingService.ordered.stream().map(DenseAutomaton::getStateCount)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(2, 2, 3, 2), stateCounts);
+    }
+
+    @Test
+    public void submit_rejectsWhenQueueIsFull() throws InterruptedException {
+        BlockingOrderingService orderingService = new BlockingOrderingService();
+        OrderingJobService jobService = jobService(orderingService, 1, 2);
+        Random random = new Random(101);
+        jobService.submit(Collections.singletonList(randomMapAutomaton(random, 2, 1, 1)), null, null);
+        assertTrue(orderingService.started.tryAcquire(10, TimeUnit.SECONDS));
+        jobService.submit(Collections.singletonList(randomMapAutomaton(random, 2, 1, 1)), null, null);
+
+        assertThrows(RejectedExecutionException.class, () -> jobService.submit(Arrays.asList(
+                randomMapAutomaton(random, 2, 1, 1), randomMapAutomaton(random, 2, 1, 1)), null, null));
+        assertThrows(JobTooLargeException.class, () -> jobService.submit(Arrays.asList(
+                randomMapAutomaton(random, 2, 1, 1), randomMapAutomaton(random, 2, 1, 1),
+                randomMapAutomaton(random, 2, 1, 1)), null, null));
+        assertThrows(IllegalArgumentException.class, () -> jobService.submit(Collections.emptyList(), null, null));
+        orderingService.gate.countDown();
+    }
+
+    @Test
+    public void cancel_givesUpUnfinishedAutomata() throws InterruptedException {
+        BlockingOrderingService orderingService = new BlockingOrderingService();
+        OrderingJobService jobService = jobService(orderingService, 1, 1000);
+        Random random = new Random(103);
+        IOrderingJob job = jobService.submit(Arrays.asList(randomMapAutomaton(random, 2, 1, 1),
+                randomMapAutomaton(random, 2, 1, 1), randomMapAutomaton(random, 2, 1, 1)), null, null);
+        assertTrue(orderingService.started.tryAcquire(10, TimeUnit.SECONDS));
+
+        assertTrue(jobService.cancel(job.getId()));
+
+        List<JobResult> results = awaitResults(job);
+        assertEquals(IOrderingJob.Status.CANCELLED, job.getStatus());
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getOutcome() == JobResult.Outcome.CANCELLED));
+        assertFalse(jobService.cancel(job.getId()));
+        assertEquals(1, orderingService.ordered.size());
+    }
+
+    @Test
+    public void submit_keepsBudgets() throws InterruptedException {
+        BlockingOrderingService orderingService = new BlockingOrderingService();
+        OrderingJobService jobService = jobService(orderingService, 2, 1000);
+        Random random = new Random(107);
+        Automaton large = randomMapAutomaton(random, 100, 2, 2);
+        IOrderingJob overMemory = jobService.submit(Collections.singletonList(large), null,
+                OrderingJob.estimateMemory(DenseAutomaton.of(large)) - 1);
+        assertEquals(JobResult.Outcome.OVER_MEMORY_BUDGET, awaitResults(overMemory).get(0).getOutcome());
+
+        IOrderingJob timedOut = jobService.submit(Arrays.asList(randomMapAutomaton(random, 2, 1, 1),
+                randomMapAutomaton(random, 2, 1, 1), randomMapAutomaton(random, 2, 1, 1)), Duration.ofMillis(100),
+                null);
+
+        List<JobResult> results = awaitResults(timedOut);
+        assertEquals(IOrderingJob.Status.TIMED_OUT, timedOut.getStatus());
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getOutcome() == JobResult.Outcome.TIMED_OUT));
+    }
+
+    private OrderingJobService jobService(IAutomataOrderingService orderingService, int workers,
+                                          int queueCapacity) {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getJobs().setWorkers(workers);
+        properties.getJobs().setQueueCapacity(queueCapacity);
+        OrderingJobService jobService = new OrderingJobService(orderingService, properties);
+        services.add(jobService);
+        return jobService;
+    }
+
+    private static List<JobResult> awaitResults(IOrderingJob job) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(1);
+        job.subscribe(result -> {
+        }, finished::countDown);
+        assertTrue(finished.await(30, TimeUnit.SECONDS));
+        return job.getResults();
+    }
+
+    /**
+     * Holds every ordering until the gate opens or the ordering is cancelled. Interrupts are ignored, as they are
+     * by the searches on the pool threads.
+     */
+    private static class BlockingOrderingService implements IAutomataOrderingService {
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final Semaphore started = new Semaphore(0);
+        private final List<DenseAutomaton> ordered = new CopyOnWriteArrayList<>();
+
+        @Override
+        public LinearOrder orderAutomaton(DenseAutomaton automaton) {
+            return orderAutomaton(automaton, new AtomicBoolean());
+        }
+
+        @Override
+        public LinearOrder orderAutomaton(DenseAutomaton automaton, AtomicBoolean cancelled) {
+            ordered.add(automaton);
+            started.release();
+            while (!cancelled.get()) {
+                try {
+                    if (gate.await(10, TimeUnit.MILLISECONDS)) {
+                        return new LinearOrder(false, "Not ordered");
+                    }
+                } catch (InterruptedException e) {
+                    // only the flag stops the ordering
+                }
+            }
+            throw new CancellationException("Search is cancelled");
+        }
+
+        @Override
+        public LinearOrder orderAutomaton(Automaton automaton) {
+            return orderAutomaton(DenseAutomaton.of(automaton));
+        }
+
+        @Override
+        public OrderingResult orderAutomatonWithStatistics(Automaton automaton) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IOrderingSession openSession(Automaton automaton) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
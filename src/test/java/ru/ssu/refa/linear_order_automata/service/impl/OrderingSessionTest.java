@@ -0,0 +1,138 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IOrderingSession;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class OrderingSessionTest {
+
+    private static final List<InputSignal> INPUT_SIGNALS = Arrays.asList(new InputSignal("a"), new InputSignal("b"));
+    private static final List<OutputSignal> OUTPUT_SIGNALS = Arrays.asList(new OutputSignal("x"),
+            new OutputSignal("y"));
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService automataOrderingService = new AutomataOrderingService(automataUtilsService);
+
+    @Test
+    public void apply_sameResolutionAsFullSearch() {
+        Random random = new Random(71);
+        for (int run = 0; run < 100; run++) {
+            Automaton automaton = new Automaton(new ArrayList<>(), INPUT_SIGNALS, OUTPUT_SIGNALS, new HashMap<>(),
+                    new HashMap<>());
+            IOrderingSession session = automataOrderingService.openSession(automaton);
+            session.apply(randomDelta(random, automaton));
+            for (int step = 0; step < 8; step++) {
+                LinearOrder linearOrder = session.apply(randomDelta(random, session.getAutomaton()));
+
+                LinearOrder expected = automataOrderingService.orderAutomaton(session.getAutomaton());
+                assertEquals(expected.isResolution(), linearOrder.isResolution());
+                if (linearOrder.isResolution()) {
+                    assertOrdersAutomaton(DenseAutomaton.of(session.getAutomaton()), linearOrder);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void apply_newTransitionsOfOldStates() {
+        Random random = new Random(73);
+        for (int run = 0; run < 50; run++) {
+            Automaton automaton = new Automaton(new ArrayList<>(), INPUT_SIGNALS, OUTPUT_SIGNALS, new HashMap<>(),
+                    new HashMap<>());
+            IOrderingSession session = automataOrderingService.openSession(automaton);
+            session.apply(randomDelta(random, automaton));
+            for (int step = 0; step < 8; step++) {
+                // every third delta adds an input signal to all states, the kept orbits are dropped then
+                AutomatonDelta delta = step % 3 == 2
+                        ? inputSignalDelta(random, session.getAutomaton(), new InputSignal("c" + step))
+                        : randomDelta(random, session.getAutomaton());
+                LinearOrder linearOrder = session.apply(delta);
+
+                LinearOrder expected = automataOrderingService.orderAutomaton(session.getAutomaton());
+                assertEquals(expected.isResolution(), linearOrder.isResolution());
+                if (linearOrder.isResolution()) {
+                    assertOrdersAutomaton(DenseAutomaton.of(session.getAutomaton()), linearOrder);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void apply_keepsViolation() {
+        // a single input signal rotates three states
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            transitions.put(new State(i), Collections.singletonMap(INPUT_SIGNALS.get(0), new State((i + 1) % 3)));
+            outputs.put(new State(i), Collections.singletonMap(INPUT_SIGNALS.get(0), OUTPUT_SIGNALS.get(0)));
+        }
+        IOrderingSession session = automataOrderingService.openSession(new Automaton(states(0, 3),
+                INPUT_SIGNALS, OUTPUT_SIGNALS, transitions, outputs));
+        LinearOrder violation = session.getLinearOrder();
+
+        LinearOrder linearOrder = session.apply(new AutomatonDelta(states(3, 2), null, null,
+                Collections.singletonMap(new State(3), Collections.singletonMap(INPUT_SIGNALS.get(0), new State(4))),
+                null));
+
+        assertFalse(violation.isResolution());
+        assertSame(violation, linearOrder);
+        assertEquals(5, session.getAutomaton().getStates().size());
+    }
+
+    @Test
+    public void apply_rejectsRedefinition() {
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        transitions.put(new State(0), Collections.singletonMap(INPUT_SIGNALS.get(0), new State(1)));
+        IOrderingSession session = automataOrderingService.openSession(new Automaton(states(0, 2), INPUT_SIGNALS,
+                OUTPUT_SIGNALS, transitions, new HashMap<>()));
+        Automaton automaton = session.getAutomaton();
+
+        assertThrows(IllegalArgumentException.class, () -> session.apply(new AutomatonDelta(null, null, null,
+                Collections.singletonMap(new State(0), Collections.singletonMap(INPUT_SIGNALS.get(0), new State(0))),
+                null)));
+        assertThrows(IllegalArgumentException.class, () -> session.apply(new AutomatonDelta(states(1, 1), null,
+                null, null, null)));
+        assertSame(automaton, session.getAutomaton());
+    }
+
+    /**
+     * One to three new states with all their transitions and outputs, so the automaton stays complete.
+     */
+    /**
+     * New input signal with a transition and an output for every state.
+     */
+    private static AutomatonDelta inputSignalDelta(Random random, Automaton automaton, InputSignal inputSignal) {
+        List<State> states = automaton.getStates();
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        for (State state : states) {
+            transitions.put(state, Collections.singletonMap(inputSignal, states.get(random.nextInt(states.size()))));
+            outputs.put(state, Collections.singletonMap(inputSignal,
+                    OUTPUT_SIGNALS.get(random.nextInt(OUTPUT_SIGNALS.size()))));
+        }
+        return new AutomatonDelta(null, Collections.singletonList(inputSignal), null, transitions, outputs);
+    }
+
+    private static AutomatonDelta randomDelta(Random random, Automaton automaton) {
+        List<State> newStates = states(automaton.getStates().size(), 1 + random.nextInt(3));
+        List<State> allStates = new ArrayList<>(automaton.getStates());
+        allStates.addAll(newStates);
+
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        for (State state : newStates) {
+            for (InputSignal inputSignal : INPUT_SIGNALS) {
+                transitions.computeIfAbsent(state, s -> new HashMap<>())
+                        .put(inputSignal, allStates.get(random.nextInt(allStates.size())));
+                outputs.computeIfAbsent(state, s -> new HashMap<>())
+                        .put(inputSignal, OUTPUT_SIGNALS.get(random.nextInt(OUTPUT_SIGNALS.size())));
+            }
+        }
+        return new AutomatonDelta(newStates, null, null, transitions, outputs);
+    }
+}
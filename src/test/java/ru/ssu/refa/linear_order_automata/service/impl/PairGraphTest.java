@@ -0,0 +1,91 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class PairGraphTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+
+    @Test
+    public void getOrbits_sameAsPerPairSearch() {
+        Random random = new Random(42);
+        int symmetricCount = 0;
+        for (int i = 0; i < 300; i++) {
+            DenseAutomaton automaton = randomPartialAutomaton(random, 2 + random.nextInt(12), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+
+            DenseOrbit[] expectedOrbits = new DenseOrbit[automaton.getPairCount()];
+            boolean symmetric = false;
+            try {
+                for (int left = 0; left < automaton.getStateCount(); left++) {
+                    for (int right = left + 1; right < automaton.getStateCount(); right++) {
+                        long[] transitionOrbit = automataUtilsService.getTransitionOrbit(automaton, left, right,
+                                new DenseOrbit[automaton.getPairCount()]);
+                        expectedOrbits[automaton.getPairIndex(left, right)] = new DenseOrbit(transitionOrbit,
+                                automataUtilsService.getOutputOrbit(automaton, transitionOrbit));
+                    }
+                }
+            } catch (SymmetricRelationException e) {
+                symmetric = true;
+                symmetricCount++;
+            }
+
+            if (symmetric) {
+                assertThrows(SymmetricRelationException.class, () -> automataUtilsService.getOrbits(automaton));
+                continue;
+            }
+            DenseOrbit[] orbits = assertDoesNotThrow(() -> automataUtilsService.getOrbits(automaton));
+            for (int pairIndex = 0; pairIndex < orbits.length; pairIndex++) {
+                assertEquals(asSet(expectedOrbits[pairIndex].getTransitionOrbit()),
+                        asSet(orbits[pairIndex].getTransitionOrbit()));
+                assertEquals(asSet(expectedOrbits[pairIndex].getOutputOrbit()),
+                        asSet(orbits[pairIndex].getOutputOrbit()));
+            }
+        }
+        assertTrue(symmetricCount > 0 && symmetricCount < 300);
+    }
+
+    @Test
+    public void components_stronglyConnectedCycle() {
+        // a permutation: the pair graph of a single cycle splits into n - 1 cycles of n pairs each
+        int stateCount = 7;
+        int[] transitions = new int[stateCount];
+        int[] outputs = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            transitions[state] = (state + 1) % stateCount;
+        }
+        DenseAutomaton automaton = new DenseAutomaton(states(stateCount),
+                Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), transitions, outputs);
+
+        PairGraph pairGraph = PairGraph.of(automaton);
+        PairGraph.Traversal traversal = pairGraph.newTraversal();
+
+        assertEquals(stateCount - 1, pairGraph.getComponentCount());
+        assertEquals(-1, pairGraph.getComponent(3, 3));
+        for (int componentId = 0; componentId < pairGraph.getComponentCount(); componentId++) {
+            assertEquals(stateCount, pairGraph.getMemberCount(componentId));
+            assertEquals(stateCount, traversal.getOrbitSize(componentId));
+            assertEquals(stateCount, traversal.getOrbit(componentId).length);
+        }
+        // (0, 1) and (1, 0) differ by one step in opposite directions around the cycle
+        int componentId = pairGraph.getComponent(0, 1);
+        assertEquals(pairGraph.getComponent(1, 0), pairGraph.getComponent(0, stateCount - 1));
+        assertEquals(pairGraph.getComponent(1, 0), pairGraph.getReverseComponent(componentId));
+    }
+
+    private static Set<Long> asSet(long[] encodedPairs) {
+        Set<Long> result = new HashSet<>();
+        for (long pair : encodedPairs) {
+            result.add(pair);
+        }
+        return result;
+    }
+}
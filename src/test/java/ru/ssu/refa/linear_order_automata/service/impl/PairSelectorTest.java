@@ -0,0 +1,74 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.model.BitRelation;
+import ru.ssu.refa.linear_order_automata.model.TransitiveClosure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PairSelectorTest {
+
+    @Test
+    public void inOrder_followsRollbacks() {
+        Random random = new Random(41);
+        for (int run = 0; run < 50; run++) {
+            int size = 2 + random.nextInt(14);
+            long[] pairs = new long[size * (size - 1) / 2];
+            int i = 0;
+            for (int left = 0; left < size; left++) {
+                for (int right = left + 1; right < size; right++) {
+                    pairs[i++] = (long) left * size + right;
+                }
+            }
+            PairSelector pairSelector = PairSelector.shuffled(pairs, run);
+            long[] shuffledPairs = pairs.clone();
+            shuffle(shuffledPairs, run);
+
+            TransitiveClosure relation = new TransitiveClosure(BitRelation.identity(size));
+            List<Integer> marks = new ArrayList<>();
+            for (int step = 0; step < 200; step++) {
+                int operation = random.nextInt(4);
+                if (operation == 0 && !marks.isEmpty()) {
+                    int mark = random.nextInt(marks.size());
+                    relation.rollback(marks.get(mark));
+                    marks.subList(mark, marks.size()).clear();
+                } else if (operation == 1) {
+                    marks.add(relation.mark());
+                } else {
+                    relation.add(random.nextInt(size), random.nextInt(size));
+                }
+
+                assertEquals(firstUnordered(shuffledPairs, relation), pairSelector.select(relation));
+            }
+        }
+    }
+
+    private static long firstUnordered(long[] pairs, TransitiveClosure relation) {
+        int size = relation.getSize();
+        for (long pair : pairs) {
+            int left = (int) (pair / size);
+            int right = (int) (pair % size);
+            if (!relation.contains(left, right) && !relation.contains(right, left)) {
+                return pair;
+            }
+        }
+        return OrderingSearch.NO_PAIR;
+    }
+
+    /**
+     * Same shuffle as {@link PairSelector#shuffled(long[], long)}.
+     */
+    private static void shuffle(long[] pairs, long seed) {
+        Random random = new Random(seed);
+        for (int i = pairs.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = pairs[i];
+            pairs[i] = pairs[j];
+            pairs[j] = swap;
+        }
+    }
+}
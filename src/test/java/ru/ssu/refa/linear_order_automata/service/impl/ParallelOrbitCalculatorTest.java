@@ -0,0 +1,131 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class ParallelOrbitCalculatorTest {
+
+    private static ForkJoinPool singleThreadPool;
+    private static ForkJoinPool fourThreadPool;
+
+    @BeforeAll
+    public static void createPools() {
+        singleThreadPool = new ForkJoinPool(1);
+        fourThreadPool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    public static void shutdownPools() {
+        singleThreadPool.shutdown();
+        fourThreadPool.shutdown();
+    }
+
+    @Test
+    public void getOrbits_sameForAnyThreadCount() {
+        AutomataUtilsService sequential = new AutomataUtilsService(singleThreadPool, orbitProperties(1024));
+        List<AutomataUtilsService> parallel = Arrays.asList(
+                new AutomataUtilsService(fourThreadPool, orbitProperties(1)),
+                new AutomataUtilsService(fourThreadPool, orbitProperties(7)),
+                new AutomataUtilsService(ForkJoinPool.commonPool(), orbitProperties(64)));
+
+        Random random = new Random(7);
+        int symmetricCount = 0;
+        for (int i = 0; i < 200; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(40), 1 + random.nextInt(3),
+                    1 + random.nextInt(4));
+            try {
+                DenseOrbit[] expected = sequential.getOrbits(automaton);
+                for (AutomataUtilsService service : parallel) {
+                    DenseOrbit[] orbits = assertDoesNotThrow(() -> service.getOrbits(automaton));
+                    assertEquals(expected.length, orbits.length);
+                    for (int pairIndex = 0; pairIndex < orbits.length; pairIndex++) {
+                        assertArrayEquals(expected[pairIndex].getTransitionOrbit(),
+                                orbits[pairIndex].getTransitionOrbit());
+                        assertArrayEquals(expected[pairIndex].getOutputOrbit(), orbits[pairIndex].getOutputOrbit());
+                    }
+                }
+            } catch (SymmetricRelationException expected) {
+                symmetricCount++;
+                for (AutomataUtilsService service : parallel) {
+                    SymmetricRelationException e = assertThrows(SymmetricRelationException.class,
+                            () -> service.getOrbits(automaton));
+                    assertEquals(expected.getMessage(), e.getMessage());
+                }
+            }
+        }
+        assertTrue(symmetricCount > 0 && symmetricCount < 200);
+    }
+
+    @Test
+    public void getOrbits_requestedPairsOnly() throws SymmetricRelationException {
+        // (0, 1) and (2, 3) are independent, only the orbit of (2, 3) is symmetric
+        List<State> states = Arrays.asList(new State(0), new State(1), new State(2), new State(3));
+        InputSignal inputSignal = new InputSignal("a");
+        OutputSignal x = new OutputSignal("x");
+        OutputSignal y = new OutputSignal("y");
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        int[] targets = {0, 1, 3, 2};
+        for (int state = 0; state < 4; state++) {
+            transitions.put(new State(state), Collections.singletonMap(inputSignal, new State(targets[state])));
+            outputs.put(new State(state), Collections.singletonMap(inputSignal, state == 0 ? x : y));
+        }
+        Automaton automaton = new Automaton(states, Collections.singletonList(inputSignal), Arrays.asList(x, y),
+                transitions, outputs);
+        AutomataUtilsService service = new AutomataUtilsService(fourThreadPool, orbitProperties(1));
+
+        Pair<State> firstPair = new Pair<>(new State(0), new State(1));
+        Map<Pair<State>, Orbit> orbits = service.getOrbits(automaton, Collections.singletonList(firstPair));
+
+        assertEquals(Collections.singleton(firstPair), orbits.get(firstPair).getTransitionOrbit());
+        assertEquals(Collections.singleton(new Pair<>(x, y)), orbits.get(firstPair).getOutputOrbit());
+        assertThrows(SymmetricRelationException.class, () -> service.getOrbits(automaton,
+                Arrays.asList(firstPair, new Pair<>(new State(2), new State(3)))));
+    }
+    @Test
+    public void calculate_cancelled() {
+        DenseAutomaton automaton = randomAutomaton(new Random(53), 40, 2, 3);
+        PairGraph pairGraph = PairGraph.of(automaton);
+        ParallelOrbitCalculator calculator = new ParallelOrbitCalculator(fourThreadPool, 8);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicInteger calculationCount = new AtomicInteger();
+
+        assertThrows(CancellationException.class, () -> calculator.calculate(automaton, pairGraph, null,
+                (traversal, componentId) -> {
+                    calculationCount.incrementAndGet();
+                    cancelled.set(true);
+                    return new DenseOrbit(new long[0], new long[0]);
+                }, cancelled));
+        // every worker stops at its next pair
+        assertTrue(calculationCount.get() <= 4);
+    }
+
+    @Test
+    public void pairGraph_cancelled() {
+        DenseAutomaton automaton = randomAutomaton(new Random(59), 40, 2, 3);
+        AtomicBoolean cancelled = new AtomicBoolean(true);
+
+        assertThrows(CancellationException.class, () -> PairGraph.of(automaton, cancelled));
+        assertThrows(CancellationException.class,
+                () -> new AutomataUtilsService().getOrbitProvider(automaton, cancelled));
+    }
+
+    private static AutomataProperties.Orbits orbitProperties(int blockSize) {
+        AutomataProperties.Orbits orbitProperties = new AutomataProperties.Orbits();
+        orbitProperties.setBlockSize(blockSize);
+        return orbitProperties;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.exception.SymmetricRelationException;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.IOrbitProvider;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class PortfolioSearchTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService sequentialService = new AutomataOrderingService(automataUtilsService);
+
+    @Test
+    public void orderAutomaton_portfolio() {
+        ForkJoinPool searchPool = new ForkJoinPool(4);
+        try {
+            for (AutomataProperties.Search.Mode mode : AutomataProperties.Search.Mode.values()) {
+                AutomataOrderingService portfolioService = new AutomataOrderingService(automataUtilsService,
+                        searchPool, searchProperties(mode, 6));
+                Random random = new Random(23);
+                for (int i = 0; i < 200; i++) {
+                    DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(9), 2, 3);
+
+                    LinearOrder expected = sequentialService.orderAutomaton(automaton);
+                    LinearOrder linearOrder = portfolioService.orderAutomaton(automaton);
+
+                    assertEquals(expected.isResolution(), linearOrder.isResolution());
+                    if (linearOrder.isResolution()) {
+                        assertOrdersAutomaton(automaton, linearOrder);
+                    }
+                }
+            }
+        } finally {
+            searchPool.shutdown();
+        }
+    }
+
+    @Test
+    public void run_everyHeuristic() throws SymmetricRelationException {
+        Random random = new Random(29);
+        int resolutions = 0;
+        for (int i = 0; i < 200; i++) {
+            DenseAutomaton automaton = randomAutomaton(random, 2 + random.nextInt(9), 2, 3);
+            IOrbitProvider orbitProvider;
+            try {
+                orbitProvider = automataUtilsService.getOrbitProvider(automaton);
+            } catch (SymmetricRelationException e) {
+                continue;
+            }
+            long[] pairs = pairs(automaton.getStateCount());
+            LinearOrder expected = sequentialService.orderAutomaton(automaton);
+            if (expected.isResolution()) {
+                resolutions++;
+            }
+
+            List<PairSelector> pairSelectors = Arrays.asList(PairSelector.inOrder(pairs),
+                    PairSelector.fewestUnresolved(pairs, orbitProvider), PairSelector.shuffled(pairs, i));
+            for (PairSelector pairSelector : pairSelectors) {
+                for (boolean revertedFirst : new boolean[]{false, true}) {
+                    List<OrderingSearch> searches = Arrays.asList(
+                            new ChronologicalSearch(automataUtilsService, automaton, orbitProvider, pairSelector,
+                                    revertedFirst),
+                            new BackjumpingSearch(automataUtilsService, automaton, orbitProvider, pairSelector,
+                                    revertedFirst, 16, 8));
+                    for (OrderingSearch search : searches) {
+                        LinearOrder linearOrder = search.run();
+
+                        assertEquals(expected.isResolution(), linearOrder.isResolution());
+                        assertEquals(expected.getReason(), linearOrder.getReason());
+                        if (linearOrder.isResolution()) {
+                            assertOrdersAutomaton(automaton, linearOrder);
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(resolutions > 0);
+    }
+
+    @Test
+    public void run_cancelled() throws SymmetricRelationException {
+        int[] transitions = {1, 2, 3, 4, 4};
+        DenseAutomaton automaton = new DenseAutomaton(states(5), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), transitions, new int[5]);
+        OrderingSearch search = new ChronologicalSearch(automataUtilsService, automaton,
+                automataUtilsService.getOrbitProvider(automaton), PairSelector.inOrder(pairs(5)), false);
+
+        search.cancel();
+
+        assertThrows(CancellationException.class, search::run);
+    }
+
+    /**
+     * Both orders are linear and every input signal maps ordered states to ordered states and ordered output
+     * signals.
+     */
+
+    private static AutomataProperties searchProperties(AutomataProperties.Search.Mode mode, int portfolioSize) {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getSearch().setMode(mode);
+        properties.getSearch().setPortfolioSize(portfolioSize);
+        return properties;
+    }
+
+    private static long[] pairs(int stateCount) {
+        long[] pairs = new long[stateCount * (stateCount - 1) / 2];
+        int i = 0;
+        for (int left = 0; left < stateCount; left++) {
+            for (int right = left + 1; right < stateCount; right++) {
+                pairs[i++] = (long) left * stateCount + right;
+            }
+        }
+        return pairs;
+    }
+}
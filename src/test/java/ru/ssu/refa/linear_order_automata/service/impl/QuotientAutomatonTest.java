@@ -0,0 +1,102 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class QuotientAutomatonTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+    private final AutomataOrderingService searchingService = new AutomataOrderingService(automataUtilsService);
+    private final AutomataOrderingService minimizingService = new AutomataOrderingService(automataUtilsService,
+            ForkJoinPool.commonPool(), minimizationProperties());
+
+    @Test
+    public void of_mergesEquivalentStates() {
+        // 1 and 2 output y on a and lead to 0, which outputs x and stays
+        DenseAutomaton automaton = new DenseAutomaton(states(3), Collections.singletonList(new InputSignal("a")),
+                Arrays.asList(new OutputSignal("x"), new OutputSignal("y")), new int[]{0, 0, 0}, new int[]{0, 1, 1});
+
+        QuotientAutomaton quotient = QuotientAutomaton.of(automaton);
+
+        assertNotNull(quotient);
+        assertEquals(2, quotient.getAutomaton().getStateCount());
+        assertEquals(Arrays.asList(new State(0), new State(1)), quotient.getAutomaton().getStates());
+    }
+
+    @Test
+    public void of_noEquivalentStates() {
+        // 0, 1 and 2 output y after 2, 1 and 0 signals a
+        DenseAutomaton automaton = new DenseAutomaton(states(3), Collections.singletonList(new InputSignal("a")),
+                Arrays.asList(new OutputSignal("x"), new OutputSignal("y")), new int[]{1, 2, 2}, new int[]{0, 0, 1});
+        DenseAutomaton partial = new DenseAutomaton(states(2), Collections.singletonList(new InputSignal("a")),
+                Collections.singletonList(new OutputSignal("x")), new int[]{0, DenseAutomaton.NONE}, new int[2]);
+
+        assertNull(QuotientAutomaton.of(automaton));
+        assertNull(QuotientAutomaton.of(partial));
+    }
+
+    @Test
+    public void orderAutomaton_sameResolution() {
+        Random random = new Random(61);
+        int reduced = 0;
+        for (int i = 0; i < 300; i++) {
+            DenseAutomaton automaton = withCopies(random, randomAutomaton(random, 2 + random.nextInt(6),
+                    1 + random.nextInt(2), 1 + random.nextInt(3)), 1 + random.nextInt(4));
+
+            LinearOrder expected = searchingService.orderAutomaton(automaton);
+            LinearOrder linearOrder = minimizingService.orderAutomaton(automaton);
+
+            assertEquals(expected.isResolution(), linearOrder.isResolution());
+            if (linearOrder.isResolution()) {
+                assertOrdersAutomaton(automaton, linearOrder);
+            }
+            if (QuotientAutomaton.of(automaton) != null) {
+                reduced++;
+            }
+        }
+        assertTrue(reduced > 0);
+    }
+
+    private static AutomataProperties minimizationProperties() {
+        AutomataProperties properties = new AutomataProperties();
+        properties.getSearch().setMinimization(true);
+        return properties;
+    }
+
+    /**
+     * Adds copies of random states, a copy outputs what its original does and leads to the original target or to
+     * a copy of it.
+     */
+    private static DenseAutomaton withCopies(Random random, DenseAutomaton automaton, int copyCount) {
+        int stateCount = automaton.getStateCount();
+        int inputCount = automaton.getInputCount();
+        int[] originals = new int[stateCount + copyCount];
+        for (int state = 0; state < originals.length; state++) {
+            originals[state] = state < stateCount ? state : random.nextInt(stateCount);
+        }
+        int[] transitions = new int[originals.length * inputCount];
+        int[] outputs = new int[originals.length * inputCount];
+        for (int state = 0; state < originals.length; state++) {
+            for (int input = 0; input < inputCount; input++) {
+                int target = automaton.getTargetState(originals[state], input);
+                List<Integer> targets = new ArrayList<>();
+                for (int copy = 0; copy < originals.length; copy++) {
+                    if (originals[copy] == target) {
+                        targets.add(copy);
+                    }
+                }
+                transitions[state * inputCount + input] = targets.get(random.nextInt(targets.size()));
+                outputs[state * inputCount + input] = automaton.getOutputSignal(originals[state], input);
+            }
+        }
+        return new DenseAutomaton(states(originals.length), automaton.getInputSignals(),
+                automaton.getOutputSignals(), transitions, outputs);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.ssu.refa.linear_order_automata.config.AutomataProperties;
+import ru.ssu.refa.linear_order_automata.model.*;
+import ru.ssu.refa.linear_order_automata.service.ISearchStatisticsListener;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.ssu.refa.linear_order_automata.service.impl.TestAutomata.*;
+
+public class SearchStatisticsTest {
+
+    private final AutomataUtilsService automataUtilsService = new AutomataUtilsService();
+
+    @Test
+    public void orderAutomatonWithStatistics_sameOrder() {
+        AutomataProperties backjumpingProperties = new AutomataProperties();
+        backjumpingProperties.getSearch().setMode(AutomataProperties.Search.Mode.BACKJUMPING);
+        List<AutomataOrderingService> services = Arrays.asList(
+                new AutomataOrderingService(automataUtilsService),
+                new AutomataOrderingService(automataUtilsService, ForkJoinPool.commonPool(), backjumpingProperties));
+        Random random = new Random(79);
+        for (int i = 0; i < 100; i++) {
+            Automaton automaton = randomMapAutomaton(random, 2 + random.nextInt(6), 2, 1 + random.nextInt(3));
+            for (AutomataOrderingService service : services) {
+                LinearOrder expected = service.orderAutomaton(automaton);
+
+                OrderingResult result = service.orderAutomatonWithStatistics(automaton);
+
+                assertEquals(expected.isResolution(), result.getLinearOrder().isResolution());
+                assertEquals(expected.getOrderOnStateSet(), result.getLinearOrder().getOrderOnStateSet());
+                SearchStatistics statistics = result.getStatistics();
+                assertTrue(statistics.getSteps() >= statistics.getMaxDepth());
+                if (statistics.getViolations().get(SearchStatistics.Phase.ORBITS) == 0) {
+                    assertTrue(statistics.getOrbitCalculations() > 0);
+                    assertTrue(statistics.getClosureCalls() > 0);
+                    assertTrue(statistics.getPhaseNanos().get(SearchStatistics.Phase.SEARCH) > 0);
+                }
+                if (!expected.isResolution()) {
+                    assertTrue(statistics.getViolations().values().stream().mapToLong(Long::longValue).sum() > 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void orderAutomaton_publishesIfEnabled() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        List<SearchStatistics> published = new ArrayList<>();
+        List<ISearchStatisticsListener> listeners = Arrays.asList(new MicrometerStatisticsListener(registry),
+                (linearOrder, statistics) -> published.add(statistics));
+        AutomataProperties properties = new AutomataProperties();
+        AutomataOrderingService disabledService = new AutomataOrderingService(automataUtilsService, properties,
+                listeners);
+        properties.getMetrics().setEnabled(true);
+        AutomataOrderingService enabledService = new AutomataOrderingService(automataUtilsService, properties,
+                listeners);
+        Random random = new Random(83);
+
+        for (int i = 0; i < 10; i++) {
+            disabledService.orderAutomaton(randomMapAutomaton(random, 4, 2, 2));
+        }
+        assertTrue(published.isEmpty());
+        for (int i = 0; i < 10; i++) {
+            enabledService.orderAutomaton(randomMapAutomaton(random, 4, 2, 2));
+        }
+
+        assertEquals(10, published.size());
+        double orderings = registry.get("automata.orderings").counters().stream()
+                .mapToDouble(Counter::count).sum();
+        assertEquals(10, orderings);
+        assertEquals(published.stream().mapToLong(SearchStatistics::getSteps).sum(),
+                registry.get("automata.search.steps").counter().count());
+        assertEquals(10, registry.get("automata.search.depth").summary().count());
+        disabledService.shutdown();
+        enabledService.shutdown();
+    }
+}
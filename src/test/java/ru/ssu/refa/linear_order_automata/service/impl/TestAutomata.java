@@ -0,0 +1,121 @@
+package ru.ssu.refa.linear_order_automata.service.impl;
+
+import ru.ssu.refa.linear_order_automata.model.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Random automata and the checks of their orders shared by the tests. Inputs are named {@code x0, x1, ...} and
+ * outputs {@code y0, y1, ...}, the same random draws give the same automaton in every form.
+ */
+final class TestAutomata {
+
+    private TestAutomata() {
+    }
+
+    static List<State> states(int stateCount) {
+        return states(0, stateCount);
+    }
+
+    static List<State> states(int first, int count) {
+        List<State> states = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            states.add(new State(i));
+        }
+        return states;
+    }
+
+    static List<InputSignal> inputSignals(int inputCount) {
+        List<InputSignal> inputSignals = new ArrayList<>();
+        for (int i = 0; i < inputCount; i++) {
+            inputSignals.add(new InputSignal("x" + i));
+        }
+        return inputSignals;
+    }
+
+    static List<OutputSignal> outputSignals(int outputCount) {
+        List<OutputSignal> outputSignals = new ArrayList<>();
+        for (int i = 0; i < outputCount; i++) {
+            outputSignals.add(new OutputSignal("y" + i));
+        }
+        return outputSignals;
+    }
+
+    static DenseAutomaton randomAutomaton(Random random, int stateCount, int inputCount, int outputCount) {
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = random.nextInt(stateCount);
+            outputs[i] = random.nextInt(outputCount);
+        }
+        return new DenseAutomaton(states(stateCount), inputSignals(inputCount), outputSignals(outputCount),
+                transitions, outputs);
+    }
+
+    /**
+     * Random automaton in which about every tenth transition and output is missing, independently of each other.
+     */
+    static DenseAutomaton randomPartialAutomaton(Random random, int stateCount, int inputCount, int outputCount) {
+        int[] transitions = new int[stateCount * inputCount];
+        int[] outputs = new int[stateCount * inputCount];
+        for (int i = 0; i < transitions.length; i++) {
+            transitions[i] = random.nextInt(10) == 0 ? DenseAutomaton.NONE : random.nextInt(stateCount);
+            outputs[i] = random.nextInt(10) == 0 ? DenseAutomaton.NONE : random.nextInt(outputCount);
+        }
+        return new DenseAutomaton(states(stateCount), inputSignals(inputCount), outputSignals(outputCount),
+                transitions, outputs);
+    }
+
+    /**
+     * {@link #randomAutomaton(Random, int, int, int)} as an {@link Automaton} built on maps.
+     */
+    static Automaton randomMapAutomaton(Random random, int stateCount, int inputCount, int outputCount) {
+        List<State> states = states(stateCount);
+        List<InputSignal> inputSignals = inputSignals(inputCount);
+        List<OutputSignal> outputSignals = outputSignals(outputCount);
+        Map<State, Map<InputSignal, State>> transitions = new HashMap<>();
+        Map<State, Map<InputSignal, OutputSignal>> outputs = new HashMap<>();
+        for (State state : states) {
+            for (InputSignal inputSignal : inputSignals) {
+                transitions.computeIfAbsent(state, s -> new HashMap<>())
+                        .put(inputSignal, states.get(random.nextInt(stateCount)));
+                outputs.computeIfAbsent(state, s -> new HashMap<>())
+                        .put(inputSignal, outputSignals.get(random.nextInt(outputCount)));
+            }
+        }
+        return new Automaton(states, inputSignals, outputSignals, transitions, outputs);
+    }
+
+    /**
+     * Checks that the order is linear on all states and outputs and that every defined transition of two ordered
+     * states leads to ordered states and outputs.
+     */
+    static void assertOrdersAutomaton(DenseAutomaton automaton, LinearOrder linearOrder) {
+        Set<Pair<State>> stateOrder = linearOrder.getOrderOnStateSet();
+        Set<Pair<OutputSignal>> outputOrder = linearOrder.getOrderOnOutputSignalSet();
+        int stateCount = automaton.getStateCount();
+        int outputCount = automaton.getOutputCount();
+        assertEquals(stateCount * (stateCount + 1) / 2, stateOrder.size());
+        assertEquals(outputCount * (outputCount + 1) / 2, outputOrder.size());
+        for (Pair<State> pair : stateOrder) {
+            int left = automaton.indexOf(pair.getLeft());
+            int right = automaton.indexOf(pair.getRight());
+            for (int input = 0; input < automaton.getInputCount(); input++) {
+                int leftTarget = automaton.getTargetState(left, input);
+                int rightTarget = automaton.getTargetState(right, input);
+                if (leftTarget != DenseAutomaton.NONE && rightTarget != DenseAutomaton.NONE) {
+                    assertTrue(stateOrder.contains(new Pair<>(automaton.getState(leftTarget),
+                            automaton.getState(rightTarget))));
+                }
+                int leftOutput = automaton.getOutputSignal(left, input);
+                int rightOutput = automaton.getOutputSignal(right, input);
+                if (leftOutput != DenseAutomaton.NONE && rightOutput != DenseAutomaton.NONE) {
+                    assertTrue(outputOrder.contains(new Pair<>(automaton.getOutput(leftOutput),
+                            automaton.getOutput(rightOutput))));
+                }
+            }
+        }
+    }
+}